@@ -1,12 +1,20 @@
 package com.wifiguard.client.ui;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
@@ -15,10 +23,20 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 public class ClientApi implements Closeable {
+    private static final String RESPONSE_FOOTER = "+------------------------------------------------------------";
+    private static final int MAX_RESPONSE_LINES = 100000;
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final byte FRAME_FLAG_NONE = 0;
+    private static final byte FRAME_FLAG_COMPRESSED = 0x01;
+    private static final byte FRAME_FLAG_CONTINUED = 0x02;
+
     private final boolean useTls;
     private java.net.Socket socket;
-    private BufferedReader in;
-    private PrintWriter out;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private boolean framed;
+    private boolean compressed;
+    private final Inflater inflater = new Inflater();
 
     public ClientApi(boolean useTls) {
         this.useTls = useTls;
@@ -34,41 +52,273 @@ public class ClientApi implements Closeable {
         } else {
             socket = SocketFactory.getDefault().createSocket(host, port);
         }
-        in  = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+        in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        // Loi chao luon o dang text, sau do thu chuyen sang giao thuc framed
+        // va xin nen DEFLATE cho response lon (server cu bo qua tham so la)
+        readTextResponse();
+        writeLine("HELLO FRAMED DEFLATE");
+        out.flush();
+        String hello = readTextResponse();
+        framed = hello.contains("Data: FRAMED");
+        compressed = hello.contains("Data: FRAMED DEFLATE");
+    }
+
+    /**
+     * Ket noi da dung frame co do dai (HELLO FRAMED duoc server chap nhan)
+     */
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * Server nen cac frame lon bang DEFLATE (giai nen tu dong khi doc)
+     */
+    public boolean isCompressed() {
+        return compressed;
     }
 
     public String send(String line) throws IOException {
         if (socket == null || socket.isClosed()) throw new IllegalStateException("Not connected");
-        out.println(line);
+        if (framed) {
+            writeFrame(line);
+            out.flush();
+            return readFrame().trim();
+        }
+
+        writeLine(line);
         out.flush();
-        
+
         // Read full response (multiple lines)
         StringBuilder response = new StringBuilder();
         String line2;
         int lineCount = 0;
         int maxLines = 50; // Prevent infinite loop
-        
-        while ((line2 = in.readLine()) != null && lineCount < maxLines) {
+
+        while ((line2 = readLine()) != null && lineCount < maxLines) {
             response.append(line2).append("\n");
             lineCount++;
-            
+
             // Stop if we see end markers
-            if (line2.contains("+--------------------------------------------------") || 
+            if (line2.contains("+--------------------------------------------------") ||
                 line2.contains("End of response") ||
                 line2.isEmpty()) {
                 break;
             }
         }
-        
+
         return response.toString().trim();
     }
 
+    /**
+     * Gui nhieu lenh lien tiep trong mot lan flush (pipelining), moi lenh duoc
+     * gan "#<i>"; server tra loi dung thu tu va gan lai cung id.
+     * Tra ve danh sach response theo thu tu lenh.
+     */
+    public List<String> sendPipelined(String... commands) throws IOException {
+        if (socket == null || socket.isClosed()) throw new IllegalStateException("Not connected");
+        for (int i = 0; i < commands.length; i++) {
+            String tagged = "#" + (i + 1) + " " + commands[i];
+            if (framed) {
+                writeFrame(tagged);
+            } else {
+                writeLine(tagged);
+            }
+        }
+        out.flush();
+
+        String[] responses = new String[commands.length];
+        int received = 0;
+        while (received < commands.length) {
+            String id = null;
+            String response;
+            if (framed) {
+                // Payload: dong "#<id>" roi den hop response
+                String payload = readFrame();
+                int newline = payload.indexOf('\n');
+                if (payload.startsWith("#") && newline > 0) {
+                    id = payload.substring(1, newline).trim();
+                    payload = payload.substring(newline + 1);
+                }
+                response = payload.trim();
+            } else {
+                StringBuilder text = new StringBuilder();
+                String line;
+                int lineCount = 0;
+                while ((line = readLine()) != null) {
+                    if (line.startsWith("#") && text.length() == 0 && id == null) {
+                        id = line.substring(1).trim();
+                        continue;
+                    }
+                    text.append(line).append("\n");
+                    if (line.startsWith(RESPONSE_FOOTER) || ++lineCount > MAX_RESPONSE_LINES) {
+                        break;
+                    }
+                }
+                if (line == null) {
+                    throw new IOException("Ket noi bi dong truoc khi nhan du " + commands.length + " response");
+                }
+                response = text.toString().trim();
+            }
+            // Bo qua cac response khong gan id (vd. PING khi idle)
+            int index = parseIndex(id);
+            if (index < 1 || index > commands.length || responses[index - 1] != null) {
+                continue;
+            }
+            responses[index - 1] = response;
+            received++;
+        }
+        return new ArrayList<>(Arrays.asList(responses));
+    }
+
+    /**
+     * Gui SUBSCRIBE va chuyen ket noi nay sang che do chi nhan su kien; moi su
+     * kien (hop response "+-- EVENT") duoc giao cho listener tren luong nen.
+     * Nen dung mot ket noi rieng, khong gui lenh khac tren ket noi nay nua.
+     */
+    public void subscribe(Consumer<String> onEvent) throws IOException {
+        if (socket == null || socket.isClosed()) throw new IllegalStateException("Not connected");
+        String reply;
+        if (framed) {
+            writeFrame("SUBSCRIBE");
+            out.flush();
+            reply = readFrame();
+        } else {
+            writeLine("SUBSCRIBE");
+            out.flush();
+            reply = readTextResponse();
+        }
+        // Su kien dau tien co the den truoc reply, chi tu choi khi server bao loi
+        if (reply.contains("+-- ERROR") || reply.contains("+-- INVALID_COMMAND")) {
+            throw new IOException("SUBSCRIBE bi tu choi: " + reply.trim());
+        }
+
+        Thread pump = new Thread(() -> {
+            try {
+                while (!socket.isClosed()) {
+                    String event = framed ? readFrame().trim() : readTextResponse();
+                    if (event.contains("+-- EVENT")) {
+                        onEvent.accept(event);
+                    }
+                }
+            } catch (IOException e) {
+                // Ket noi da dong
+            }
+        }, "WifiGuard-Events");
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    private static int parseIndex(String id) {
+        if (id == null) return -1;
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Frame: 4 byte do dai (big-endian), 1 byte co, payload UTF-8
+     */
+    private void writeFrame(String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(payload.length);
+        out.writeByte(FRAME_FLAG_NONE);
+        out.write(payload);
+    }
+
+    /**
+     * Doc mot response; response dang stream (LIST STREAM) gom nhieu frame co
+     * co CONTINUED, cac payload duoc noi lai
+     */
+    private String readFrame() throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        byte flags;
+        do {
+            int length = in.readInt();
+            flags = in.readByte();
+            if (length < 0 || length > MAX_FRAME_SIZE || message.size() + length > MAX_FRAME_SIZE) {
+                throw new IOException("Frame khong hop le: " + length + " bytes");
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if ((flags & FRAME_FLAG_COMPRESSED) != 0) {
+                payload = inflate(payload);
+            }
+            message.write(payload);
+        } while ((flags & FRAME_FLAG_CONTINUED) != 0);
+        return new String(message.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Giai nen payload cua mot frame co co COMPRESSED (moi frame la mot luong zlib rieng)
+     */
+    private byte[] inflate(byte[] payload) throws IOException {
+        inflater.reset();
+        inflater.setInput(payload);
+        ByteArrayOutputStream result = new ByteArrayOutputStream(payload.length * 4);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Frame nen bi cat ngang");
+                }
+                result.write(buffer, 0, count);
+                if (result.size() > MAX_FRAME_SIZE) {
+                    throw new IOException("Frame giai nen qua lon");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Frame nen khong hop le", e);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Doc mot hop response dang text den dong footer
+     */
+    private String readTextResponse() throws IOException {
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = readLine()) != null) {
+            response.append(line).append("\n");
+            if (line.startsWith(RESPONSE_FOOTER)) {
+                return response.toString().trim();
+            }
+        }
+        throw new IOException("Ket noi bi dong");
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     @Override
     public void close() throws IOException {
         try { if (out != null) out.close(); } catch (Exception ignore) {}
         try { if (in  != null) in.close();  } catch (Exception ignore) {}
         try { if (socket != null) socket.close(); } catch (Exception ignore) {}
+        inflater.end();
     }
 
     private static X509TrustManager trustAll() {
@@ -78,4 +328,4 @@ public class ClientApi implements Closeable {
             public void checkServerTrusted(java.security.cert.X509Certificate[] xcs, String s) {}
         };
     }
-}
\ No newline at end of file
+}
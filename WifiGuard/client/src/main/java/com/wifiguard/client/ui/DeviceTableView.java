@@ -43,6 +43,8 @@ public class DeviceTableView {
 
     private final ObservableList<Row> data = FXCollections.observableArrayList();
     private ClientApi api;
+    private ClientApi eventApi; // ket noi rieng nhan su kien SUBSCRIBE
+    private final java.util.concurrent.atomic.AtomicBoolean eventRefreshPending = new java.util.concurrent.atomic.AtomicBoolean(false);
     
     // Server management
     private Process serverProcess;
@@ -208,7 +210,11 @@ public class DeviceTableView {
     /**
      * Start continuous device monitoring to catch new devices
      */
-    private void startDeviceMonitoring() {
+    private void startDeviceMonitoring(String host, int port, boolean useTls) {
+        // Uu tien nhan su kien tu server, chi poll LIST khi server khong ho tro SUBSCRIBE
+        if (startEventSubscription(host, port, useTls)) {
+            return;
+        }
         new Thread(() -> {
             while (serverStarted && isServerRunning() && api != null) {
                 try {
@@ -257,6 +263,49 @@ public class DeviceTableView {
         }).start();
     }
     
+    /**
+     * Mo ket noi thu hai va SUBSCRIBE; moi loat su kien kich hoat mot lan LIST
+     */
+    private boolean startEventSubscription(String host, int port, boolean useTls) {
+        closeEventApi();
+        try {
+            eventApi = new ClientApi(useTls);
+            eventApi.connect(host, port);
+            eventApi.subscribe(event -> {
+                System.out.println("Device event: " + event.lines().filter(l -> l.startsWith("| Message:")).findFirst().orElse(event));
+                // Gop cac su kien den gan nhau thanh mot lan refresh
+                if (eventRefreshPending.compareAndSet(false, true)) {
+                    new Thread(() -> {
+                        try {
+                            Thread.sleep(500);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                        }
+                        eventRefreshPending.set(false);
+                        if (api != null) {
+                            refreshWithRetry(1);
+                        }
+                    }).start();
+                }
+            });
+            System.out.println("Subscribed to device events");
+            return true;
+        } catch (Exception e) {
+            System.out.println("SUBSCRIBE not available, falling back to polling: " + e.getMessage());
+            closeEventApi();
+            return false;
+        }
+    }
+    
+    private void closeEventApi() {
+        try {
+            if (eventApi != null) {
+                eventApi.close();
+                eventApi = null;
+            }
+        } catch (Exception ignore) {}
+    }
+    
     /**
      * Count devices in server response without parsing them
      */
@@ -510,7 +559,7 @@ public class DeviceTableView {
             scheduleAutoRefresh(10000); // Third try after 10 seconds
             
             // Start continuous device monitoring to catch new devices
-            startDeviceMonitoring();
+            startDeviceMonitoring(host, port, useTls);
             
             // Start connection monitoring to detect disconnections
             startConnectionMonitoring();
@@ -1024,6 +1073,7 @@ public class DeviceTableView {
     }
 
     private void closeApi() {
+        closeEventApi();
         try {
             if (api != null) {
                 api.close();
@@ -0,0 +1,219 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Listening sockets and accept threads of the blocking and TLS servers.
+ *
+ * With server.acceptors = N > 1 and SO_REUSEPORT available (Linux, JDK 9+),
+ * N sockets are bound to the same address and the kernel spreads incoming
+ * connections across them: each socket has its own accept queue of
+ * server.backlog entries and its own thread, so a reconnect storm has N times
+ * the queue room and N threads draining it. Where SO_REUSEPORT is not
+ * supported, or server.acceptors.reusePort=false, the N threads share one
+ * socket.
+ *
+ * Before the group binds, a plain socket without SO_REUSEPORT probes the
+ * address, so a second server started on a port already in use still fails
+ * with BindException instead of silently sharing its connections.
+ */
+public final class AcceptorGroup {
+    private static final Logger logger = Logger.getLogger(AcceptorGroup.class.getName());
+    private static final int MAX_DEFAULT_ACCEPTORS = 4;
+    private static final long JOIN_TIMEOUT_MS = 5000;
+
+    /**
+     * Creates an unbound, fully configured listening socket
+     */
+    public interface SocketFactory {
+        ServerSocket create() throws IOException;
+    }
+
+    /**
+     * Takes ownership of an accepted socket; runs on the acceptor thread
+     */
+    public interface Handler {
+        void accept(Socket socket) throws IOException;
+    }
+
+    private final String threadName;
+    private final List<ServerSocket> sockets;
+    private final int acceptorCount;
+    private final boolean reusePort;
+    private final AtomicLongArray accepted;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final List<Thread> threads = new ArrayList<>();
+
+    private AcceptorGroup(String threadName, List<ServerSocket> sockets, int acceptorCount, boolean reusePort) {
+        this.threadName = threadName;
+        this.sockets = sockets;
+        this.acceptorCount = acceptorCount;
+        this.reusePort = reusePort;
+        this.accepted = new AtomicLongArray(acceptorCount);
+    }
+
+    /**
+     * server.acceptors, defaulting to the CPU count capped at 4
+     */
+    public static int acceptorCount(Properties config) {
+        int defaultCount = Math.min(MAX_DEFAULT_ACCEPTORS, Runtime.getRuntime().availableProcessors());
+        if (config == null) {
+            return defaultCount;
+        }
+        return Math.max(1, Integer.parseInt(config.getProperty("server.acceptors",
+                String.valueOf(defaultCount)).trim()));
+    }
+
+    /**
+     * server.acceptors.reusePort (true): bind one socket per acceptor when the JDK allows it
+     */
+    public static boolean reusePortEnabled(Properties config) {
+        return config == null || Boolean.parseBoolean(config.getProperty("server.acceptors.reusePort", "true").trim());
+    }
+
+    /**
+     * Bind the listening sockets; threads start with {@link #start}
+     *
+     * @param threadName name of the accept thread, suffixed with the acceptor number when there are several
+     * @param port       0 binds every socket of the group to the same ephemeral port
+     */
+    public static AcceptorGroup bind(String threadName, SocketFactory factory, String host, int port, int backlog,
+                                     int acceptors, boolean reusePort) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            ServerSocket first = factory.create();
+            sockets.add(first);
+            boolean shareable = acceptors > 1 && reusePort
+                    && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+            if (!shareable) {
+                first.setReuseAddress(true);
+                first.bind(new InetSocketAddress(host, port), backlog);
+                return new AcceptorGroup(threadName, sockets, acceptors, false);
+            }
+
+            int boundPort = probe(host, port);
+            first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            first.bind(new InetSocketAddress(host, boundPort), backlog);
+            for (int i = 1; i < acceptors; i++) {
+                ServerSocket socket = factory.create();
+                sockets.add(socket);
+                socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                socket.bind(new InetSocketAddress(host, boundPort), backlog);
+            }
+            return new AcceptorGroup(threadName, sockets, acceptors, true);
+        } catch (IOException | RuntimeException e) {
+            sockets.forEach(AcceptorGroup::closeQuietly);
+            throw e;
+        }
+    }
+
+    /**
+     * Fail like a plain bind if something already listens on the address
+     *
+     * @return the port to bind the group to (the ephemeral port picked for port 0)
+     */
+    private static int probe(String host, int port) throws IOException {
+        try (ServerSocket probe = new ServerSocket()) {
+            probe.setReuseAddress(true);
+            probe.bind(new InetSocketAddress(host, port), 1);
+            return probe.getLocalPort();
+        }
+    }
+
+    /**
+     * Start one accept thread per acceptor
+     */
+    public synchronized void start(Handler handler) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        for (int i = 0; i < acceptorCount; i++) {
+            int acceptor = i;
+            ServerSocket socket = sockets.get(reusePort ? i : 0);
+            Thread thread = new Thread(() -> acceptLoop(acceptor, socket, handler),
+                    acceptorCount > 1 ? threadName + "-" + (i + 1) : threadName);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    private void acceptLoop(int acceptor, ServerSocket socket, Handler handler) {
+        logger.info("Accept thread started");
+
+        while (running.get() && !socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                accepted.incrementAndGet(acceptor);
+                handler.accept(client);
+            } catch (IOException e) {
+                if (running.get() && !socket.isClosed()) {
+                    logger.log(Level.WARNING, "Error accepting client connection", e);
+                }
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error handling accepted connection", e);
+            }
+        }
+
+        logger.info("Accept thread finished");
+    }
+
+    /**
+     * Close every listening socket and wait for the accept threads
+     */
+    public synchronized void close() {
+        running.set(false);
+        for (ServerSocket socket : sockets) {
+            if (!socket.isClosed()) {
+                closeQuietly(socket);
+            }
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(JOIN_TIMEOUT_MS);
+                if (thread.isAlive()) {
+                    logger.warning("Accept thread did not terminate gracefully: " + thread.getName());
+                }
+            } catch (InterruptedException e) {
+                logger.log(Level.WARNING, "Interrupted while waiting for accept thread", e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        threads.clear();
+    }
+
+    private static void closeQuietly(ServerSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing server socket", e);
+        }
+    }
+
+    public int getAcceptorCount() { return acceptorCount; }
+    public int getSocketCount() { return sockets.size(); }
+    public boolean isReusePort() { return reusePort; }
+    public int getLocalPort() { return sockets.get(0).getLocalPort(); }
+    public long getAccepted(int acceptor) { return accepted.get(acceptor); }
+
+    /**
+     * "4 acceptors, SO_REUSEPORT" or "2 acceptors, 1 socket"
+     */
+    @Override
+    public String toString() {
+        return acceptorCount + (acceptorCount == 1 ? " acceptor" : " acceptors") +
+                (reusePort ? ", SO_REUSEPORT" : sockets.size() == 1 && acceptorCount > 1 ? ", 1 socket" : "");
+    }
+}
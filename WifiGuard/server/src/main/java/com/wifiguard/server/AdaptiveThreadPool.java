@@ -0,0 +1,139 @@
+package com.wifiguard.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.wifiguard.server.metrics.LatencyHistogram;
+
+/**
+ * Bounded worker pool that resizes itself between minThreads and maxThreads.
+ * Every task is stamped on submit; a controller looks at the average time
+ * tasks waited in the queue over the last interval and grows the core size
+ * by a quarter when it exceeds the target, or gives back one thread when the
+ * pool is mostly idle. The queue is bounded, so once it and maxThreads are
+ * exhausted execute() throws RejectedExecutionException and callers can shed
+ * load immediately instead of letting latency grow without limit.
+ */
+public class AdaptiveThreadPool extends ThreadPoolExecutor {
+    private static final Logger logger = Logger.getLogger(AdaptiveThreadPool.class.getName());
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long targetWaitNanos;
+    private final ScheduledExecutorService controller;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LongAdder windowWaitNanos = new LongAdder();
+    private final LongAdder windowTasks = new LongAdder();
+    private final LongAdder grows = new LongAdder();
+    private final LongAdder shrinks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public AdaptiveThreadPool(int minThreads, int maxThreads, int queueCapacity, long targetWaitMillis,
+                              long adjustIntervalMillis, ThreadFactory threadFactory, String namePrefix) {
+        super(minThreads, Math.max(minThreads, maxThreads), KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory);
+        this.minThreads = minThreads;
+        this.maxThreads = Math.max(minThreads, maxThreads);
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+        this.controller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, namePrefix + "Sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        controller.scheduleAtFixedRate(this::adjust, adjustIntervalMillis, adjustIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            super.execute(new Timed(command));
+        } catch (RejectedExecutionException e) {
+            if (!isShutdown()) {
+                rejections.increment();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        if (task instanceof Timed) {
+            long waited = System.nanoTime() - ((Timed) task).submitted;
+            queueWait.record(waited);
+            windowWaitNanos.add(waited);
+            windowTasks.increment();
+        }
+        super.beforeExecute(thread, task);
+    }
+
+    /**
+     * One sizing decision per interval, based on the average queue wait of the tasks started in it
+     */
+    private void adjust() {
+        try {
+            long tasks = windowTasks.sumThenReset();
+            long waited = windowWaitNanos.sumThenReset();
+            long averageWait = tasks == 0 ? 0 : waited / tasks;
+            int core = getCorePoolSize();
+            int queued = getQueue().size();
+
+            // Task dang cho ma chua duoc chay cung tinh la cho lau
+            if ((averageWait > targetWaitNanos || (queued > 0 && tasks == 0)) && core < maxThreads) {
+                int grown = Math.min(maxThreads, core + Math.max(1, core / 4));
+                setCorePoolSize(grown);
+                prestartAllCoreThreads();
+                grows.increment();
+                logger.info("Worker pool grown " + core + " -> " + grown + " (queue wait avg " +
+                        TimeUnit.NANOSECONDS.toMillis(averageWait) + "ms, queued " + queued + ")");
+            } else if (core > minThreads && queued == 0 && averageWait < targetWaitNanos / 4 &&
+                    getActiveCount() < core / 2) {
+                setCorePoolSize(core - 1);
+                shrinks.increment();
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Worker pool shrunk " + core + " -> " + (core - 1));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error adjusting worker pool", e);
+        }
+    }
+
+    @Override
+    protected void terminated() {
+        controller.shutdownNow();
+        super.terminated();
+    }
+
+    /**
+     * Task with its submit time
+     */
+    private static final class Timed implements Runnable {
+        final Runnable task;
+        final long submitted = System.nanoTime();
+
+        Timed(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    public int getMinThreads() { return minThreads; }
+    public int getMaxThreads() { return maxThreads; }
+    public LatencyHistogram getQueueWait() { return queueWait; }
+    public long getGrowCount() { return grows.sum(); }
+    public long getShrinkCount() { return shrinks.sum(); }
+    public long getRejectedCount() { return rejections.sum(); }
+}
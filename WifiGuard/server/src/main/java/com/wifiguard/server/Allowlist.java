@@ -5,13 +5,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import com.wifiguard.server.metrics.LatencyHistogram;
 import com.wifiguard.server.model.DeviceInfo;
 
 /**
@@ -23,8 +27,11 @@ public class Allowlist {
     private static final String COMMENT_PREFIX = "#";
     private static final String FIELD_SEPARATOR = ",";
     
-    private final Map<String, DeviceInfo> allowedDevices;
+    // Ban ghi doc khong khoa; lo thao tac thay ca map bang mot lan ghi volatile
+    private volatile Map<String, DeviceInfo> allowedDevices;
     private final Path allowlistPath;
+    private final AtomicLong revision = new AtomicLong(0); // bumped on every change
+    private final LatencyHistogram saveLatency = new LatencyHistogram();
     
     public Allowlist() {
         this.allowedDevices = new ConcurrentHashMap<>();
@@ -51,7 +58,7 @@ public class Allowlist {
     /**
      * Load devices from file
      */
-    public void loadAllowlist() {
+    public synchronized void loadAllowlist() {
         try {
             if (Files.exists(allowlistPath)) {
                 loadFromFile();
@@ -70,6 +77,7 @@ public class Allowlist {
     private void loadFromFile() throws IOException {
         List<String> lines = Files.readAllLines(allowlistPath);
         allowedDevices.clear();
+        revision.incrementAndGet();
         
         int loadedCount = 0;
         int skippedCount = 0;
@@ -88,6 +96,7 @@ public class Allowlist {
                             skippedCount++;
                         } else {
                             allowedDevices.put(macKey, device);
+                            revision.incrementAndGet();
                             loadedCount++;
                         }
                     } else {
@@ -143,6 +152,11 @@ public class Allowlist {
      * Save allowlist to file with beautiful formatting
      */
     public void saveAllowlist() {
+        writeFile(allowedDevices);
+    }
+    
+    private void writeFile(Map<String, DeviceInfo> allowedDevices) {
+        long start = System.nanoTime();
         try {
             List<String> lines = new ArrayList<>();
             
@@ -175,6 +189,7 @@ public class Allowlist {
             lines.add("==================================================================");
             
             Files.write(allowlistPath, lines);
+            saveLatency.record(System.nanoTime() - start);
             logger.info("Allowlist saved with " + allowedDevices.size() + " devices");
             
         } catch (IOException e) {
@@ -206,7 +221,7 @@ public class Allowlist {
     /**
      * Auto-add discovered device to allowlist (for new devices found during scan)
      */
-    public boolean autoAddDiscoveredDevice(DeviceInfo device) {
+    public synchronized boolean autoAddDiscoveredDevice(DeviceInfo device) {
         if (device == null || !device.isValid()) {
             logger.warning("Cannot auto-add invalid device: " + (device != null ? device.getValidationErrors() : "null"));
             return false;
@@ -222,6 +237,7 @@ public class Allowlist {
         // Create a new device instance with known=true
         DeviceInfo allowlistDevice = device.withKnown(true);
         allowedDevices.put(macKey, allowlistDevice);
+        revision.incrementAndGet();
         
         logger.info("Device auto-added to allowlist: " + device.toCompactString());
         
@@ -232,6 +248,7 @@ public class Allowlist {
         } catch (Exception e) {
             // Rollback on save failure
             allowedDevices.remove(macKey);
+            revision.incrementAndGet();
             logger.log(Level.SEVERE, "Failed to save allowlist after auto-adding device, rolling back", e);
             return false;
         }
@@ -240,7 +257,7 @@ public class Allowlist {
     /**
      * Add device to allowlist
      */
-    public boolean addDevice(DeviceInfo device) {
+    public synchronized boolean addDevice(DeviceInfo device) {
         if (device == null || !device.isValid()) {
             logger.warning("Cannot add invalid device: " + (device != null ? device.getValidationErrors() : "null"));
             return false;
@@ -256,6 +273,7 @@ public class Allowlist {
         // Create a new device instance with known=true
         DeviceInfo allowlistDevice = device.withKnown(true);
         allowedDevices.put(macKey, allowlistDevice);
+        revision.incrementAndGet();
         
         logger.info("Device added to allowlist: " + device.toCompactString());
         
@@ -266,6 +284,7 @@ public class Allowlist {
         } catch (Exception e) {
             // Rollback on save failure
             allowedDevices.remove(macKey);
+            revision.incrementAndGet();
             logger.log(Level.SEVERE, "Failed to save allowlist after adding device, rolling back", e);
             return false;
         }
@@ -274,7 +293,7 @@ public class Allowlist {
     /**
      * Remove device from allowlist
      */
-    public boolean removeDevice(String mac) {
+    public synchronized boolean removeDevice(String mac) {
         if (mac == null || mac.trim().isEmpty()) {
             logger.warning("Cannot remove device with null/empty MAC");
             return false;
@@ -287,6 +306,7 @@ public class Allowlist {
             logger.info("Device not found in allowlist: " + mac);
             return false;
         }
+        revision.incrementAndGet();
         
         logger.info("Device removed from allowlist: " + removed.toCompactString());
         
@@ -297,11 +317,97 @@ public class Allowlist {
         } catch (Exception e) {
             // Rollback on save failure
             allowedDevices.put(macKey, removed);
+            revision.incrementAndGet();
             logger.log(Level.SEVERE, "Failed to save allowlist after removing device, rolling back", e);
             return false;
         }
     }
     
+    /**
+     * Outcome of one operation of a batch
+     */
+    public enum BatchResult {
+        ADDED, REMOVED, EXISTS, NOT_FOUND, INVALID;
+        
+        public boolean isApplied() {
+            return this == ADDED || this == REMOVED;
+        }
+    }
+    
+    /**
+     * One ADD or DEL of a batch
+     */
+    public static final class Mutation {
+        private final DeviceInfo device; // null cho DEL
+        private final String mac;
+        
+        private Mutation(DeviceInfo device, String mac) {
+            this.device = device;
+            this.mac = mac;
+        }
+        
+        public static Mutation add(DeviceInfo device) {
+            return new Mutation(device, device != null ? device.getMac() : null);
+        }
+        
+        public static Mutation remove(String mac) {
+            return new Mutation(null, mac);
+        }
+        
+        public boolean isAdd() {
+            return device != null;
+        }
+        
+        public String getMac() {
+            return mac;
+        }
+    }
+    
+    /**
+     * Apply a batch of adds and removes with a single file write. The batch
+     * works on a copy of the map that replaces the live one only after the
+     * file is saved, so readers see either none or all of it and a failed
+     * save leaves the allowlist untouched. Operations that cannot apply
+     * (duplicate, unknown MAC, invalid device) are reported and skipped.
+     *
+     * @return one result per mutation, in order
+     * @throws RuntimeException if the file cannot be written; nothing is applied
+     */
+    public synchronized List<BatchResult> applyBatch(List<Mutation> mutations) {
+        Map<String, DeviceInfo> next = new ConcurrentHashMap<>(allowedDevices);
+        List<BatchResult> results = new ArrayList<>(mutations.size());
+        int applied = 0;
+        for (Mutation mutation : mutations) {
+            BatchResult result;
+            if (mutation.isAdd()) {
+                if (!mutation.device.isValid()) {
+                    result = BatchResult.INVALID;
+                } else {
+                    String macKey = mutation.mac.toLowerCase();
+                    result = next.putIfAbsent(macKey, mutation.device.withKnown(true)) == null
+                            ? BatchResult.ADDED : BatchResult.EXISTS;
+                }
+            } else if (mutation.mac == null || mutation.mac.trim().isEmpty()) {
+                result = BatchResult.INVALID;
+            } else {
+                result = next.remove(mutation.mac.trim().toLowerCase()) != null
+                        ? BatchResult.REMOVED : BatchResult.NOT_FOUND;
+            }
+            if (result.isApplied()) {
+                applied++;
+            }
+            results.add(result);
+        }
+        
+        if (applied > 0) {
+            writeFile(next);
+            allowedDevices = next;
+            revision.incrementAndGet();
+        }
+        logger.info("Allowlist batch applied: " + applied + "/" + mutations.size() + " operations");
+        return results;
+    }
+    
     /**
      * Check if device is allowed
      */
@@ -325,6 +431,27 @@ public class Allowlist {
         return new ArrayList<>(allowedDevices.values());
     }
     
+    /**
+     * Read-only, weakly consistent view for streaming without copying the list
+     */
+    public Collection<DeviceInfo> iterateDevices() {
+        return Collections.unmodifiableCollection(allowedDevices.values());
+    }
+    
+    /**
+     * Counter bumped by every add, remove or reload; used as cache key for ALLOWLIST
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+    
+    /**
+     * Time taken by each successful saveAllowlist()
+     */
+    public LatencyHistogram getSaveLatency() {
+        return saveLatency;
+    }
+    
     /**
      * Get device count
      */
@@ -342,9 +469,10 @@ public class Allowlist {
     /**
      * Clear all devices from allowlist
      */
-    public void clear() {
+    public synchronized void clear() {
         int count = allowedDevices.size();
         allowedDevices.clear();
+        revision.incrementAndGet();
         logger.info("Allowlist cleared, removed " + count + " devices");
         
         try {
@@ -0,0 +1,123 @@
+package com.wifiguard.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.wifiguard.server.model.DeviceInfo;
+import com.wifiguard.server.protocol.AllowlistCodec;
+
+/**
+ * State of one IMPORT stream on a session: record lines are validated as they
+ * arrive and applied to the allowlist every chunkSize devices through
+ * {@link Allowlist#applyBatch}, so memory stays at one chunk however long the
+ * stream is and each chunk costs a single file write.
+ */
+class AllowlistImport {
+    private static final Logger logger = Logger.getLogger(AllowlistImport.class.getName());
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final Allowlist allowlist;
+    private final AllowlistCodec.Format format;
+    private final int chunkSize;
+    private final String requestId;
+    private final List<Allowlist.Mutation> chunk;
+    private final List<String> errors = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private long lines;
+    private long records;
+    private long added;
+    private long existing;
+    private long invalid;
+
+    AllowlistImport(Allowlist allowlist, AllowlistCodec.Format format, int chunkSize, String requestId) {
+        this.allowlist = allowlist;
+        this.format = format;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.requestId = requestId;
+        this.chunk = new ArrayList<>(this.chunkSize);
+    }
+
+    /**
+     * Validate one data line and queue its records; applies a chunk once full
+     *
+     * @throws RuntimeException if the allowlist file cannot be written
+     */
+    void accept(String line) {
+        lines++;
+        if (line.startsWith("#")) {
+            return; // dong chu thich
+        }
+        if (format == AllowlistCodec.Format.CSV) {
+            add(AllowlistCodec.parseCsv(line));
+            return;
+        }
+        try {
+            AllowlistCodec.decodeBinaryLine(line, this::add);
+        } catch (IllegalArgumentException e) {
+            reject("dong " + lines + ": " + e.getMessage());
+        }
+    }
+
+    private void add(DeviceInfo device) {
+        records++;
+        if (device == null || !device.isValid()) {
+            reject("dong " + lines + ": " + (device == null ? "sai dinh dang" : device.getValidationErrors()));
+            return;
+        }
+        chunk.add(Allowlist.Mutation.add(device));
+        if (chunk.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    private void reject(String error) {
+        invalid++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    private void flush() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (Allowlist.BatchResult result : allowlist.applyBatch(chunk)) {
+            if (result == Allowlist.BatchResult.ADDED) {
+                added++;
+            } else if (result == Allowlist.BatchResult.EXISTS) {
+                existing++;
+            } else {
+                invalid++;
+            }
+        }
+        chunk.clear();
+        logger.fine("IMPORT: " + records + " ban ghi, " + added + " da them");
+    }
+
+    /**
+     * Apply the last partial chunk and summarise the stream
+     */
+    String finish() {
+        flush();
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return "IMPORT " + format + ": " + records + " ban ghi, " + added + " da them, " + existing +
+                " da co, " + invalid + " loi trong " + elapsedMs + " ms (" + (records * 1000 / elapsedMs) + " ban ghi/s)";
+    }
+
+    /**
+     * Records applied by the chunks written so far
+     */
+    long getAdded() {
+        return added;
+    }
+
+    List<String> getErrors() {
+        return errors;
+    }
+
+    String getRequestId() {
+        return requestId;
+    }
+}
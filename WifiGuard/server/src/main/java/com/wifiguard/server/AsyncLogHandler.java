@@ -0,0 +1,200 @@
+package com.wifiguard.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Logging handler that never blocks the caller on I/O. Records go into a
+ * bounded multi-producer ring buffer and a single background appender thread
+ * hands them to the real handlers (file, console). When the ring is full,
+ * records below WARNING are dropped and counted; warnings and errors are
+ * written synchronously instead so they are never lost.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final long IDLE_PARK_NANOS = 100_000_000L; // 100 ms
+    private static final long FLUSH_TIMEOUT_NANOS = 2_000_000_000L;
+
+    private final Handler[] targets;
+    private final int capacity;
+    private final int mask;
+    private final LogRecord[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final Thread appender;
+    private volatile long head;
+    private volatile boolean appenderIdle;
+    private volatile boolean closed;
+    private long droppedReported;
+
+    /**
+     * @param capacity ring size, rounded up to a power of two
+     * @param targets  handlers the appender thread writes to
+     */
+    public AsyncLogHandler(int capacity, Handler... targets) {
+        this.targets = targets.clone();
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new LogRecord[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.appender = new Thread(this::runAppender, "WifiGuard-LogAppender");
+        this.appender.setDaemon(true);
+        this.appender.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (record == null || closed || !isLoggable(record)) {
+            return;
+        }
+        // Source class is inferred from the stack on first access; do it on the caller's thread
+        record.getSourceClassName();
+
+        if (!offer(record)) {
+            if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                write(record);
+            } else {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        if (appenderIdle) {
+            LockSupport.unpark(appender);
+        }
+    }
+
+    /**
+     * Claim a slot with a CAS on tail; false when the ring is full
+     */
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = record;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Next published record, or null when the ring is empty; appender thread only
+     */
+    private LogRecord poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        LogRecord record = slots[index];
+        slots[index] = null;
+        sequences.set(index, position + capacity);
+        head = position + 1;
+        return record;
+    }
+
+    private void runAppender() {
+        while (true) {
+            LogRecord record = poll();
+            if (record != null) {
+                write(record);
+                continue;
+            }
+
+            flushTargets();
+            reportDropped();
+            if (closed) {
+                return;
+            }
+            appenderIdle = true;
+            // Re-check after announcing idle so a concurrent publish is not missed
+            if (head == tail.get()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            appenderIdle = false;
+        }
+    }
+
+    private void write(LogRecord record) {
+        for (Handler target : targets) {
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError("Log target failed", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    private void flushTargets() {
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total > droppedReported) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Hang doi log day, da bo qua " + (total - droppedReported) + " ban ghi");
+            record.setLoggerName(AsyncLogHandler.class.getName());
+            write(record);
+            droppedReported = total;
+        }
+    }
+
+    /**
+     * Wait until everything published so far has been written, bounded by a timeout
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        LockSupport.unpark(appender);
+        while (head < target && appender.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000L);
+        }
+        flushTargets();
+    }
+
+    /**
+     * Drain the ring, stop the appender and close the targets
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        LockSupport.unpark(appender);
+        try {
+            appender.join(FLUSH_TIMEOUT_NANOS / 1_000_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+    public long getDropped() { return dropped.get(); }
+    public int getQueued() { return (int) (tail.get() - head); }
+}
@@ -1,39 +1,37 @@
 package com.wifiguard.server;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.*;
-import com.wifiguard.server.model.DeviceInfo;
+import com.wifiguard.server.metrics.CommandMetrics;
 import com.wifiguard.server.protocol.Command;
+import com.wifiguard.server.protocol.Frame;
+import com.wifiguard.server.protocol.FrameCompressor;
+import com.wifiguard.server.protocol.MessageDecoder;
 import com.wifiguard.server.protocol.Response;
 
 /**
  * Client handler nang cao voi xu ly lenh va validation duoc cai thien
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, SessionOutput, IdleSessionWheel.Session, ConnectionRegistry.Connection {
     private static final Logger logger = Logger.getLogger(ClientHandler.class.getName());
     
     // Constants cho configuration
     private static final int DEFAULT_READ_TIMEOUT = 120000; // 120 giây
     private static final int SOCKET_BUFFER_SIZE = 32768; // 32KB
-    private static final int MAX_RETRIES = 3;
-    private static final int MAX_RETRY_SEND = 2;
-    private static final int SUCCESS_SLEEP_MS = 25;
-    private static final int RETRY_DELAY_MULTIPLIER = 50;
-    private static final int PING_DELAY_MS = 1000;
+    private static final int DEFAULT_MAX_PACKET_SIZE = 65536;
+    private static final int DRAIN_TIMEOUT_MS = 5000;
     private static final String ENCODING = "UTF-8";
-    private static final String DEFAULT_HOSTNAME = "Unknown";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
     
     // Constants cho performance thresholds
-    private static final int SLOW_COMMAND_THRESHOLD_MS = 1000; // 1 giây
     private static final int MILLISECONDS_PER_SECOND = 1000;
     private static final int SECONDS_PER_MINUTE = 60;
     private static final int BYTES_PER_KB = 1024;
@@ -46,28 +44,36 @@ public class ClientHandler implements Runnable {
     private static final String UNIT_BYTES = " B";
     private static final String UNIT_KB = " KB";
     private static final String UNIT_MB = " MB";
-    private static final String UNIT_BYTES_LABEL = " bytes";
     
     // Constants cho tiếng Việt
-    private static final String VIETNAMESE_LAN = " lan";
     private static final String VIETNAMESE_TIMEOUT = " timeout";
     private static final String VIETNAMESE_DONG_KET_NOI = " dong ket noi";
     private static final String VIETNAMESE_DAU = " dau";
-    private static final String VIETNAMESE_THU = " thu";
     private static final String VIETNAMESE_CHO_CLIENT = " cho client";
     private static final String VIETNAMESE_DEN = " den";
-    private static final String VIETNAMESE_MAT = " mat ";
     private static final String VIETNAMESE_THOI_GIAN = " - Thoi gian: ";
     
     private final Socket clientSocket;
     private final Allowlist allowlist;
     private final DeviceMonitor deviceMonitor;
     private final ServerMain serverMain;
+    private final CommandProcessor commandProcessor;
     
-    private BufferedReader reader;
-    private PrintWriter writer;
+    private InputStream input;
+    private MessageDecoder decoder;
+    private byte[] readBuffer;
+    private SessionBufferPool bufferPool; // null khi chay khong co ServerMain
+    private SessionBufferPool.Buffers buffers; // muon tu pool, tra lai trong cleanup
+    private volatile boolean framed; // doc ca tu luong timing wheel khi gui PING
+    private volatile FrameCompressor compressor; // sau HELLO ... DEFLATE
+    private OutboundQueue outbound;
     private String clientAddress;
     private int readTimeout; // Them bien readTimeout vao class scope
+    private IdleSessionWheel.Handle idleHandle; // null khi chay khong co ServerMain
+    private volatile boolean busy; // dang xu ly lenh, wheel khong chen PING vao giua response
+    private volatile boolean draining; // sau CONNECTIONS DRAIN hoac khi shutdown: khong doc lenh moi
+    private final long connectionId;
+    private final ConnectionRegistry registry; // null khi chay khong co ServerMain
     
     // Cac chi so hieu suat
     private final long connectionStartTime;
@@ -81,6 +87,9 @@ public class ClientHandler implements Runnable {
         this.deviceMonitor = deviceMonitor;
         this.serverMain = serverMain;
         this.clientAddress = clientSocket.getInetAddress().getHostAddress();
+        this.commandProcessor = new CommandProcessor(allowlist, deviceMonitor, serverMain, clientAddress);
+        this.registry = serverMain != null ? serverMain.getConnectionRegistry() : null;
+        this.connectionId = registry != null ? registry.nextConnectionId() : 0;
         
         // Khoi tao cac chi so
         this.connectionStartTime = System.currentTimeMillis();
@@ -92,13 +101,23 @@ public class ClientHandler implements Runnable {
     @Override
     public void run() {
         try {
-            serverMain.incrementActiveConnections();
+            if (serverMain != null) {
+                serverMain.incrementActiveConnections();
+            }
             setupStreams();
+            if (registry != null) {
+                registry.register(this);
+            }
             handleClient();
         } catch (IOException e) {
             logger.log(Level.WARNING, "Loi xu ly client: " + clientAddress, e);
         } finally {
-            serverMain.decrementActiveConnections();
+            if (registry != null) {
+                registry.unregister(this);
+            }
+            if (serverMain != null) {
+                serverMain.decrementActiveConnections();
+            }
             logConnectionStats();
             cleanup();
         }
@@ -109,11 +128,18 @@ public class ClientHandler implements Runnable {
      */
     private void setupStreams() throws IOException {
         // Lay gia tri timeout tu cau hinh - TANG LEN 120 GIAY de giam PING
-        String readTimeoutStr = serverMain.getConfig().getProperty("server.readTimeout", String.valueOf(DEFAULT_READ_TIMEOUT));
+        String readTimeoutStr = serverMain != null
+                ? serverMain.getConfig().getProperty("server.readTimeout", String.valueOf(DEFAULT_READ_TIMEOUT))
+                : String.valueOf(DEFAULT_READ_TIMEOUT);
         this.readTimeout = Integer.parseInt(readTimeoutStr);
+        int maxPacketSize = serverMain != null
+                ? Integer.parseInt(serverMain.getConfig().getProperty("network.maxPacketSize", String.valueOf(DEFAULT_MAX_PACKET_SIZE)))
+                : DEFAULT_MAX_PACKET_SIZE;
         
-        // Cau hinh socket
-        clientSocket.setSoTimeout(this.readTimeout);
+        // Cau hinh socket: timing wheel cua ServerMain lo PING/dong phien idle,
+        // SO_TIMEOUT chi con dung khi chay khong co ServerMain
+        IdleSessionWheel idleWheel = serverMain != null ? serverMain.getIdleWheel() : null;
+        clientSocket.setSoTimeout(idleWheel != null ? 0 : this.readTimeout);
         clientSocket.setKeepAlive(true);
         clientSocket.setTcpNoDelay(true);
         clientSocket.setReuseAddress(true);
@@ -122,9 +148,27 @@ public class ClientHandler implements Runnable {
         clientSocket.setReceiveBufferSize(SOCKET_BUFFER_SIZE);
         clientSocket.setSendBufferSize(SOCKET_BUFFER_SIZE);
         
-        // Su dung UTF-8 encoding
-        reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), ENCODING));
-        writer = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream(), ENCODING), true);
+        // Doc theo byte: MessageDecoder tach dong (UTF-8) hoac frame sau HELLO FRAMED
+        // Buffer doc/ghi va decoder muon tu pool dung chung, khong cap phat lai moi lan ket noi
+        input = clientSocket.getInputStream();
+        OutputStream socketOutput = clientSocket.getOutputStream();
+        bufferPool = serverMain != null ? serverMain.getSessionBufferPool() : null;
+        OutputStream out;
+        if (bufferPool != null) {
+            buffers = bufferPool.acquire();
+            decoder = buffers.decoder;
+            readBuffer = buffers.readBuffer;
+            out = buffers.wrap(socketOutput);
+        } else {
+            decoder = new MessageDecoder(maxPacketSize);
+            readBuffer = new byte[SOCKET_BUFFER_SIZE];
+            out = new BufferedOutputStream(socketOutput, SOCKET_BUFFER_SIZE);
+        }
+        outbound = new OutboundQueue(out, bytesSent, this::onWriteError);
+        commandProcessor.attachSession(this);
+        if (idleWheel != null) {
+            idleHandle = idleWheel.register(this);
+        }
         
         logger.info("Streams da duoc cau hinh" + VIETNAMESE_CHO_CLIENT + ": " + clientAddress + 
                    " (timeout: " + this.readTimeout + UNIT_MILLISECONDS + ", encoding: " + ENCODING + ", buffer: " + (SOCKET_BUFFER_SIZE/BYTES_PER_KB) + UNIT_KB + ")");
@@ -139,12 +183,11 @@ public class ClientHandler implements Runnable {
         sendResponse(Response.success("Chao mung den voi WifiGuard Server"));
         
         String inputLine;
-        int retryCount = 0;
         
         while (true) {
             try {
                 // Doc lenh tu client voi timeout
-                inputLine = reader.readLine();
+                inputLine = readMessage();
                 
                 if (inputLine == null) {
                     logger.info("Client da ngat ket noi: " + clientAddress);
@@ -152,72 +195,67 @@ public class ClientHandler implements Runnable {
                 }
                 
                 inputLine = inputLine.trim();
-                logger.info("Nhan duoc tu client: '" + inputLine + "' (length: " + inputLine.length() + ")");
-                
-                if (inputLine.isEmpty()) {
-                    logger.info("Bo qua lenh rong");
-                    continue;
+                busy = true;
+                Response response;
+                try {
+                    response = commandProcessor.process(inputLine);
+                    
+                    if (response == null) {
+                        continue;
+                    }
+                    
+                    // LIST STREAM da tu ghi cac khoi ra socket
+                    if (!response.isStreamed()) {
+                        sendResponse(response, commandProcessor.getLastCommand());
+                    }
+                    
+                    // HELLO FRAMED: response tren da gui dang text, tu day dung frame
+                    if (!framed && commandProcessor.isFramed()) {
+                        decoder.setFramed(true);
+                        framed = true;
+                    }
+                    // HELLO ... DEFLATE: nen cac frame gui sau response HELLO
+                    if (compressor == null && commandProcessor.getCompressor() != null) {
+                        compressor = commandProcessor.getCompressor();
+                    }
+                } finally {
+                    busy = false;
+                    if (idleHandle != null) {
+                        idleHandle.touch();
+                    }
                 }
                 
-                // Reset retry count khi nhan duoc lenh thanh cong
-                retryCount = 0;
-                
-                // Theo doi bytes nhan duoc
+                // Theo doi bytes nhan duoc va lenh da xu ly
                 bytesReceived.addAndGet(inputLine.length());
-                
-                logger.info("Dang xu ly lenh: " + inputLine);
-                
-                long startTime = System.currentTimeMillis();
-                Response response = executeCommand(inputLine);
-                long processingTime = System.currentTimeMillis() - startTime;
-                
-                // Theo doi xu ly lenh
                 commandsProcessed.incrementAndGet();
-                serverMain.incrementCommandCount();
-                
-                // Ghi log chi so hieu suat cho cac lenh cham
-                if (processingTime > SLOW_COMMAND_THRESHOLD_MS) {
-                    logger.warning("Xu ly lenh cham: " + inputLine + VIETNAMESE_MAT + processingTime + UNIT_MILLISECONDS);
-                }
-                
-                logger.info("Gui response: " + response.toString());
-                sendResponse(response);
                 
                 // Khong gui confirmation nua de tranh lap
-                if (shouldQuit(inputLine, response)) {
+                if (CommandProcessor.shouldQuit(inputLine, response)) {
                     logger.info("Client yeu cau thoat");
                     break;
                 }
-                
-            } catch (java.net.SocketTimeoutException e) {
-                retryCount++;
-                logger.warning("Socket timeout" + VIETNAMESE_LAN + " " + retryCount + VIETNAMESE_CHO_CLIENT + ": " + clientAddress + " (" + this.readTimeout + UNIT_MILLISECONDS + ")");
-                
-                if (retryCount >= MAX_RETRIES) {
-                    logger.warning("Da timeout " + MAX_RETRIES + " lan, dong ket noi: " + clientAddress);
+                // Dang drain: cleanup() gui not response roi dong ket noi
+                if (draining) {
                     break;
                 }
                 
-                // Chi gui PING khi thuc su can thiet - giam so lan PING
-                if (retryCount == 1) {
-                    // Lan dau timeout - khong gui PING, chi log
-                    logger.info("Lan dau timeout, khong gui PING - cho client doc response");
-                } else {
-                    // Lan 2, 3 - gui PING de kiem tra ket noi
-                    try {
-                        logger.info("Gui PING" + VIETNAMESE_THU + " " + retryCount + " de kiem tra ket noi");
-                        sendResponse(Response.success("PING - Kiem tra ket noi"));
-                        
-                        // Doi mot chut truoc khi thu lai
-                        Thread.sleep(PING_DELAY_MS);
-                    } catch (Exception pingEx) {
-                        logger.warning("Khong the gui PING, dong ket noi: " + clientAddress);
-                        break;
-                    }
+            } catch (java.net.SocketTimeoutException e) {
+                // Chi xay ra khi khong co timing wheel; phien SUBSCRIBE duoc phep im lang
+                if (commandProcessor.isSubscribed()) {
+                    continue;
                 }
-                
+                logger.warning("Socket timeout" + VIETNAMESE_CHO_CLIENT + ": " + clientAddress + " (" + this.readTimeout + UNIT_MILLISECONDS + "), dong ket noi");
+                break;
+            } catch (IllegalStateException e) {
+                logger.warning("Lenh qua dai tu client: " + clientAddress + " - " + e.getMessage());
+                sendResponse(Response.error("Lenh qua dai: " + e.getMessage()));
+                break;
             } catch (IOException e) {
-                logger.log(Level.WARNING, "Loi doc tu client: " + clientAddress, e);
+                if (draining) {
+                    logger.log(Level.FINE, "Ket noi da dong khi drain: " + clientAddress, e);
+                } else {
+                    logger.log(Level.WARNING, "Loi doc tu client: " + clientAddress, e);
+                }
                 break;
             } catch (Exception e) {
                 logger.log(Level.SEVERE, "Loi khong mong doi tu client: " + clientAddress, e);
@@ -228,6 +266,26 @@ public class ClientHandler implements Runnable {
         logger.info("Ket thuc xu ly client: " + clientAddress);
     }
     
+    /**
+     * Doc message tiep theo (dong hoac frame), null khi client dong ket noi
+     */
+    private String readMessage() throws IOException {
+        while (true) {
+            String message = decoder.pollMessage();
+            if (message != null) {
+                return message;
+            }
+            int read = input.read(readBuffer);
+            if (read < 0) {
+                return null;
+            }
+            if (idleHandle != null) {
+                idleHandle.touch();
+            }
+            decoder.append(readBuffer, 0, read);
+        }
+    }
+    
     /**
      * Ghi log thong ke ket noi
      */
@@ -263,272 +321,149 @@ public class ClientHandler implements Runnable {
     }
     
     /**
-     * Thuc thi mot lenh va tra ve response
+     * Gui response den client: chi dua vao hang doi, writer stage se ghi va flush
      */
-    private Response executeCommand(String inputLine) {
-        try {
-            String[] parts = inputLine.split("\\s+", 4); // Ho tro toi da 4 phan cho lenh ADD
-            String commandStr = parts[0].toUpperCase();
-            
-            if (commandStr.isEmpty()) {
-                return Response.error("Lenh rong");
-            }
-            
-            // Su dung Command enum nang cao de phan tich va validation
-            Command command;
-            try {
-                command = Command.parse(commandStr);
-            } catch (IllegalArgumentException e) {
-                return Response.error(e.getMessage() + ". Go 'HELP' de xem cac lenh co san.");
-            }
-            
-            // Kiem tra so luong tham so
-            int argCount = parts.length - 1;
-            String validationMessage = command.getArgValidationMessage(argCount);
-            if (validationMessage != null) {
-                return Response.error(validationMessage);
-            }
-            
-            switch (command) {
-                case LIST:
-                    return handleListCommand();
-                case ALLOWLIST:
-                    return handleAllowlistCommand();
-                case ADD:
-                    return handleAddCommand(parts);
-                case DEL:
-                    return handleDelCommand(parts);
-                case STATUS:
-                    return handleStatusCommand();
-                case QUIT:
-                    return Response.success("Tam biet!");
-                default:
-                    return Response.error("Lenh chua duoc implement: " + command);
-            }
-            
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Loi thuc thi lenh: " + inputLine, e);
-            return Response.error("Loi server noi bo: " + e.getMessage());
-        }
+    private void sendResponse(Response response) {
+        sendResponse(response, null);
     }
     
     /**
-     * Xu ly lenh LIST
+     * Gui response cua mot lenh; ghi do tre SERIALIZE va WRITE vao CommandMetrics
+     *
+     * @param command lenh da tao response, null cho loi chao, PING va su kien
      */
-    private Response handleListCommand() {
-        try {
-            logger.info("Dang xu ly lenh LIST");
-            
-            if (deviceMonitor == null) {
-                logger.severe("DeviceMonitor la null!");
-                return Response.error("Loi: DeviceMonitor khong duoc khoi tao");
-            }
-            
-            // Lay thiết bị từ DeviceMonitor (thiết bị được phát hiện trên mạng)
-            List<DeviceInfo> discoveredDevices = deviceMonitor.getAllDevices();
-            logger.info("Lay duoc " + (discoveredDevices != null ? discoveredDevices.size() : "null") + " thiet bi tu DeviceMonitor");
-            
-            if (discoveredDevices == null) {
-                logger.warning("DeviceMonitor.getAllDevices() tra ve null");
-                return Response.error("Loi: Khong the lay danh sach thiet bi");
-            }
-            
-            if (discoveredDevices.isEmpty()) {
-                return Response.success("Khong co thiet bi nao duoc phat hien tren mang");
-            }
-            
-            logger.info("Tim thay " + discoveredDevices.size() + " thiet bi tren mang");
-            return Response.success("Tim thay " + discoveredDevices.size() + " thiet bi tren mang", discoveredDevices);
-            
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Loi trong handleListCommand", e);
-            return Response.error("Loi khi xu ly lenh LIST: " + e.getMessage());
+    private void sendResponse(Response response, Command command) {
+        long start = System.nanoTime();
+        // Response tu ResponseCache da co san bytes UTF-8, khong dinh dang lai
+        byte[] encoded = response.encode(Response.ResponseFormat.BEAUTIFUL, framed, LINE_SEPARATOR);
+        FrameCompressor compressor = this.compressor;
+        if (compressor != null) {
+            encoded = compressor.compress(encoded);
+        }
+        Runnable onWritten = null;
+        if (command != null) {
+            CommandMetrics metrics = commandProcessor.getMetrics();
+            long enqueued = System.nanoTime();
+            metrics.record(command, CommandMetrics.Phase.SERIALIZE, enqueued - start);
+            onWritten = () -> metrics.record(command, CommandMetrics.Phase.WRITE, System.nanoTime() - enqueued);
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Dang gui response dep: " + response.getSummary() + " (" + encoded.length + " bytes)");
         }
+        
+        if (!outbound.enqueue(encoded, onWritten)) {
+            logger.warning("Khong the gui response" + VIETNAMESE_DEN + " " + clientAddress + ": ket noi da loi hoac da dong");
+        }
+    }
+    
+    @Override
+    public void send(Response response) {
+        sendResponse(response);
     }
     
     /**
-     * Xu ly lenh ALLOWLIST
+     * Gui mot khoi cua response dang stream; frame co co CONTINUED tru khoi cuoi
      */
-    private Response handleAllowlistCommand() {
-        try {
-            logger.info("Dang xu ly lenh ALLOWLIST");
-            
-            // Lay thiết bị từ allowlist (thiết bị được phép)
-            List<DeviceInfo> allowedDevices = allowlist.getAllDevices();
-            logger.info("Lay duoc " + (allowedDevices != null ? allowedDevices.size() : "null") + " thiet bi tu allowlist");
-            
-            if (allowedDevices == null) {
-                logger.warning("Allowlist.getAllDevices() tra ve null");
-                return Response.error("Loi: Khong the lay danh sach allowlist");
-            }
-            
-            if (allowedDevices.isEmpty()) {
-                return Response.success("Khong co thiet bi nao trong allowlist");
-            }
-            
-            logger.info("Tim thay " + allowedDevices.size() + " thiet bi trong allowlist");
-            return Response.success("Tim thay " + allowedDevices.size() + " thiet bi trong allowlist", allowedDevices);
-            
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Loi trong handleAllowlistCommand", e);
-            return Response.error("Loi khi xu ly lenh ALLOWLIST: " + e.getMessage());
+    @Override
+    public void sendChunk(String text, boolean last) {
+        byte[] encoded = framed
+                ? Frame.encode(last ? Frame.FLAG_NONE : Frame.FLAG_CONTINUED, text.getBytes(StandardCharsets.UTF_8))
+                : (last ? text + LINE_SEPARATOR : text).getBytes(StandardCharsets.UTF_8);
+        FrameCompressor compressor = this.compressor;
+        if (compressor != null) {
+            encoded = compressor.compress(encoded);
         }
+        if (!outbound.enqueue(encoded)) {
+            logger.warning("Khong the gui khoi stream" + VIETNAMESE_DEN + " " + clientAddress + ": ket noi da loi hoac da dong");
+        }
+    }
+    
+    @Override
+    public int getPendingCount() {
+        return outbound.getPendingCount();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return !clientSocket.isClosed() && !outbound.hasFailed();
     }
     
     /**
-     * Xu ly lenh ADD su dung DeviceInfo builder
+     * Ngung doc lenh moi, gui not response trong hang doi roi dong. Dang xu ly
+     * lenh thi vong doc tu thoat sau lenh do; dang cho doc thi socket duoc dong
+     * tu writer stage ngay sau khi hang doi da ghi het.
      */
-    private Response handleAddCommand(String[] parts) {
-        String mac = parts[1];
-        String hostname = parts.length > 2 ? parts[2] : DEFAULT_HOSTNAME;
-        String ip = parts.length > 3 ? parts[3] : "";
-        
-        logger.info("Dang xu ly lenh ADD: MAC=" + mac + ", HOSTNAME=" + hostname + ", IP=" + ip);
-        
-        // Su dung DeviceInfo builder de validation
-        DeviceInfo device = DeviceInfo.builder()
-                .mac(mac)
-                .hostname(hostname)
-                .ip(ip)
-                .buildOrNull();
-        
-        if (device == null) {
-            logger.warning("DeviceInfo builder tra ve null cho MAC: " + mac);
-            return Response.error("Dinh dang MAC khong hop le: " + mac + 
-                               ". Dinh dang mong doi: XX:XX:XX:XX:XX:XX");
-        }
-        
-        logger.info("DeviceInfo da tao: " + device.toCompactString() + ", isValid=" + device.isValid());
-        
-        if (!device.isValid()) {
-            String errors = device.getValidationErrors();
-            logger.warning("Validation thiet bi that bai: " + errors);
-            return Response.error("Validation thiet bi that bai: " + errors);
+    @Override
+    public void drain() {
+        draining = true;
+        if (busy) {
+            return;
         }
-        
-        try {
-            logger.info("Dang them thiet bi vao allowlist: " + mac);
-            boolean added = allowlist.addDevice(device);
-            
-            if (added) {
-                logger.info("Thiet bi da duoc them vao allowlist: " + mac + " (" + hostname + ") boi " + clientAddress);
-                return Response.success("Thiet bi da duoc them thanh cong: " + mac);
-            } else {
-                logger.info("Thiet bi voi MAC " + mac + " da co trong allowlist");
-                return Response.error("Thiet bi voi MAC " + mac + " da co trong allowlist");
-            }
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Loi them thiet bi: " + mac, e);
-            return Response.error("Khong the them thiet bi: " + e.getMessage());
+        if (outbound == null || !outbound.enqueue(new byte[0], this::close)) {
+            close();
         }
     }
     
+    @Override
+    public long getConnectionId() {
+        return connectionId;
+    }
+    
+    @Override
+    public String getMode() {
+        return clientSocket instanceof SSLSocket ? "tls" : "tcp";
+    }
+    
+    @Override
+    public boolean isSubscribed() {
+        return commandProcessor.isSubscribed();
+    }
+    
     /**
-     * Xu ly lenh DEL
+     * Dong socket; vong doc se ket thuc va cleanup() giai phong tai nguyen
      */
-    private Response handleDelCommand(String[] parts) {
-        String mac = parts[1];
-        
-        // Kiem tra MAC address su dung DeviceInfo
-        if (!DeviceInfo.createFromMac(mac).hasValidMac()) {
-            return Response.error("Dinh dang MAC khong hop le: " + mac + 
-                               ". Dinh dang mong doi: XX:XX:XX:XX:XX:XX");
-        }
-        
+    @Override
+    public void close() {
         try {
-            boolean removed = allowlist.removeDevice(mac);
-            
-            if (removed) {
-                logger.info("Thiet bi da duoc xoa khoi allowlist: " + mac + " boi " + clientAddress);
-                return Response.success("Thiet bi da duoc xoa thanh cong: " + mac);
-            } else {
-                return Response.error("Thiet bi voi MAC " + mac + " khong tim thay trong allowlist");
-            }
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Loi xoa thiet bi: " + mac, e);
-            return Response.error("Khong the xoa thiet bi: " + e.getMessage());
+            clientSocket.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Loi dong socket cho " + clientAddress, e);
         }
     }
     
+    @Override
+    public boolean isIdleExempt() {
+        // Phien SUBSCRIBE duoc phep im lang, su kien van duoc day xuong
+        return busy || commandProcessor.isSubscribed();
+    }
+    
     /**
-     * Xu ly lenh STATUS
+     * Goi tu timing wheel: chi dua PING vao hang doi, khong chan luong wheel
      */
-    private Response handleStatusCommand() {
-        try {
-            logger.info("Dang xu ly lenh STATUS");
-            
-            // Test response don gian truoc
-            String simpleStatus = "Server OK - " + System.currentTimeMillis();
-            logger.info("Tao status don gian: " + simpleStatus);
-            
-            return Response.success(simpleStatus);
-            
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Loi trong handleStatusCommand", e);
-            return Response.error("Loi khi xu ly lenh STATUS: " + e.getMessage());
-        }
+    @Override
+    public void onIdlePing() {
+        logger.info("Client idle, gui PING de kiem tra ket noi: " + clientAddress);
+        sendResponse(Response.success("PING - Kiem tra ket noi"));
     }
     
     /**
-     * Kiem tra xem lenh co nen thoat khong
+     * Goi tu timing wheel: dong socket, read() dang chan se nem loi va vong doc ket thuc
      */
-    private boolean shouldQuit(String inputLine, Response response) {
-        return inputLine.equalsIgnoreCase("QUIT") || 
-               response.getStatus() == Response.Status.ERROR && 
-               response.getMessage().contains("Tam biet");
+    @Override
+    public void onIdleTimeout() {
+        logger.warning("Client idle qua lau, dong ket noi: " + clientAddress);
+        close();
     }
     
     /**
-     * Gui response den client
+     * Loi ghi duoc bao bat dong bo tu writer stage: dong socket de vong doc ket thuc
      */
-    private void sendResponse(Response response) {
+    private void onWriteError(IOException e) {
+        logger.log(Level.WARNING, "Loi gui response" + VIETNAMESE_DEN + " " + clientAddress + ", dong ket noi", e);
         try {
-            // Su dung format response dep thay vi format cu
-            String responseStr = response.toBeautifulString();
-            logger.info("Dang gui response dep: " + responseStr);
-            
-            // Gui response voi retry logic don gian hon
-            int retryCount = 0;
-            boolean sent = false;
-            
-            while (!sent && retryCount < MAX_RETRY_SEND) {
-                try {
-                    writer.println(responseStr);
-                    writer.flush();
-                    
-                    // Doi mot chut de dam bao response duoc gui
-                    Thread.sleep(SUCCESS_SLEEP_MS);
-                    
-                    // Kiem tra xem writer co loi khong
-                    if (writer.checkError()) {
-                        throw new IOException("Writer error detected");
-                    }
-                    
-                    sent = true;
-                    logger.info("Da gui response thanh cong" + VIETNAMESE_DEN + " " + clientAddress + " (" + responseStr.length() + UNIT_BYTES_LABEL + ")");
-                    
-                } catch (Exception e) {
-                    retryCount++;
-                    logger.warning("Loi gui response" + VIETNAMESE_LAN + " " + retryCount + VIETNAMESE_DEN + " " + clientAddress + ": " + e.getMessage());
-                    
-                    if (retryCount >= MAX_RETRY_SEND) {
-                        // Khong throw exception nua, chi log warning
-                        logger.warning("Khong the gui response sau " + MAX_RETRY_SEND + " lan thu, nhung khong dong ket noi");
-                        break; // Thoat vong lap thay vi throw exception
-                    }
-                    
-                    // Doi mot chut truoc khi thu lai
-                    Thread.sleep(RETRY_DELAY_MULTIPLIER * retryCount);
-                }
-            }
-            
-            // Theo doi bytes da gui neu thanh cong
-            if (sent) {
-                bytesSent.addAndGet(responseStr.length());
-            }
-            
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Loi gui response" + VIETNAMESE_DEN + " " + clientAddress, e);
+            clientSocket.close();
+        } catch (IOException closeError) {
+            logger.log(Level.FINE, "Loi dong socket cho " + clientAddress, closeError);
         }
     }
     
@@ -536,15 +471,29 @@ public class ClientHandler implements Runnable {
      * Don dep tai nguyen
      */
     private void cleanup() {
+        if (idleHandle != null) {
+            idleHandle.cancel();
+        }
+        commandProcessor.close();
         try {
-            if (reader != null) reader.close();
-            if (writer != null) writer.close();
+            // Gui not cac response con trong hang doi (vi du "Tam biet!") truoc khi dong
+            if (outbound != null) {
+                if (!clientSocket.isClosed() && !outbound.awaitDrained(DRAIN_TIMEOUT_MS)) {
+                    logger.warning("Khong gui het response truoc khi dong ket noi: " + clientAddress);
+                }
+                outbound.close();
+            }
+            if (input != null) input.close();
             if (clientSocket != null && !clientSocket.isClosed()) {
                 clientSocket.close();
             }
         } catch (IOException e) {
             logger.log(Level.FINE, "Loi trong qua trinh don dep cho " + clientAddress, e);
         }
+        if (buffers != null) {
+            bufferPool.release(buffers);
+            buffers = null;
+        }
     }
     
     // Cac getter cho chi so
@@ -0,0 +1,175 @@
+package com.wifiguard.server;
+
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.wifiguard.server.protocol.Command;
+import com.wifiguard.server.protocol.CommandLexer;
+
+/**
+ * Priority lanes for commands, classified by the Command metadata: cheap
+ * system commands (STATUS, METRICS, CONNECTIONS, RELOAD, HELLO, QUIT), read-only
+ * queries (LIST, ALLOWLIST, SUBSCRIBE) and modifying commands (ADD, DEL).
+ * Each lane has its own concurrency limit, so a burst of LIST on a large
+ * inventory or a slow allowlist save can only hold its own permits, and a
+ * health probe never waits behind them. NIO sessions also start every batch
+ * on a small dedicated system-lane executor and only move to the shared
+ * worker pool when they reach a heavier command.
+ */
+public final class CommandLanes {
+    private static final int DEFAULT_SYSTEM_THREADS = 2;
+    private static final int DEFAULT_MODIFY_LIMIT = 2;
+    private static final long DEFAULT_WAIT_MS = 5000;
+
+    public enum Lane {
+        SYSTEM, READ, MODIFY;
+
+        final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final Semaphore[] permits = new Semaphore[Lane.values().length]; // null: khong gioi han
+    private final int[] limits = new int[Lane.values().length];
+    private final AtomicInteger[] active = new AtomicInteger[Lane.values().length];
+    private final LongAdder[] waits = new LongAdder[Lane.values().length];
+    private final LongAdder[] rejected = new LongAdder[Lane.values().length];
+    private final long waitMillis;
+    private final ExecutorService systemExecutor;
+
+    /**
+     * @param limits max concurrent commands per lane in Lane order, 0 for no limit
+     * @param waitMillis how long a command may wait for a permit before it is refused
+     * @param systemThreads threads of the system-lane executor used by NIO sessions
+     */
+    public CommandLanes(int[] limits, long waitMillis, int systemThreads) {
+        for (Lane lane : Lane.values()) {
+            int limit = limits[lane.ordinal()];
+            this.limits[lane.ordinal()] = limit;
+            permits[lane.ordinal()] = limit > 0 ? new Semaphore(limit, true) : null;
+            active[lane.ordinal()] = new AtomicInteger();
+            waits[lane.ordinal()] = new LongAdder();
+            rejected[lane.ordinal()] = new LongAdder();
+        }
+        this.waitMillis = waitMillis;
+        this.systemExecutor = SessionExecutors.newSessionPool(null, Math.max(1, systemThreads), "System-Lane-");
+    }
+
+    /**
+     * performance.lanes.{system,read,modify}.maxConcurrent; read defaults to
+     * twice the CPU count, modify to 2, system is unlimited
+     */
+    public static CommandLanes fromConfig(Properties config) {
+        int[] limits = new int[Lane.values().length];
+        limits[Lane.SYSTEM.ordinal()] = intProperty(config, "performance.lanes.system.maxConcurrent", 0);
+        limits[Lane.READ.ordinal()] = intProperty(config, "performance.lanes.read.maxConcurrent",
+                Runtime.getRuntime().availableProcessors() * 2);
+        limits[Lane.MODIFY.ordinal()] = intProperty(config, "performance.lanes.modify.maxConcurrent",
+                DEFAULT_MODIFY_LIMIT);
+        long wait = Long.parseLong(config.getProperty("performance.lanes.waitTimeout",
+                config.getProperty("performance.commandProcessingTimeout", String.valueOf(DEFAULT_WAIT_MS))).trim());
+        return new CommandLanes(limits, wait,
+                intProperty(config, "performance.lanes.system.threads", DEFAULT_SYSTEM_THREADS));
+    }
+
+    private static int intProperty(Properties config, String key, int defaultValue) {
+        return Integer.parseInt(config.getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * Lane of a parsed command; null (unparsed) is treated as a read
+     */
+    public static Lane laneOf(Command command) {
+        if (command == null) {
+            return Lane.READ;
+        }
+        if (command.isSystemCommand()) {
+            return Lane.SYSTEM;
+        }
+        return command.isModifyingCommand() ? Lane.MODIFY : Lane.READ;
+    }
+
+    /**
+     * Lane of a raw command line, "#id" prefix allowed. Unknown commands only
+     * produce an error reply, so they count as system work.
+     */
+    public static Lane laneOf(String line) {
+        int start = 0;
+        int length = line.length();
+        if (line.startsWith("#")) {
+            start = CommandLexer.tokenEnd(line, start, length);
+        }
+        start = CommandLexer.skipWhitespace(line, start, length);
+        Command command = CommandLexer.lookup(line, start, CommandLexer.tokenEnd(line, start, length));
+        return command != null ? laneOf(command) : Lane.SYSTEM;
+    }
+
+    /**
+     * Take a permit of the lane, waiting at most performance.lanes.waitTimeout
+     *
+     * @return false if the lane stayed full; the caller must not call release
+     */
+    public boolean acquire(Lane lane) {
+        Semaphore semaphore = permits[lane.ordinal()];
+        if (semaphore != null && !semaphore.tryAcquire()) {
+            waits[lane.ordinal()].increment();
+            boolean acquired;
+            try {
+                acquired = semaphore.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                rejected[lane.ordinal()].increment();
+                return false;
+            }
+        }
+        active[lane.ordinal()].incrementAndGet();
+        return true;
+    }
+
+    public void release(Lane lane) {
+        active[lane.ordinal()].decrementAndGet();
+        Semaphore semaphore = permits[lane.ordinal()];
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Executor that runs system commands of NIO sessions
+     */
+    public ExecutorService getSystemExecutor() {
+        return systemExecutor;
+    }
+
+    public void shutdown() {
+        systemExecutor.shutdown();
+    }
+
+    public int getActive(Lane lane) { return active[lane.ordinal()].get(); }
+    public int getLimit(Lane lane) { return limits[lane.ordinal()]; }
+    public long getWaits(Lane lane) { return waits[lane.ordinal()].sum(); }
+    public long getRejected(Lane lane) { return rejected[lane.ordinal()].sum(); }
+
+    /**
+     * "system=1/- read=3/8 modify=0/2": active/limit per lane
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Lane lane : Lane.values()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            int limit = limits[lane.ordinal()];
+            sb.append(lane.label).append('=').append(getActive(lane)).append('/')
+                    .append(limit > 0 ? String.valueOf(limit) : "-");
+        }
+        return sb.toString();
+    }
+}
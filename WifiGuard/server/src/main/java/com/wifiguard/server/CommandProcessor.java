@@ -0,0 +1,1170 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.wifiguard.server.metrics.CommandMetrics;
+import com.wifiguard.server.model.DeviceInfo;
+import com.wifiguard.server.protocol.AllowlistCodec;
+import com.wifiguard.server.protocol.Command;
+import com.wifiguard.server.protocol.CommandLexer;
+import com.wifiguard.server.protocol.FrameCompressor;
+import com.wifiguard.server.protocol.Response;
+
+/**
+ * Bo xu ly lenh dung chung cho moi che do I/O (blocking va NIO)
+ * Moi ket noi co mot instance rieng, tach biet khoi cach doc/ghi socket
+ */
+public class CommandProcessor {
+    private static final Logger logger = Logger.getLogger(CommandProcessor.class.getName());
+    private static final LogSampler COMMAND_LOG = LogSampler.forCategory("command");
+
+    private static final String DEFAULT_HOSTNAME = "Unknown";
+    private static final int DEFAULT_SLOW_COMMAND_THRESHOLD_MS = 1000; // 1 giây
+    private static final String UNIT_MILLISECONDS = "ms";
+    private static final String VIETNAMESE_MAT = " mat ";
+    private static final int MAX_REQUEST_ID_LENGTH = 32;
+    public static final String CAPABILITY_FRAMED = "FRAMED";
+    public static final String CAPABILITY_TEXT = "TEXT";
+    public static final String CAPABILITY_DEFLATE = "DEFLATE";
+    private static final int DEFAULT_MAX_PENDING_EVENTS = 256;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    private static final int DEFAULT_SPLIT_LIMIT = 4; // Ho tro toi da 4 phan cho lenh ADD
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_CHUNK_CHARS = 16 * 1024;
+    private static final int STREAM_MAX_PENDING_CHUNKS = 4;
+    private static final long STREAM_STALL_TIMEOUT_MS = 30000;
+    private static final String RATE_LIMITED_MESSAGE = "Qua nhieu lenh, vui long thu lai sau";
+    private static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+    private static final int DEFAULT_IMPORT_CHUNK_SIZE = 5000;
+    private static final int EXPORT_BINARY_LINE_BYTES = 3072;
+    private static final String LANE_BUSY_MESSAGE = "Server dang ban xu ly lenh %s, vui long thu lai sau";
+
+    private final Allowlist allowlist;
+    private final DeviceMonitor deviceMonitor;
+    private final ServerMain serverMain;
+    private final String clientAddress;
+    private volatile boolean framed; // da thuong luong giao thuc framed qua HELLO
+    private final int maxPendingEvents;
+    private final boolean compressionEnabled;
+    private final int compressionLevel;
+    private final int compressionThreshold;
+    private volatile FrameCompressor compressor; // sau HELLO FRAMED DEFLATE
+    private final CommandMetrics metrics;
+    private final RateLimiter commandLimiter; // null khi khong co ServerMain
+    private final CommandLanes lanes; // null khi khong co ServerMain
+    private Command lastCommand; // lenh cua response vua tra ve, null neu khong phan tich duoc
+    private SessionOutput output;
+    private String currentRequestId;
+    private volatile EventSubscription subscription;
+    private List<Allowlist.Mutation> transaction; // ADD/DEL dang xep hang sau MULTI, null ngoai lo
+    private String transactionError; // loi xep hang dau tien: EXEC se huy ca lo
+    private CommandLanes.Lane heldLane; // lane cua lenh dang chay, null khi da tra permit
+    private final int maxBatchSize;
+    private final int importChunkSize;
+    private AllowlistImport importer; // giua IMPORT va END: moi dong la du lieu, khong phai lenh
+
+    public CommandProcessor(Allowlist allowlist, DeviceMonitor deviceMonitor, ServerMain serverMain, String clientAddress) {
+        this.allowlist = allowlist;
+        this.deviceMonitor = deviceMonitor;
+        this.serverMain = serverMain;
+        this.clientAddress = clientAddress;
+        this.maxPendingEvents = serverMain != null
+                ? Integer.parseInt(serverMain.getConfig().getProperty("monitor.subscriber.maxPending",
+                        String.valueOf(DEFAULT_MAX_PENDING_EVENTS)))
+                : DEFAULT_MAX_PENDING_EVENTS;
+        Properties config = serverMain != null ? serverMain.getConfig() : new Properties();
+        this.compressionEnabled = Boolean.parseBoolean(config.getProperty("network.compression.enabled", "true"));
+        this.compressionLevel = Integer.parseInt(config.getProperty("network.compression.level",
+                String.valueOf(DEFAULT_COMPRESSION_LEVEL)));
+        this.compressionThreshold = Integer.parseInt(config.getProperty("network.compression.threshold",
+                String.valueOf(DEFAULT_COMPRESSION_THRESHOLD)));
+        this.metrics = serverMain != null ? serverMain.getCommandMetrics()
+                : new CommandMetrics(DEFAULT_SLOW_COMMAND_THRESHOLD_MS);
+        this.commandLimiter = serverMain != null ? serverMain.getCommandLimiter() : null;
+        this.lanes = serverMain != null ? serverMain.getCommandLanes() : null;
+        this.maxBatchSize = Integer.parseInt(config.getProperty("storage.allowlist.batch.maxSize",
+                String.valueOf(DEFAULT_MAX_BATCH_SIZE)).trim());
+        this.importChunkSize = Integer.parseInt(config.getProperty("storage.allowlist.import.chunkSize",
+                String.valueOf(DEFAULT_IMPORT_CHUNK_SIZE)).trim());
+    }
+
+    /**
+     * Gan kenh ghi cua phien, dung cho SUBSCRIBE va LIST STREAM
+     */
+    public void attachSession(SessionOutput output) {
+        this.output = output;
+    }
+
+    /**
+     * Xu ly mot dong lenh da duoc trim, tra ve null neu dong rong
+     */
+    public Response process(String inputLine) {
+        if (inputLine.isEmpty()) {
+            logger.fine("Bo qua lenh rong tu " + clientAddress);
+            return null;
+        }
+        if (importer != null) {
+            return continueImport(inputLine);
+        }
+
+        // Lenh pipelined co dang "#<id> LENH ..." - response duoc gan cung id
+        String requestId = extractRequestId(inputLine);
+        String commandLine = stripRequestId(inputLine);
+
+        long startTime = System.nanoTime();
+        lastCommand = null;
+        Response response;
+        if (requestId != null && !isValidRequestId(requestId)) {
+            response = Response.error("Request id khong hop le: " + requestId +
+                    ". Dinh dang mong doi: #<id> LENH (toi da " + MAX_REQUEST_ID_LENGTH + " ky tu chu/so/-/_)");
+        } else if (commandLine.isEmpty()) {
+            response = Response.error("Lenh rong").withRequestId(requestId);
+        } else if (commandLimiter != null && !isQueuedMutation(commandLine)
+                && !commandLimiter.tryAcquire(clientAddress)) {
+            // Tu choi truoc khi phan tich lenh: LIST lien tuc khong con dinh dang lai danh sach
+            response = Response.error(RATE_LIMITED_MESSAGE).withRequestId(requestId);
+        } else {
+            currentRequestId = requestId;
+            Response result = executeCommand(commandLine);
+            response = result.isStreamed() ? result : result.withRequestId(requestId);
+        }
+        long processingNanos = System.nanoTime() - startTime;
+        long processingTime = TimeUnit.NANOSECONDS.toMillis(processingNanos);
+
+        if (serverMain != null) {
+            serverMain.incrementCommandCount();
+        }
+
+        // Ghi log chi so hieu suat cho cac lenh cham (performance.slowCommandThreshold)
+        if (metrics.checkSlow(processingNanos)) {
+            logger.warning("Xu ly lenh cham: " + inputLine + VIETNAMESE_MAT + processingTime + UNIT_MILLISECONDS);
+        }
+
+        // Mot dong key=value cho moi lenh, lay mau theo logging.sample.command
+        if (COMMAND_LOG.sample() && logger.isLoggable(Level.INFO)) {
+            logger.info("lenh client=" + clientAddress + " id=" + (requestId != null ? requestId : "-") +
+                    " cmd=\"" + commandLine + "\" status=" + response.getStatus() +
+                    " devices=" + response.getDeviceCount() + " ms=" + processingTime +
+                    (COMMAND_LOG.getRate() > 1 ? " sample=1/" + COMMAND_LOG.getRate() : ""));
+        }
+        // Noi dung day du chi o muc FINE: toString() dinh dang lai toan bo danh sach thiet bi
+        if (logger.isLoggable(Level.FINE) && !response.isStreamed()) {
+            logger.fine("Noi dung response cho " + clientAddress + ":\n" + response.toString());
+        }
+        return response;
+    }
+
+    /**
+     * ADD/DEL trong MULTI chi duoc xep hang, khong tinh vao gioi han lenh:
+     * ca lo chi ton token cua MULTI va EXEC, giong cac dong du lieu cua IMPORT
+     */
+    private boolean isQueuedMutation(String commandLine) {
+        if (transaction == null) {
+            return false;
+        }
+        Command command = CommandLexer.lookupFirst(commandLine);
+        return command == Command.ADD || command == Command.DEL;
+    }
+
+    /**
+     * Thuc thi mot lenh va tra ve response
+     */
+    public Response executeCommand(String inputLine) {
+        long parseStart = System.nanoTime();
+        try {
+            // Tra ten lenh tai cho trong bang bam, khong tao chuoi viet hoa va khong nem ngoai le khi sai
+            int end = inputLine.length();
+            int commandStart = CommandLexer.skipWhitespace(inputLine, 0, end);
+            int commandEnd = CommandLexer.tokenEnd(inputLine, commandStart, end);
+            if (commandStart == commandEnd) {
+                return Response.error("Lenh rong");
+            }
+
+            Command command = CommandLexer.lookup(inputLine, commandStart, commandEnd);
+            if (command == null) {
+                return Response.error(Command.unknownCommandMessage(inputLine.substring(commandStart, commandEnd)
+                        .toUpperCase()) + ". Go 'HELP' de xem cac lenh co san.");
+            }
+
+            // Lenh co nhieu tham so hon (vd. LIST LIMIT n CURSOR c) can tach them
+            String[] parts = CommandLexer.split(inputLine, command,
+                    Math.max(DEFAULT_SPLIT_LIMIT, command.getMaxArgs() + 1));
+
+            // Kiem tra so luong tham so
+            int argCount = parts.length - 1;
+            String validationMessage = command.getArgValidationMessage(argCount);
+            lastCommand = command;
+            long executeStart = System.nanoTime();
+            metrics.record(command, CommandMetrics.Phase.PARSE, executeStart - parseStart);
+            // Trong MULTI: ADD/DEL chi duoc kiem tra va xep hang, EXEC moi ghi allowlist
+            if (transaction != null && (command == Command.ADD || command == Command.DEL)) {
+                return validationMessage != null ? rejectQueued(validationMessage) : queueMutation(command, parts);
+            }
+            if (validationMessage != null) {
+                return Response.error(validationMessage);
+            }
+
+            // Moi loai lenh co gioi han rieng: LIST/ADD cham khong chiem cho cua STATUS
+            CommandLanes.Lane lane = CommandLanes.laneOf(command);
+            if (lanes != null && !lanes.acquire(lane)) {
+                return Response.error(String.format(LANE_BUSY_MESSAGE, command));
+            }
+            heldLane = lanes != null ? lane : null;
+            Response result;
+            try {
+                result = dispatch(command, parts);
+            } finally {
+                releaseLane();
+            }
+            metrics.record(command, CommandMetrics.Phase.EXECUTE, System.nanoTime() - executeStart);
+            return result;
+
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Loi thuc thi lenh: " + inputLine, e);
+            return Response.error("Loi server noi bo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Goi handler cua lenh da phan tich va kiem tra tham so
+     */
+    private Response dispatch(Command command, String[] parts) {
+        switch (command) {
+            case LIST:
+                return parts.length > 1 ? handleListOptions(parts) : handleListCommand();
+            case ALLOWLIST:
+                return handleAllowlistCommand();
+            case ADD:
+                return handleAddCommand(parts);
+            case DEL:
+                return handleDelCommand(parts);
+            case MULTI:
+                return handleMultiCommand();
+            case EXEC:
+                return handleExecCommand();
+            case DISCARD:
+                return handleDiscardCommand();
+            case IMPORT:
+                return handleImportCommand(parts);
+            case EXPORT:
+                return handleExportCommand(parts);
+            case STATUS:
+                return handleStatusCommand();
+            case METRICS:
+                return handleMetricsCommand(parts);
+            case CONNECTIONS:
+                return handleConnectionsCommand(parts);
+            case RELOAD:
+                return handleReloadCommand();
+            case SUBSCRIBE:
+                return handleSubscribeCommand();
+            case UNSUBSCRIBE:
+                return handleUnsubscribeCommand();
+            case HELLO:
+                return handleHelloCommand(parts);
+            case QUIT:
+                return Response.success("Tam biet!");
+            default:
+                return Response.error("Lenh chua duoc implement: " + command);
+        }
+    }
+
+    /**
+     * Xu ly lenh LIST
+     */
+    private Response handleListCommand() {
+        logger.fine("Dang xu ly lenh LIST");
+
+        if (deviceMonitor == null) {
+            logger.severe("DeviceMonitor la null!");
+            return Response.error("Loi: DeviceMonitor khong duoc khoi tao");
+        }
+
+        // Doc revision truoc khi dung response de snapshot khong cu hon khoa cache
+        return deviceMonitor.getResponseCache().get(ResponseCache.Kind.LIST, Response.ResponseFormat.BEAUTIFUL,
+                deviceMonitor.getDeviceRevision(), this::buildListResponse);
+    }
+
+    /**
+     * Dung response LIST day du; chi chay khi cache khong con hop le
+     */
+    private Response buildListResponse() {
+        try {
+            // Lay thiết bị từ DeviceMonitor (thiết bị được phát hiện trên mạng)
+            List<DeviceInfo> discoveredDevices = deviceMonitor.getAllDevices();
+            logger.fine("Lay duoc " + (discoveredDevices != null ? discoveredDevices.size() : "null") + " thiet bi tu DeviceMonitor");
+
+            if (discoveredDevices == null) {
+                logger.warning("DeviceMonitor.getAllDevices() tra ve null");
+                return Response.error("Loi: Khong the lay danh sach thiet bi");
+            }
+
+            if (discoveredDevices.isEmpty()) {
+                return Response.success("Khong co thiet bi nao duoc phat hien tren mang");
+            }
+
+            logger.fine("Tim thay " + discoveredDevices.size() + " thiet bi tren mang");
+            return Response.success("Tim thay " + discoveredDevices.size() + " thiet bi tren mang", discoveredDevices);
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Loi trong handleListCommand", e);
+            return Response.error("Loi khi xu ly lenh LIST: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Phan tich cac tuy chon cua LIST: SINCE <version> | LIMIT <n> [CURSOR <c>] | STREAM
+     */
+    private Response handleListOptions(String[] parts) {
+        String since = null;
+        String limit = null;
+        String cursor = null;
+        boolean stream = false;
+
+        for (int i = 1; i < parts.length; i++) {
+            String option = parts[i].toUpperCase();
+            if ("STREAM".equals(option)) {
+                stream = true;
+                continue;
+            }
+            if (i + 1 >= parts.length) {
+                return Response.error("Cach su dung: " + Command.LIST.getUsage());
+            }
+            String value = parts[++i];
+            switch (option) {
+                case "SINCE":
+                    since = value;
+                    break;
+                case "LIMIT":
+                    limit = value;
+                    break;
+                case "CURSOR":
+                    cursor = value;
+                    break;
+                default:
+                    return Response.error("Cach su dung: " + Command.LIST.getUsage());
+            }
+        }
+
+        if (since != null) {
+            if (stream || limit != null || cursor != null) {
+                return Response.error("SINCE khong dung chung voi LIMIT/CURSOR/STREAM");
+            }
+            return handleListSinceCommand(since);
+        }
+        if (stream) {
+            if (limit != null || cursor != null) {
+                return Response.error("STREAM khong dung chung voi LIMIT/CURSOR");
+            }
+            return handleListStreamCommand();
+        }
+        return handleListPageCommand(limit, cursor);
+    }
+
+    /**
+     * Xu ly lenh LIST SINCE <version>: chi tra ve thiet bi them/doi/xoa sau phien ban do.
+     * Phien ban co dang "epoch-version" nhu LIST SINCE da tra ve, rieng lan dau la "0"
+     */
+    private Response handleListSinceCommand(String sinceValue) {
+        String epoch = null;
+        long since;
+        int dash = sinceValue.lastIndexOf('-');
+        try {
+            if (dash >= 0) {
+                epoch = sinceValue.substring(0, dash);
+            }
+            since = Long.parseLong(sinceValue.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return Response.error("Phien ban khong hop le: " + sinceValue);
+        }
+        if (since < 0 || (epoch != null && epoch.isEmpty())) {
+            return Response.error("Phien ban khong hop le: " + sinceValue);
+        }
+
+        if (deviceMonitor == null) {
+            logger.severe("DeviceMonitor la null!");
+            return Response.error("Loi: DeviceMonitor khong duoc khoi tao");
+        }
+
+        DeviceStore.Delta delta = deviceMonitor.getChangesSince(epoch, since);
+        StringBuilder data = new StringBuilder("version=").append(delta.getToken());
+        if (delta.isFull()) {
+            data.append("; full=true");
+        }
+        if (!delta.getRemoved().isEmpty()) {
+            data.append("; removed=");
+            for (int i = 0; i < delta.getRemoved().size(); i++) {
+                if (i > 0) {
+                    data.append(',');
+                }
+                data.append(delta.getRemoved().get(i).getMac());
+            }
+        }
+
+        String message = delta.isFull()
+                ? "Dong bo lai toan bo: " + delta.getChanged().size() + " thiet bi (phien ban " + sinceValue + " khong con duoc luu)"
+                : "Thay doi tu phien ban " + sinceValue + ": " + delta.getChanged().size() + " them/cap nhat, " +
+                  delta.getRemoved().size() + " da xoa";
+        logger.fine("LIST SINCE " + sinceValue + " -> phien ban " + delta.getToken() + ", " + delta.getChanged().size() +
+                " thay doi, " + delta.getRemoved().size() + " xoa");
+        return Response.success(message, delta.getChanged(), data.toString());
+    }
+
+    /**
+     * Xu ly lenh LIST LIMIT <n> [CURSOR <c>]: mot trang thiet bi theo thu tu MAC
+     */
+    private Response handleListPageCommand(String limitValue, String cursor) {
+        int limit = DEFAULT_PAGE_SIZE;
+        if (limitValue != null) {
+            try {
+                limit = Integer.parseInt(limitValue);
+            } catch (NumberFormatException e) {
+                return Response.error("LIMIT khong hop le: " + limitValue);
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return Response.error("LIMIT phai tu 1 den " + MAX_PAGE_SIZE);
+            }
+        }
+
+        if (deviceMonitor == null) {
+            logger.severe("DeviceMonitor la null!");
+            return Response.error("Loi: DeviceMonitor khong duoc khoi tao");
+        }
+
+        DeviceStore.Page page = deviceMonitor.getDevicePage(cursor != null ? cursor.toLowerCase() : null, limit);
+        String next = page.getNextCursor() != null ? page.getNextCursor() : "END";
+        logger.fine("LIST LIMIT " + limit + " CURSOR " + cursor + " -> " + page.getDevices().size() + " thiet bi, next=" + next);
+        return Response.success("Trang " + page.getDevices().size() + " thiet bi (tong " + deviceMonitor.getDeviceCount() + ")",
+                page.getDevices(), "next=" + next);
+    }
+
+    /**
+     * Xu ly lenh LIST STREAM: ghi tung khoi thiet bi ra socket trong khi duyet,
+     * bo nho moi request chi gioi han o vai khoi bat ke so luong thiet bi
+     */
+    private Response handleListStreamCommand() {
+        if (deviceMonitor == null) {
+            logger.severe("DeviceMonitor la null!");
+            return Response.error("Loi: DeviceMonitor khong duoc khoi tao");
+        }
+        if (output == null) {
+            return Response.error("Phien hien tai khong ho tro LIST STREAM");
+        }
+
+        StringBuilder chunk = new StringBuilder(STREAM_CHUNK_CHARS + 1024);
+        Response.appendRequestId(chunk, currentRequestId);
+        Response.appendBeautifulHeader(chunk, Response.Status.SUCCESS);
+        chunk.append("| Message: Danh sach thiet bi tren mang (stream)\n");
+        Response.appendBeautifulDeviceListHeader(chunk);
+
+        int count = 0;
+        for (DeviceInfo device : deviceMonitor.iterateDevices()) {
+            Response.appendBeautifulDevice(chunk, ++count, device);
+            if (chunk.length() >= STREAM_CHUNK_CHARS) {
+                if (!awaitStreamCapacity()) {
+                    return Response.streamed();
+                }
+                output.sendChunk(chunk.toString(), false);
+                chunk.setLength(0);
+            }
+        }
+
+        chunk.append("| Data: streamed=").append(count).append("\n");
+        chunk.append(Response.BEAUTIFUL_FOOTER);
+        if (awaitStreamCapacity()) {
+            output.sendChunk(chunk.toString(), true);
+            logger.info("LIST STREAM da gui " + count + " thiet bi");
+        }
+        return Response.streamed();
+    }
+
+    /**
+     * Tra permit cua lane cho lenh dang chay (neu con giu)
+     */
+    private void releaseLane() {
+        CommandLanes.Lane lane = heldLane;
+        if (lane != null) {
+            heldLane = null;
+            lanes.release(lane);
+        }
+    }
+
+    /**
+     * Cho den khi client doc bot du lieu; dong phien neu client dung doc qua lau.
+     * Truoc khi cho, permit cua lane READ duoc tra lai (khong lay lai): client doc
+     * cham khong duoc chan LIST/ALLOWLIST/EXPORT cua cac client khac
+     */
+    private boolean awaitStreamCapacity() {
+        if (output.getPendingCount() >= STREAM_MAX_PENDING_CHUNKS) {
+            releaseLane();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STREAM_STALL_TIMEOUT_MS);
+        while (output.getPendingCount() >= STREAM_MAX_PENDING_CHUNKS) {
+            if (!output.isOpen()) {
+                return false;
+            }
+            if (System.nanoTime() > deadline) {
+                logger.warning("Client " + clientAddress + " khong doc response stream trong " +
+                        STREAM_STALL_TIMEOUT_MS + UNIT_MILLISECONDS + ", dong ket noi");
+                output.close();
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return output.isOpen();
+    }
+
+    /**
+     * Xu ly lenh ALLOWLIST
+     */
+    private Response handleAllowlistCommand() {
+        logger.fine("Dang xu ly lenh ALLOWLIST");
+
+        if (deviceMonitor == null) {
+            return buildAllowlistResponse();
+        }
+        return deviceMonitor.getResponseCache().get(ResponseCache.Kind.ALLOWLIST, Response.ResponseFormat.BEAUTIFUL,
+                allowlist.getRevision(), this::buildAllowlistResponse);
+    }
+
+    /**
+     * Dung response ALLOWLIST day du; chi chay khi cache khong con hop le
+     */
+    private Response buildAllowlistResponse() {
+        try {
+            // Lay thiết bị từ allowlist (thiết bị được phép)
+            List<DeviceInfo> allowedDevices = allowlist.getAllDevices();
+            logger.fine("Lay duoc " + (allowedDevices != null ? allowedDevices.size() : "null") + " thiet bi tu allowlist");
+
+            if (allowedDevices == null) {
+                logger.warning("Allowlist.getAllDevices() tra ve null");
+                return Response.error("Loi: Khong the lay danh sach allowlist");
+            }
+
+            if (allowedDevices.isEmpty()) {
+                return Response.success("Khong co thiet bi nao trong allowlist");
+            }
+
+            logger.fine("Tim thay " + allowedDevices.size() + " thiet bi trong allowlist");
+            return Response.success("Tim thay " + allowedDevices.size() + " thiet bi trong allowlist", allowedDevices);
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Loi trong handleAllowlistCommand", e);
+            return Response.error("Loi khi xu ly lenh ALLOWLIST: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Xu ly lenh ADD su dung DeviceInfo builder
+     */
+    private Response handleAddCommand(String[] parts) {
+        String mac = parts[1];
+        String hostname = parts.length > 2 ? parts[2] : DEFAULT_HOSTNAME;
+        String ip = parts.length > 3 ? parts[3] : "";
+
+        logger.info("Dang xu ly lenh ADD: MAC=" + mac + ", HOSTNAME=" + hostname + ", IP=" + ip);
+
+        // Su dung DeviceInfo builder de validation
+        DeviceInfo device = DeviceInfo.builder()
+                .mac(mac)
+                .hostname(hostname)
+                .ip(ip)
+                .buildOrNull();
+
+        if (device == null) {
+            logger.warning("DeviceInfo builder tra ve null cho MAC: " + mac);
+            return Response.error("Dinh dang MAC khong hop le: " + mac +
+                               ". Dinh dang mong doi: XX:XX:XX:XX:XX:XX");
+        }
+
+        logger.info("DeviceInfo da tao: " + device.toCompactString() + ", isValid=" + device.isValid());
+
+        if (!device.isValid()) {
+            String errors = device.getValidationErrors();
+            logger.warning("Validation thiet bi that bai: " + errors);
+            return Response.error("Validation thiet bi that bai: " + errors);
+        }
+
+        try {
+            logger.info("Dang them thiet bi vao allowlist: " + mac);
+            boolean added = allowlist.addDevice(device);
+
+            if (added) {
+                logger.info("Thiet bi da duoc them vao allowlist: " + mac + " (" + hostname + ") boi " + clientAddress);
+                return Response.success("Thiet bi da duoc them thanh cong: " + mac);
+            } else {
+                logger.info("Thiet bi voi MAC " + mac + " da co trong allowlist");
+                return Response.error("Thiet bi voi MAC " + mac + " da co trong allowlist");
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Loi them thiet bi: " + mac, e);
+            return Response.error("Khong the them thiet bi: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Xu ly lenh DEL
+     */
+    private Response handleDelCommand(String[] parts) {
+        String mac = parts[1];
+
+        // Kiem tra MAC address su dung DeviceInfo
+        if (!DeviceInfo.createFromMac(mac).hasValidMac()) {
+            return Response.error("Dinh dang MAC khong hop le: " + mac +
+                               ". Dinh dang mong doi: XX:XX:XX:XX:XX:XX");
+        }
+
+        try {
+            boolean removed = allowlist.removeDevice(mac);
+
+            if (removed) {
+                logger.info("Thiet bi da duoc xoa khoi allowlist: " + mac + " boi " + clientAddress);
+                return Response.success("Thiet bi da duoc xoa thanh cong: " + mac);
+            } else {
+                return Response.error("Thiet bi voi MAC " + mac + " khong tim thay trong allowlist");
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Loi xoa thiet bi: " + mac, e);
+            return Response.error("Khong the xoa thiet bi: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Xu ly lenh MULTI: bat dau xep hang ADD/DEL
+     */
+    private Response handleMultiCommand() {
+        if (transaction != null) {
+            return Response.error("Da o trong MULTI (" + transaction.size() + " thao tac dang cho). Gui EXEC hoac DISCARD");
+        }
+        transaction = new ArrayList<>();
+        transactionError = null;
+        return Response.success("Bat dau lo thao tac: gui ADD/DEL, sau do EXEC de ap dung hoac DISCARD de huy");
+    }
+
+    /**
+     * Kiem tra mot ADD/DEL trong MULTI va dua vao lo; thao tac loi khong duoc xep hang va lam EXEC huy ca lo
+     */
+    private Response queueMutation(Command command, String[] parts) {
+        if (transaction.size() >= maxBatchSize) {
+            return rejectQueued("Lo thao tac da day (" + maxBatchSize + ")");
+        }
+        String mac = parts[1];
+        Allowlist.Mutation mutation;
+        if (command == Command.ADD) {
+            DeviceInfo device = DeviceInfo.builder()
+                    .mac(mac)
+                    .hostname(parts.length > 2 ? parts[2] : DEFAULT_HOSTNAME)
+                    .ip(parts.length > 3 ? parts[3] : "")
+                    .buildOrNull();
+            if (device == null || !device.isValid()) {
+                return rejectQueued(device == null
+                        ? "Dinh dang MAC khong hop le: " + mac + ". Dinh dang mong doi: XX:XX:XX:XX:XX:XX"
+                        : "Validation thiet bi that bai: " + device.getValidationErrors());
+            }
+            mutation = Allowlist.Mutation.add(device);
+        } else {
+            if (!DeviceInfo.createFromMac(mac).hasValidMac()) {
+                return rejectQueued("Dinh dang MAC khong hop le: " + mac +
+                                   ". Dinh dang mong doi: XX:XX:XX:XX:XX:XX");
+            }
+            mutation = Allowlist.Mutation.remove(mac);
+        }
+        transaction.add(mutation);
+        return Response.success("QUEUED " + transaction.size());
+    }
+
+    /**
+     * Tu choi mot thao tac trong MULTI va danh dau lo la hong (nhu EXECABORT cua Redis):
+     * so thu tu ket qua cua EXEC khong con khop voi cac lenh da gui nen khong ap dung phan con lai
+     */
+    private Response rejectQueued(String message) {
+        if (transactionError == null) {
+            transactionError = message;
+        }
+        return Response.error(message + ". Lo thao tac se bi huy khi EXEC");
+    }
+
+    /**
+     * Xu ly lenh EXEC: ap dung ca lo voi mot lan luu, ket qua tung thao tac theo thu tu
+     */
+    private Response handleExecCommand() {
+        if (transaction == null) {
+            return Response.error("EXEC khi chua MULTI");
+        }
+        List<Allowlist.Mutation> batch = transaction;
+        String error = transactionError;
+        transaction = null;
+        transactionError = null;
+        if (error != null) {
+            logger.info("Huy lo thao tac tu " + clientAddress + " do loi khi xep hang: " + error);
+            return Response.error("EXECABORT: lo thao tac bi huy do co thao tac loi khi xep hang (" + error +
+                    "), khong thao tac nao duoc ap dung");
+        }
+        if (batch.isEmpty()) {
+            return Response.success("Lo thao tac rong, khong co gi thay doi");
+        }
+
+        List<Allowlist.BatchResult> results;
+        try {
+            results = allowlist.applyBatch(batch);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Loi ap dung lo thao tac tu " + clientAddress, e);
+            return Response.error("Khong the luu allowlist, khong thao tac nao duoc ap dung: " + e.getMessage());
+        }
+
+        int applied = 0;
+        StringBuilder data = new StringBuilder(batch.size() * 40);
+        for (int i = 0; i < batch.size(); i++) {
+            Allowlist.Mutation mutation = batch.get(i);
+            Allowlist.BatchResult result = results.get(i);
+            if (result.isApplied()) {
+                applied++;
+            }
+            if (i > 0) {
+                data.append("\n| ");
+            }
+            data.append(i + 1).append(". ").append(mutation.isAdd() ? "ADD " : "DEL ")
+                    .append(mutation.getMac()).append(" -> ").append(result);
+        }
+        logger.info("Lo thao tac tu " + clientAddress + ": " + applied + "/" + batch.size() + " da ap dung");
+        return Response.success("Lo thao tac: " + applied + "/" + batch.size() + " da ap dung", data.toString());
+    }
+
+    /**
+     * Xu ly lenh DISCARD: bo lo dang xep hang
+     */
+    private Response handleDiscardCommand() {
+        if (transaction == null) {
+            return Response.error("DISCARD khi chua MULTI");
+        }
+        int dropped = transaction.size();
+        transaction = null;
+        transactionError = null;
+        return Response.success("Da huy lo thao tac (" + dropped + " thao tac)");
+    }
+
+    /**
+     * Xu ly lenh IMPORT [CSV | BINARY]: cac dong sau la du lieu den khi gap END
+     */
+    private Response handleImportCommand(String[] parts) {
+        AllowlistCodec.Format format = AllowlistCodec.Format.parse(parts.length > 1 ? parts[1] : null);
+        if (format == null) {
+            return Response.error("Dinh dang khong hop le: " + parts[1] + ". Cach su dung: " + Command.IMPORT.getUsage());
+        }
+        if (transaction != null) {
+            return Response.error("Khong dung IMPORT trong MULTI, gui EXEC hoac DISCARD truoc");
+        }
+        importer = new AllowlistImport(allowlist, format, importChunkSize, currentRequestId);
+        return Response.success("San sang nhan ban ghi " + format +
+                ": moi dong mot " + (format == AllowlistCodec.Format.CSV ? "thiet bi mac,hostname,ip" : "khoi Base64") +
+                ", ket thuc bang END (ABORT de dung)");
+    }
+
+    /**
+     * Mot dong trong luong IMPORT: khong tra loi tung dong, chi tra loi khi END/ABORT hoac loi ghi file
+     */
+    private Response continueImport(String line) {
+        AllowlistImport current = importer;
+        try {
+            if ("END".equalsIgnoreCase(line)) {
+                importer = null;
+                lastCommand = Command.IMPORT;
+                String summary = current.finish();
+                logger.info(summary + " tu " + clientAddress);
+                Response response = current.getErrors().isEmpty() ? Response.success(summary)
+                        : Response.success(summary, String.join("\n| ", current.getErrors()));
+                return response.withRequestId(current.getRequestId());
+            }
+            if ("ABORT".equalsIgnoreCase(line)) {
+                importer = null;
+                lastCommand = Command.IMPORT;
+                return Response.success("Da dung IMPORT, " + current.getAdded() +
+                        " thiet bi tu cac khoi da ap dung duoc giu lai").withRequestId(current.getRequestId());
+            }
+            current.accept(line);
+            return null;
+        } catch (RuntimeException e) {
+            importer = null;
+            lastCommand = Command.IMPORT;
+            logger.log(Level.WARNING, "Loi IMPORT tu " + clientAddress, e);
+            return Response.error("IMPORT dung vi loi luu allowlist, " + current.getAdded() +
+                    " thiet bi da ap dung truoc do: " + e.getMessage()).withRequestId(current.getRequestId());
+        }
+    }
+
+    /**
+     * Dang o giua IMPORT: cac dong tiep theo la du lieu
+     */
+    public boolean isImporting() {
+        return importer != null;
+    }
+
+    /**
+     * Xu ly lenh EXPORT [CSV | BINARY]: ghi allowlist theo tung khoi nhu LIST STREAM
+     */
+    private Response handleExportCommand(String[] parts) {
+        AllowlistCodec.Format format = AllowlistCodec.Format.parse(parts.length > 1 ? parts[1] : null);
+        if (format == null) {
+            return Response.error("Dinh dang khong hop le: " + parts[1] + ". Cach su dung: " + Command.EXPORT.getUsage());
+        }
+        if (output == null) {
+            return Response.error("Phien hien tai khong ho tro EXPORT");
+        }
+
+        StringBuilder chunk = new StringBuilder(STREAM_CHUNK_CHARS + 1024);
+        Response.appendRequestId(chunk, currentRequestId);
+        Response.appendBeautifulHeader(chunk, Response.Status.SUCCESS);
+        chunk.append("| Message: EXPORT ").append(format).append('\n');
+
+        ByteBuffer records = format == AllowlistCodec.Format.BINARY ? ByteBuffer.allocate(EXPORT_BINARY_LINE_BYTES) : null;
+        int count = 0;
+        for (DeviceInfo device : allowlist.iterateDevices()) {
+            if (records == null) {
+                AllowlistCodec.appendCsv(chunk, device);
+            } else if (!AllowlistCodec.writeBinary(records, device)) {
+                chunk.append(AllowlistCodec.toBase64Line(records)).append('\n');
+                records.clear();
+                AllowlistCodec.writeBinary(records, device);
+            }
+            count++;
+            if (chunk.length() >= STREAM_CHUNK_CHARS) {
+                if (!awaitStreamCapacity()) {
+                    return Response.streamed();
+                }
+                output.sendChunk(chunk.toString(), false);
+                chunk.setLength(0);
+            }
+        }
+        if (records != null && records.position() > 0) {
+            chunk.append(AllowlistCodec.toBase64Line(records)).append('\n');
+        }
+
+        chunk.append("| Data: exported=").append(count).append('\n');
+        chunk.append(Response.BEAUTIFUL_FOOTER);
+        if (awaitStreamCapacity()) {
+            output.sendChunk(chunk.toString(), true);
+            logger.info("EXPORT " + format + " da gui " + count + " thiet bi cho " + clientAddress);
+        }
+        return Response.streamed();
+    }
+
+    /**
+     * Xu ly lenh STATUS
+     */
+    private Response handleStatusCommand() {
+        try {
+            logger.fine("Dang xu ly lenh STATUS");
+
+            // Test response don gian truoc
+            String simpleStatus = "Server OK - " + System.currentTimeMillis();
+            logger.fine("Tao status don gian: " + simpleStatus);
+
+            if (deviceMonitor == null) {
+                return Response.success(simpleStatus);
+            }
+            ResponseCache cache = deviceMonitor.getResponseCache();
+            String data = String.format("cache: hits=%d, misses=%d, hit ratio=%.1f%%",
+                    cache.getHits(), cache.getMisses(), cache.getHitRatio());
+            if (serverMain != null) {
+                data += "; " + serverMain.getCompressionSummary();
+                data += String.format("; rate limited: connections=%d, commands=%d",
+                        serverMain.getConnectionLimiter().getRejected(), serverMain.getCommandLimiter().getRejected());
+                data += "; lanes: " + serverMain.getCommandLanes();
+            }
+            return Response.success(simpleStatus, data);
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Loi trong handleStatusCommand", e);
+            return Response.error("Loi khi xu ly lenh STATUS: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Xu ly lenh METRICS [lenh]: p50/p99/p999/max theo lenh va giai doan
+     */
+    private Response handleMetricsCommand(String[] parts) {
+        Command only = null;
+        if (parts.length > 1) {
+            only = Command.lookup(parts[1]);
+            if (only == null) {
+                return Response.error(Command.unknownCommandMessage(parts[1]) + ". Cach su dung: " + Command.METRICS.getUsage());
+            }
+        }
+
+        List<String> lines = metrics.describe(only);
+        String message = "Do tre theo lenh (" + lines.size() + " dong), lenh cham > " + metrics.getSlowThresholdMs() +
+                UNIT_MILLISECONDS + ": " + metrics.getSlowCommands();
+        if (lines.isEmpty()) {
+            return Response.success(message);
+        }
+        // Moi dong mot cap lenh/giai doan, giu tien to "| " cua dinh dang dep
+        return Response.success(message, String.join("\n| ", lines));
+    }
+
+    /**
+     * Xu ly lenh RELOAD: doc lai server.properties va thay bo loc IP mot lan;
+     * loi doc file hoac dia chi sai thi giu nguyen bo loc cu
+     */
+    private Response handleReloadCommand() {
+        if (serverMain == null) {
+            return Response.error("Loi: IpFilter khong duoc khoi tao");
+        }
+        try {
+            String rules = serverMain.reloadIpFilter();
+            logger.info("RELOAD tu " + clientAddress + ": " + rules);
+            return Response.success("Da nap lai bo loc IP", rules);
+        } catch (IOException e) {
+            return Response.error("Khong doc duoc " + serverMain.getConfigurationSource() + ": " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return Response.error("Bo loc IP khong hop le, giu nguyen bo loc cu: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Xu ly lenh CONNECTIONS [DRAIN <id> | CLOSE <id>]: xem hoac dong cac phien dang mo
+     */
+    private Response handleConnectionsCommand(String[] parts) {
+        ConnectionRegistry registry = serverMain != null ? serverMain.getConnectionRegistry() : null;
+        if (registry == null) {
+            return Response.error("Loi: ConnectionRegistry khong duoc khoi tao");
+        }
+
+        if (parts.length == 1) {
+            List<ConnectionRegistry.Connection> connections = registry.snapshot();
+            String message = "Co " + connections.size() + " ket noi dang mo";
+            if (connections.isEmpty()) {
+                return Response.success(message);
+            }
+            StringBuilder data = new StringBuilder();
+            for (ConnectionRegistry.Connection connection : connections) {
+                if (data.length() > 0) {
+                    data.append("\n| ");
+                }
+                data.append('#').append(connection.getConnectionId())
+                        .append(' ').append(connection.getClientAddress())
+                        .append(' ').append(connection.getMode())
+                        .append(" age=").append(connection.getConnectionDuration() / 1000).append('s')
+                        .append(" cmds=").append(connection.getCommandsProcessed())
+                        .append(" rx=").append(connection.getBytesReceived())
+                        .append(" tx=").append(connection.getBytesSent())
+                        .append(" pending=").append(connection.getPendingCount());
+                if (connection.isSubscribed()) {
+                    data.append(" subscribed");
+                }
+            }
+            return Response.success(message, data.toString());
+        }
+
+        if (parts.length != 3) {
+            return Response.error("Cach su dung: " + Command.CONNECTIONS.getUsage());
+        }
+        String action = parts[1].toUpperCase();
+        long id;
+        try {
+            id = Long.parseLong(parts[2].startsWith("#") ? parts[2].substring(1) : parts[2]);
+        } catch (NumberFormatException e) {
+            return Response.error("Id ket noi khong hop le: " + parts[2]);
+        }
+        ConnectionRegistry.Connection connection = registry.get(id);
+        if (connection == null) {
+            return Response.error("Khong tim thay ket noi #" + id);
+        }
+        switch (action) {
+            case "DRAIN":
+                connection.drain();
+                logger.info("Client " + clientAddress + " drain ket noi #" + id + " (" + connection.getClientAddress() + ")");
+                return Response.success("Dang drain ket noi #" + id);
+            case "CLOSE":
+                connection.close();
+                logger.info("Client " + clientAddress + " dong ket noi #" + id + " (" + connection.getClientAddress() + ")");
+                return Response.success("Da dong ket noi #" + id);
+            default:
+                return Response.error("Cach su dung: " + Command.CONNECTIONS.getUsage());
+        }
+    }
+
+    /**
+     * Xu ly lenh SUBSCRIBE: day su kien thiet bi qua ket noi hien tai
+     */
+    private synchronized Response handleSubscribeCommand() {
+        if (deviceMonitor == null) {
+            return Response.error("Loi: DeviceMonitor khong duoc khoi tao");
+        }
+        if (output == null) {
+            return Response.error("Phien hien tai khong ho tro SUBSCRIBE");
+        }
+        if (subscription != null) {
+            return Response.success("Da dang ky nhan su kien truoc do");
+        }
+
+        subscription = new EventSubscription(clientAddress, output, maxPendingEvents);
+        deviceMonitor.addListener(subscription);
+        logger.info("Client " + clientAddress + " dang ky nhan su kien thiet bi");
+        return Response.success("Da dang ky nhan su kien thiet bi (JOINED, LEFT, IP_CHANGED, KNOWN_CHANGED)",
+                "max pending: " + maxPendingEvents);
+    }
+
+    /**
+     * Xu ly lenh UNSUBSCRIBE
+     */
+    private Response handleUnsubscribeCommand() {
+        EventSubscription removed = unsubscribe();
+        if (removed == null) {
+            return Response.error("Chua dang ky nhan su kien");
+        }
+        return Response.success("Da huy dang ky nhan su kien",
+                "delivered: " + removed.getDelivered() + ", dropped: " + removed.getDropped());
+    }
+
+    private synchronized EventSubscription unsubscribe() {
+        EventSubscription current = subscription;
+        if (current != null) {
+            deviceMonitor.removeListener(current);
+            subscription = null;
+            logger.info("Client " + clientAddress + " huy dang ky su kien - gui: " + current.getDelivered() +
+                    ", bo qua: " + current.getDropped());
+        }
+        return current;
+    }
+
+    /**
+     * Kiem tra phien co dang nhan su kien khong
+     */
+    public boolean isSubscribed() {
+        return subscription != null;
+    }
+
+    /**
+     * Giai phong tai nguyen cua phien (huy dang ky su kien)
+     */
+    public void close() {
+        unsubscribe();
+        FrameCompressor active = compressor;
+        if (active != null) {
+            logger.info("Nen DEFLATE cho " + clientAddress + ": " + active.getSummary());
+            active.end();
+        }
+    }
+
+    /**
+     * Xu ly lenh HELLO: thuong luong giao thuc. Response duoc gui bang giao thuc
+     * cu, cac message sau do (ca hai chieu) dung frame co do dai.
+     */
+    private Response handleHelloCommand(String[] parts) {
+        boolean wantsFramed = false;
+        boolean wantsDeflate = false;
+        for (int i = 1; i < parts.length; i++) {
+            if (CAPABILITY_FRAMED.equalsIgnoreCase(parts[i])) {
+                wantsFramed = true;
+            } else if (CAPABILITY_DEFLATE.equalsIgnoreCase(parts[i])) {
+                wantsDeflate = true;
+            }
+        }
+
+        if (wantsFramed && !framed) {
+            framed = true;
+            logger.info("Client " + clientAddress + " chuyen sang giao thuc framed");
+        }
+
+        // Nen chi ap dung cho frame: co FLAG_COMPRESSED danh dau tung frame
+        if (wantsDeflate && framed && compressionEnabled && compressor == null) {
+            compressor = new FrameCompressor(compressionLevel, compressionThreshold,
+                    serverMain != null ? serverMain::recordCompression : null);
+            logger.info("Client " + clientAddress + " bat nen DEFLATE (nguong " + compressionThreshold + " bytes)");
+        }
+
+        String protocol = framed ? CAPABILITY_FRAMED : CAPABILITY_TEXT;
+        if (compressor != null) {
+            protocol += " " + CAPABILITY_DEFLATE;
+        }
+        String supported = CAPABILITY_TEXT + ", " + CAPABILITY_FRAMED + (compressionEnabled ? ", " + CAPABILITY_DEFLATE : "");
+        return Response.success("Giao thuc: " + protocol + " (ho tro: " + supported + ")", protocol);
+    }
+
+    /**
+     * Lenh cua response vua tra ve tu process(), null neu lenh khong hop le
+     */
+    public Command getLastCommand() {
+        return lastCommand;
+    }
+
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Kiem tra ket noi da thuong luong giao thuc framed chua
+     */
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * Bo nen frame cua ket noi, null neu chua thuong luong DEFLATE
+     */
+    public FrameCompressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Lay request id tu dong lenh dang "#<id> LENH", null neu khong co
+     */
+    public static String extractRequestId(String inputLine) {
+        if (!inputLine.startsWith(Response.REQUEST_ID_PREFIX)) {
+            return null;
+        }
+        int end = indexOfWhitespace(inputLine);
+        return inputLine.substring(1, end);
+    }
+
+    /**
+     * Bo phan "#<id>" o dau dong lenh (neu co)
+     */
+    public static String stripRequestId(String inputLine) {
+        if (!inputLine.startsWith(Response.REQUEST_ID_PREFIX)) {
+            return inputLine;
+        }
+        return inputLine.substring(indexOfWhitespace(inputLine)).trim();
+    }
+
+    private static int indexOfWhitespace(String inputLine) {
+        for (int i = 0; i < inputLine.length(); i++) {
+            if (Character.isWhitespace(inputLine.charAt(i))) {
+                return i;
+            }
+        }
+        return inputLine.length();
+    }
+
+    private static boolean isValidRequestId(String requestId) {
+        if (requestId.isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Kiem tra xem lenh co nen thoat khong
+     */
+    public static boolean shouldQuit(String inputLine, Response response) {
+        return stripRequestId(inputLine).equalsIgnoreCase("QUIT") ||
+               response.getStatus() == Response.Status.ERROR &&
+               response.getMessage().contains("Tam biet");
+    }
+}
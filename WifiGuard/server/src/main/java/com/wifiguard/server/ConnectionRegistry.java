@@ -0,0 +1,134 @@
+package com.wifiguard.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Live client sessions of every listener (blocking TCP, TLS and NIO), keyed
+ * by a server-wide connection id. Used by the CONNECTIONS command to inspect,
+ * drain or close single sessions, and by shutdown to drain all of them at once.
+ */
+public class ConnectionRegistry {
+    private static final Logger logger = Logger.getLogger(ConnectionRegistry.class.getName());
+
+    /**
+     * A session as seen by the registry
+     */
+    public interface Connection {
+        long getConnectionId();
+
+        String getClientAddress();
+
+        /**
+         * tcp, tls or nio
+         */
+        String getMode();
+
+        long getConnectionDuration();
+
+        long getCommandsProcessed();
+
+        long getBytesReceived();
+
+        long getBytesSent();
+
+        int getPendingCount();
+
+        boolean isSubscribed();
+
+        /**
+         * Stop reading commands, flush queued replies, then close; never blocks
+         */
+        void drain();
+
+        void close();
+    }
+
+    private final ConcurrentHashMap<Long, Connection> connections = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(0);
+    private final Object emptyLock = new Object();
+
+    /**
+     * Allocate the id a session registers under
+     */
+    public long nextConnectionId() {
+        return nextId.incrementAndGet();
+    }
+
+    public void register(Connection connection) {
+        connections.put(connection.getConnectionId(), connection);
+    }
+
+    public void unregister(Connection connection) {
+        connections.remove(connection.getConnectionId(), connection);
+        if (connections.isEmpty()) {
+            synchronized (emptyLock) {
+                emptyLock.notifyAll();
+            }
+        }
+    }
+
+    public Connection get(long id) {
+        return connections.get(id);
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * Sessions ordered by id
+     */
+    public List<Connection> snapshot() {
+        List<Connection> list = new ArrayList<>(connections.values());
+        list.sort(Comparator.comparingLong(Connection::getConnectionId));
+        return list;
+    }
+
+    /**
+     * Ask every session to drain, wait until all are gone or the deadline
+     * passes, then close whatever is left. Sessions flush on their own writer
+     * or I/O thread, so they drain in parallel.
+     *
+     * @return number of sessions that had to be closed forcibly
+     */
+    public int drainAll(long timeoutMs) {
+        List<Connection> open = new ArrayList<>(connections.values());
+        if (open.isEmpty()) {
+            return 0;
+        }
+        logger.info("Draining " + open.size() + " connections (deadline " + timeoutMs + "ms)");
+        for (Connection connection : open) {
+            connection.drain();
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (emptyLock) {
+            while (!connections.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    emptyLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        List<Connection> left = new ArrayList<>(connections.values());
+        for (Connection connection : left) {
+            connection.close();
+        }
+        if (!left.isEmpty()) {
+            logger.warning("Force closed " + left.size() + " connections after drain deadline");
+        }
+        return left.size();
+    }
+}
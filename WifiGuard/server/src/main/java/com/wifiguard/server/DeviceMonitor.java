@@ -3,18 +3,21 @@ package com.wifiguard.server;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.wifiguard.server.metrics.LatencyHistogram;
+import com.wifiguard.server.model.DeviceEvent;
 import com.wifiguard.server.model.DeviceInfo;
 
 /**
@@ -27,10 +30,13 @@ public class DeviceMonitor {
     private static final String WINDOWS_ARP_MODE = "windowsarp";
     
     private final Allowlist allowlist;
-    private final Map<String, DeviceInfo> discoveredDevices;
+    private final DeviceStore discoveredDevices;
+    private final ResponseCache responseCache;
+    private final List<Consumer<DeviceEvent>> listeners;
     private final ScheduledExecutorService scheduler;
     private final int pollIntervalSeconds;
     private final int banSeconds;
+    private final int tombstoneSeconds;
     private final int networkScanRange;
     private final int pingTimeout;
     private final String routerMode;
@@ -41,9 +47,16 @@ public class DeviceMonitor {
     private volatile boolean running = false;
     private ScheduledFuture<?> pollTask;
     
+    // Chi so quet mang cho /metrics
+    private final LatencyHistogram scanDuration = new LatencyHistogram();
+    private final AtomicLong scanFailures = new AtomicLong(0);
+    private volatile long lastScanNanos;
+    
     public DeviceMonitor(Allowlist allowlist, Properties config) {
         this.allowlist = allowlist;
-        this.discoveredDevices = new ConcurrentHashMap<>();
+        this.discoveredDevices = new DeviceStore();
+        this.responseCache = new ResponseCache();
+        this.listeners = new CopyOnWriteArrayList<>();
         this.scheduler = Executors.newScheduledThreadPool(1, r -> {
             Thread t = new Thread(r, "DeviceMonitor-Scheduler");
             t.setDaemon(true);
@@ -52,6 +65,7 @@ public class DeviceMonitor {
         
         this.pollIntervalSeconds = getIntProperty(config, "monitor.pollSeconds", 10);
         this.banSeconds = getIntProperty(config, "monitor.banSeconds", 600);
+        this.tombstoneSeconds = getIntProperty(config, "monitor.tombstoneSeconds", 3600);
         this.networkScanRange = getIntProperty(config, "monitor.networkScanRange", 254);
         this.pingTimeout = getIntProperty(config, "monitor.pingTimeout", 500);
         this.routerMode = config.getProperty("router.mode", DUMMY_MODE);
@@ -110,6 +124,7 @@ public class DeviceMonitor {
      * Poll devices from Gateway
      */
     private void pollDevices() {
+        long start = System.nanoTime();
         try {
             if (OPENWRT_MODE.equals(routerMode)) {
                 pollFromOpenWrt();
@@ -123,7 +138,11 @@ public class DeviceMonitor {
             cleanupOldDevices();
             
         } catch (Exception e) {
+            scanFailures.incrementAndGet();
             logger.log(Level.SEVERE, "Error during device polling", e);
+        } finally {
+            lastScanNanos = System.nanoTime() - start;
+            scanDuration.record(lastScanNanos);
         }
     }
     
@@ -166,10 +185,13 @@ public class DeviceMonitor {
                     DeviceInfo updatedDevice = existingDevice
                             .updateLastSeen()
                             .withKnown(allowlist.isAllowed(device.getMac()));
-                    discoveredDevices.put(macKey, updatedDevice);
+                    if (device.hasIp()) {
+                        updatedDevice = updatedDevice.withIp(device.getIp());
+                    }
+                    putDevice(macKey, updatedDevice);
                     logger.info("Updated existing device: " + device.getMac() + " at " + device.getIp() + " (" + device.getHostname() + ")");
                 } else {
-                    discoveredDevices.put(macKey, device);
+                    putDevice(macKey, device);
                     
                     // Auto-add new device to allowlist
                     boolean addedToAllowlist = allowlist.autoAddDiscoveredDevice(device);
@@ -322,11 +344,12 @@ public class DeviceMonitor {
                         // Create updated device instance
                         DeviceInfo updatedDevice = existingDevice
                                 .updateLastSeen()
-                                .withKnown(allowlist.isAllowed(mac));
-                        discoveredDevices.put(macKey, updatedDevice);
+                                .withKnown(allowlist.isAllowed(mac))
+                                .withIp(ip);
+                        putDevice(macKey, updatedDevice);
                         logger.info("Updated existing device: " + mac + " at " + ip + " (" + hostname + ")");
                     } else {
-                        discoveredDevices.put(macKey, device);
+                        putDevice(macKey, device);
                         
                         // Auto-add new device to allowlist
                         boolean addedToAllowlist = allowlist.autoAddDiscoveredDevice(device);
@@ -869,12 +892,8 @@ public class DeviceMonitor {
         int knownCount = 0;
         int unknownCount = 0;
         
-        // Create new map with updated devices
-        Map<String, DeviceInfo> updatedDevices = new ConcurrentHashMap<>();
-        
-        for (Map.Entry<String, DeviceInfo> entry : discoveredDevices.entrySet()) {
-            String macKey = entry.getKey();
-            DeviceInfo device = entry.getValue();
+        // Update entries in place so LIST never sees a half-rebuilt map
+        for (DeviceInfo device : discoveredDevices.values()) {
             boolean isKnown = allowlist.isAllowed(device.getMac());
             
             // Create updated device instance
@@ -882,7 +901,7 @@ public class DeviceMonitor {
                     .withKnown(isKnown)
                     .updateLastSeen();
             
-            updatedDevices.put(macKey, updatedDevice);
+            putDevice(device.getMac().toLowerCase(), updatedDevice);
             
             if (isKnown) {
                 knownCount++;
@@ -891,10 +910,6 @@ public class DeviceMonitor {
             }
         }
         
-        // Replace the map with updated devices
-        discoveredDevices.clear();
-        discoveredDevices.putAll(updatedDevices);
-        
         logger.fine("Device status updated: " + knownCount + " known, " + unknownCount + " unknown");
     }
     
@@ -903,28 +918,125 @@ public class DeviceMonitor {
      */
     private void cleanupOldDevices() {
         LocalDateTime cutoff = LocalDateTime.now().minusSeconds(banSeconds);
-        int initialCount = discoveredDevices.size();
+        List<DeviceInfo> removed = discoveredDevices.removeIf(device -> device.getLastSeen().isBefore(cutoff));
+        for (DeviceInfo device : removed) {
+            logger.fine("Removing old device: " + device.getMac() + " (last seen: " + device.getLastSeen() + ")");
+            publish(new DeviceEvent(DeviceEvent.Type.LEFT, device, device));
+        }
         
-        discoveredDevices.entrySet().removeIf(entry -> {
-            DeviceInfo device = entry.getValue();
-            if (device.getLastSeen().isBefore(cutoff)) {
-                logger.fine("Removing old device: " + device.getMac() + " (last seen: " + device.getLastSeen() + ")");
-                return true;
-            }
-            return false;
-        });
+        if (!removed.isEmpty()) {
+            logger.info("Cleaned up " + removed.size() + " old devices");
+        }
         
-        int removedCount = initialCount - discoveredDevices.size();
-        if (removedCount > 0) {
-            logger.info("Cleaned up " + removedCount + " old devices");
+        // Tombstones only need to outlive the slowest LIST SINCE client
+        int pruned = discoveredDevices.pruneTombstones(TimeUnit.SECONDS.toMillis(tombstoneSeconds));
+        if (pruned > 0) {
+            logger.fine("Pruned " + pruned + " device tombstones");
         }
     }
     
+    /**
+     * Store a device and publish join / IP / known-status changes
+     */
+    private void putDevice(String macKey, DeviceInfo device) {
+        DeviceInfo previous = discoveredDevices.put(macKey, device);
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (previous == null) {
+            publish(new DeviceEvent(DeviceEvent.Type.JOINED, device, null));
+            return;
+        }
+        if (!Objects.equals(previous.getIp(), device.getIp())) {
+            publish(new DeviceEvent(DeviceEvent.Type.IP_CHANGED, device, previous));
+        }
+        if (previous.isKnown() != device.isKnown()) {
+            publish(new DeviceEvent(DeviceEvent.Type.KNOWN_CHANGED, device, previous));
+        }
+    }
+    
+    /**
+     * Deliver an event to every listener; listeners must not block the poller
+     */
+    private void publish(DeviceEvent event) {
+        logger.fine("Device event: " + event.describe());
+        for (Consumer<DeviceEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Device event listener failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Register a device event listener (SUBSCRIBE sessions)
+     */
+    public void addListener(Consumer<DeviceEvent> listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a device event listener
+     */
+    public void removeListener(Consumer<DeviceEvent> listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Get number of registered event listeners
+     */
+    public int getListenerCount() {
+        return listeners.size();
+    }
+    
     /**
      * Get all discovered devices
      */
     public List<DeviceInfo> getAllDevices() {
-        return new ArrayList<>(discoveredDevices.values());
+        return discoveredDevices.values();
+    }
+    
+    /**
+     * Get devices added, changed or removed after the given change version of the given store epoch
+     */
+    public DeviceStore.Delta getChangesSince(String epoch, long version) {
+        return discoveredDevices.changesSince(epoch, version);
+    }
+    
+    /**
+     * Get one page of devices ordered by MAC, starting after the cursor key
+     */
+    public DeviceStore.Page getDevicePage(String cursor, int limit) {
+        return discoveredDevices.page(cursor, limit);
+    }
+    
+    /**
+     * Iterate devices ordered by MAC without copying the inventory
+     */
+    public Iterable<DeviceInfo> iterateDevices() {
+        return discoveredDevices.iterate();
+    }
+    
+    /**
+     * Get current inventory change version
+     */
+    public long getInventoryVersion() {
+        return discoveredDevices.getVersion();
+    }
+    
+    /**
+     * Revision of the device list content, including last-seen refreshes
+     */
+    public long getDeviceRevision() {
+        return discoveredDevices.getRevision();
+    }
+    
+    /**
+     * Serialized LIST/ALLOWLIST replies shared by all sessions
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
     }
     
     /**
@@ -935,6 +1047,21 @@ public class DeviceMonitor {
         return discoveredDevices.get(mac.toLowerCase());
     }
     
+    /**
+     * Duration of every poll cycle (gateway scan, status update, cleanup)
+     */
+    public LatencyHistogram getScanDuration() {
+        return scanDuration;
+    }
+    
+    public long getLastScanNanos() {
+        return lastScanNanos;
+    }
+    
+    public long getScanFailures() {
+        return scanFailures.get();
+    }
+    
     /**
      * Get device count
      */
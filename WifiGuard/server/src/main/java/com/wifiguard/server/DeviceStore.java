@@ -0,0 +1,280 @@
+package com.wifiguard.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import com.wifiguard.server.model.DeviceInfo;
+
+/**
+ * Discovered-device inventory with a monotonically increasing change sequence.
+ * Every add, meaningful change (IP, hostname, known flag) or removal gets the
+ * next version; removals leave a tombstone so LIST SINCE can report them.
+ * Last-seen refreshes alone do not bump the version. Versions restart at 1
+ * with every store, so the token handed to clients is "epoch-version" and a
+ * token from another epoch (e.g. before a server restart) forces a full
+ * resync. Entries are kept sorted
+ * by key (lower-case MAC) so pages and streams can resume from a cursor
+ * without copying the inventory. Writers are serialized, readers are lock-free.
+ */
+public class DeviceStore {
+
+    /**
+     * Stored value: the device, the version of its last change and whether it was removed
+     */
+    public static final class Entry {
+        private final DeviceInfo device;
+        private final long version;
+        private final boolean removed;
+        private final long removedAt;
+
+        Entry(DeviceInfo device, long version, boolean removed, long removedAt) {
+            this.device = device;
+            this.version = version;
+            this.removed = removed;
+            this.removedAt = removedAt;
+        }
+
+        public DeviceInfo getDevice() { return device; }
+        public long getVersion() { return version; }
+        public boolean isRemoved() { return removed; }
+    }
+
+    /**
+     * Result of a delta query
+     */
+    public static final class Delta {
+        private final String epoch;
+        private final long version;
+        private final boolean full;
+        private final List<DeviceInfo> changed;
+        private final List<DeviceInfo> removed;
+
+        Delta(String epoch, long version, boolean full, List<DeviceInfo> changed, List<DeviceInfo> removed) {
+            this.epoch = epoch;
+            this.version = version;
+            this.full = full;
+            this.changed = changed;
+            this.removed = removed;
+        }
+
+        public long getVersion() { return version; }
+        /** High-water mark to pass to the next LIST SINCE, e.g. "m1x2k9ab-5002" */
+        public String getToken() { return epoch + "-" + version; }
+        /** True when the requested version is too old or from another epoch and changed holds the whole inventory */
+        public boolean isFull() { return full; }
+        public List<DeviceInfo> getChanged() { return changed; }
+        public List<DeviceInfo> getRemoved() { return removed; }
+    }
+
+    /**
+     * One page of live devices in key order
+     */
+    public static final class Page {
+        private final List<DeviceInfo> devices;
+        private final String nextCursor;
+
+        Page(List<DeviceInfo> devices, String nextCursor) {
+            this.devices = devices;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<DeviceInfo> getDevices() { return devices; }
+        /** Key to pass as CURSOR for the next page, or null on the last page */
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final Object writeLock = new Object();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private long nextVersion = 1;           // guarded by writeLock
+    private volatile long publishedVersion; // every entry <= this is visible
+    private volatile long compactedVersion; // tombstones up to here were pruned
+    private volatile int liveCount;
+    private volatile long revision;         // bumped by every write, incl. last-seen refreshes
+
+    /**
+     * Get live device by key, or null
+     */
+    public DeviceInfo get(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && !entry.removed ? entry.device : null;
+    }
+
+    /**
+     * Insert or replace a device; returns the previous live device or null
+     */
+    public DeviceInfo put(String key, DeviceInfo device) {
+        synchronized (writeLock) {
+            Entry previous = entries.get(key);
+            DeviceInfo previousDevice = previous != null && !previous.removed ? previous.device : null;
+
+            revision++;
+            if (previousDevice != null && !isChange(previousDevice, device)) {
+                entries.put(key, new Entry(device, previous.version, false, 0));
+                return previousDevice;
+            }
+
+            long version = nextVersion++;
+            entries.put(key, new Entry(device, version, false, 0));
+            if (previousDevice == null) {
+                liveCount++;
+            }
+            publishedVersion = version;
+            return previousDevice;
+        }
+    }
+
+    /**
+     * Remove every live device matching the filter, leaving tombstones
+     *
+     * @return the removed devices
+     */
+    public List<DeviceInfo> removeIf(Predicate<DeviceInfo> filter) {
+        List<DeviceInfo> removed = new ArrayList<>();
+        synchronized (writeLock) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.removed || !filter.test(entry.device)) {
+                    continue;
+                }
+                long version = nextVersion++;
+                entries.put(e.getKey(), new Entry(entry.device, version, true, now));
+                liveCount--;
+                revision++;
+                removed.add(entry.device);
+                publishedVersion = version;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drop tombstones older than maxAgeMillis; clients behind them get a full resync
+     */
+    public int pruneTombstones(long maxAgeMillis) {
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        int pruned = 0;
+        synchronized (writeLock) {
+            long compacted = compactedVersion;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.removed && entry.removedAt < cutoff) {
+                    entries.remove(e.getKey());
+                    compacted = Math.max(compacted, entry.version);
+                    pruned++;
+                }
+            }
+            compactedVersion = compacted;
+        }
+        return pruned;
+    }
+
+    /**
+     * Entries added, changed or removed after the given version of the given
+     * epoch. A null epoch is only accepted with version 0 (first sync).
+     */
+    public Delta changesSince(String sinceEpoch, long sinceVersion) {
+        // Read the high-water mark first: every entry up to it is already visible
+        long version = publishedVersion;
+        boolean sameEpoch = sinceEpoch != null ? epoch.equals(sinceEpoch) : sinceVersion == 0;
+        boolean full = !sameEpoch || sinceVersion < compactedVersion || sinceVersion > version;
+
+        List<DeviceInfo> changed = new ArrayList<>();
+        List<DeviceInfo> removed = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (full) {
+                if (!entry.removed) {
+                    changed.add(entry.device);
+                }
+            } else if (entry.version > sinceVersion) {
+                (entry.removed ? removed : changed).add(entry.device);
+            }
+        }
+        return new Delta(epoch, version, full, changed, removed);
+    }
+
+    /**
+     * Up to limit live devices whose key sorts after the cursor (null = from the start)
+     */
+    public Page page(String cursor, int limit) {
+        NavigableMap<String, Entry> tail = cursor != null ? entries.tailMap(cursor, false) : entries;
+        List<DeviceInfo> devices = new ArrayList<>(Math.min(limit, 256));
+        String lastKey = null;
+        for (Map.Entry<String, Entry> e : tail.entrySet()) {
+            if (e.getValue().removed) {
+                continue;
+            }
+            if (devices.size() == limit) {
+                return new Page(devices, lastKey);
+            }
+            devices.add(e.getValue().device);
+            lastKey = e.getKey();
+        }
+        return new Page(devices, null);
+    }
+
+    /**
+     * Live devices in key order, iterated lazily over the live map (weakly consistent)
+     */
+    public Iterable<DeviceInfo> iterate() {
+        return () -> entries.values().stream()
+                .filter(entry -> !entry.removed)
+                .map(entry -> entry.device)
+                .iterator();
+    }
+
+    /**
+     * Visit every live device
+     */
+    public void forEach(BiConsumer<String, DeviceInfo> action) {
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (!e.getValue().removed) {
+                action.accept(e.getKey(), e.getValue().device);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of live devices
+     */
+    public List<DeviceInfo> values() {
+        List<DeviceInfo> devices = new ArrayList<>(Math.max(liveCount, 0));
+        forEach((key, device) -> devices.add(device));
+        return devices;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    public long getVersion() {
+        return publishedVersion;
+    }
+
+    /**
+     * Identifies this store instance (creation time, base 36); part of every LIST SINCE token
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Counter bumped by every write, unlike the version also by last-seen
+     * refreshes; identifies the exact content returned by values()
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    private static boolean isChange(DeviceInfo previous, DeviceInfo current) {
+        return !previous.getIp().equals(current.getIp())
+                || !previous.getHostname().equals(current.getHostname())
+                || previous.isKnown() != current.isKnown();
+    }
+}
@@ -0,0 +1,60 @@
+package com.wifiguard.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.wifiguard.server.model.DeviceEvent;
+import com.wifiguard.server.protocol.Response;
+
+/**
+ * A SUBSCRIBE registration that forwards device events to one session.
+ * Delivery only enqueues onto the session's outbound queue, so the monitor
+ * thread never blocks. While the session already has maxPending responses
+ * waiting to be written, events are dropped and counted; the next delivered
+ * event is preceded by an OVERFLOW notice telling the client to resync with LIST.
+ */
+public class EventSubscription implements Consumer<DeviceEvent> {
+    private static final Logger logger = Logger.getLogger(EventSubscription.class.getName());
+
+    private final String clientAddress;
+    private final SessionOutput output;
+    private final int maxPending;
+    private final AtomicLong delivered;
+    private final AtomicLong dropped;
+    private final AtomicLong droppedSinceNotice;
+
+    /**
+     * @param output     session the events are enqueued on
+     * @param maxPending queue depth above which events are dropped
+     */
+    public EventSubscription(String clientAddress, SessionOutput output, int maxPending) {
+        this.clientAddress = clientAddress;
+        this.output = output;
+        this.maxPending = maxPending;
+        this.delivered = new AtomicLong(0);
+        this.dropped = new AtomicLong(0);
+        this.droppedSinceNotice = new AtomicLong(0);
+    }
+
+    @Override
+    public void accept(DeviceEvent event) {
+        if (output.getPendingCount() >= maxPending) {
+            dropped.incrementAndGet();
+            if (droppedSinceNotice.getAndIncrement() == 0) {
+                logger.warning("Client " + clientAddress + " nhan su kien cham, bat dau bo qua su kien");
+            }
+            return;
+        }
+
+        long lost = droppedSinceNotice.getAndSet(0);
+        if (lost > 0) {
+            output.send(Response.event("OVERFLOW " + lost + " su kien bi bo qua, gui LIST de dong bo lai", "OVERFLOW"));
+        }
+        output.send(Response.event(event));
+        delivered.incrementAndGet();
+    }
+
+    public long getDelivered() { return delivered.get(); }
+    public long getDropped() { return dropped.get(); }
+}
@@ -0,0 +1,241 @@
+package com.wifiguard.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel that tracks the last activity of every client session,
+ * blocking or NIO. Sessions only write a timestamp on activity; the wheel
+ * thread looks at an entry when its deadline bucket comes round, sends one
+ * PING after server.idle.pingAfter and closes the session after
+ * server.idle.timeout. Work per tick is proportional to the entries due in
+ * that bucket, not to the number of open sessions, and no session thread ever
+ * sleeps or retries on a read timeout.
+ */
+public final class IdleSessionWheel {
+    private static final Logger logger = Logger.getLogger(IdleSessionWheel.class.getName());
+    private static final int WHEEL_SIZE = 512; // luy thua cua 2
+    private static final long DEFAULT_READ_TIMEOUT_MS = 10000;
+    private static final long DEFAULT_TICK_MS = 1000;
+
+    /**
+     * Callbacks of a tracked session; called on the wheel thread and must not block
+     */
+    public interface Session {
+        /**
+         * Sessions that may stay silent, e.g. SUBSCRIBE, are never pinged or expired
+         */
+        boolean isIdleExempt();
+
+        void onIdlePing();
+
+        void onIdleTimeout();
+    }
+
+    /**
+     * Registration handle kept by the session
+     */
+    public static final class Handle {
+        private final Session session;
+        private volatile long lastActivity;
+        private volatile boolean cancelled;
+        private long deadlineTick; // chi luong wheel doc/ghi
+        private boolean pinged;
+
+        private Handle(Session session) {
+            this.session = session;
+            this.lastActivity = System.nanoTime();
+        }
+
+        /**
+         * Record activity; one volatile write, the wheel reschedules lazily
+         */
+        public void touch() {
+            lastActivity = System.nanoTime();
+        }
+
+        /**
+         * Stop tracking; the entry is dropped when its bucket comes round
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickNanos;
+    private final long pingAfterNanos;
+    private final long timeoutNanos;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Handle>[] buckets = new List[WHEEL_SIZE];
+    private final Queue<Handle> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tracked = new AtomicInteger(0);
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private List<Handle> spare = new ArrayList<>();
+    private long startNanos;
+    private long currentTick;
+    private volatile boolean running;
+    private Thread thread;
+
+    public IdleSessionWheel(long tickMillis, long pingAfterMillis, long timeoutMillis) {
+        if (tickMillis < 1 || timeoutMillis < tickMillis) {
+            throw new IllegalArgumentException("Idle timeout must be at least one tick");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.pingAfterNanos = TimeUnit.MILLISECONDS.toNanos(pingAfterMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Defaults keep the old read-timeout behaviour: PING after 2 x server.readTimeout,
+     * close after 3 x server.readTimeout
+     */
+    public static IdleSessionWheel fromConfig(Properties config) {
+        long readTimeout = Long.parseLong(config.getProperty("server.readTimeout",
+                String.valueOf(DEFAULT_READ_TIMEOUT_MS)).trim());
+        return new IdleSessionWheel(
+                Long.parseLong(config.getProperty("server.idle.tickMillis", String.valueOf(DEFAULT_TICK_MS)).trim()),
+                Long.parseLong(config.getProperty("server.idle.pingAfter", String.valueOf(readTimeout * 2)).trim()),
+                Long.parseLong(config.getProperty("server.idle.timeout", String.valueOf(readTimeout * 3)).trim()));
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startNanos = System.nanoTime();
+        currentTick = 0;
+        thread = new Thread(this::run, "Idle-Session-Wheel");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Idle session wheel started: ping after " + TimeUnit.NANOSECONDS.toMillis(pingAfterNanos) +
+                "ms, timeout " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms, tick " +
+                TimeUnit.NANOSECONDS.toMillis(tickNanos) + "ms");
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Start tracking a session; callable from any thread
+     */
+    public Handle register(Session session) {
+        Handle handle = new Handle(session);
+        tracked.incrementAndGet();
+        pending.add(handle);
+        return handle;
+    }
+
+    private void run() {
+        long nextTick = startNanos + tickNanos;
+        while (running) {
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            try {
+                currentTick++;
+                nextTick += tickNanos;
+                drainPending();
+                expireBucket();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error in idle session wheel", e);
+            }
+        }
+    }
+
+    private void drainPending() {
+        Handle handle;
+        while ((handle = pending.poll()) != null) {
+            handle.pinged = false;
+            schedule(handle, handle.lastActivity + pingAfterNanos);
+        }
+    }
+
+    /**
+     * Look at every entry of the current bucket; entries from later rounds stay put
+     */
+    private void expireBucket() {
+        int index = (int) (currentTick & (WHEEL_SIZE - 1));
+        List<Handle> due = buckets[index];
+        buckets[index] = spare;
+        long now = System.nanoTime();
+        for (Handle handle : due) {
+            if (handle.cancelled) {
+                tracked.decrementAndGet();
+            } else if (handle.deadlineTick > currentTick) {
+                buckets[index].add(handle);
+            } else {
+                try {
+                    check(handle, now);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Idle session callback failed", e);
+                }
+            }
+        }
+        due.clear();
+        spare = due;
+    }
+
+    private void check(Handle handle, long now) {
+        long lastActivity = handle.lastActivity;
+        long idle = now - lastActivity;
+        if (idle < pingAfterNanos) {
+            // Co hoat dong tu lan hen truoc: hen lai theo lan hoat dong cuoi
+            handle.pinged = false;
+            schedule(handle, lastActivity + pingAfterNanos);
+            return;
+        }
+        if (handle.session.isIdleExempt()) {
+            handle.pinged = false;
+            schedule(handle, now + pingAfterNanos);
+            return;
+        }
+        if (idle >= timeoutNanos) {
+            expired.increment();
+            tracked.decrementAndGet();
+            handle.cancelled = true;
+            handle.session.onIdleTimeout();
+            return;
+        }
+        schedule(handle, lastActivity + timeoutNanos);
+        if (!handle.pinged) {
+            handle.pinged = true;
+            pings.increment();
+            handle.session.onIdlePing();
+        }
+    }
+
+    private void schedule(Handle handle, long deadlineNanos) {
+        long tick = (deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+        handle.deadlineTick = Math.max(tick, currentTick + 1);
+        buckets[(int) (handle.deadlineTick & (WHEEL_SIZE - 1))].add(handle);
+    }
+
+    public int getTrackedSessions() { return tracked.get(); }
+    public long getPingsSent() { return pings.sum(); }
+    public long getExpiredSessions() { return expired.sum(); }
+}
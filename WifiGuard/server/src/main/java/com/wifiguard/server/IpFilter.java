@@ -0,0 +1,237 @@
+package com.wifiguard.server;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Accept-time filter for security.allowedIPs and security.blockedIPs.
+ * Both lists are compiled into binary prefix tries (one for IPv4, one for
+ * IPv6), so a lookup walks at most 32 or 128 bits whatever the number of
+ * entries. Blocked ranges win over allowed ones; an empty allow list admits
+ * every address that is not blocked. {@link #reload} swaps the compiled rules
+ * in one volatile write, so accept threads never see a half-built set.
+ */
+public final class IpFilter {
+    private static final Logger logger = Logger.getLogger(IpFilter.class.getName());
+
+    private volatile Rules rules;
+    private final LongAdder rejected = new LongAdder();
+
+    public IpFilter(String allowed, String blocked) {
+        this.rules = new Rules(allowed, blocked);
+    }
+
+    public static IpFilter fromConfig(Properties config) {
+        return new IpFilter(config.getProperty("security.allowedIPs", ""),
+                config.getProperty("security.blockedIPs", ""));
+    }
+
+    /**
+     * Compile new lists and replace the current rules; on a parse error the old rules stay active
+     *
+     * @throws IllegalArgumentException if an entry is not an IP address or CIDR range
+     */
+    public void reload(String allowed, String blocked) {
+        Rules compiled = new Rules(allowed, blocked);
+        rules = compiled;
+        logger.info("IP filter reloaded: " + compiled);
+    }
+
+    /**
+     * True when the address may connect; refusals are counted
+     */
+    public boolean isAllowed(InetAddress address) {
+        Rules current = rules;
+        if (current.isEmpty()) {
+            return true;
+        }
+        boolean allowed;
+        if (address instanceof Inet4Address) {
+            // hashCode() cua Inet4Address la chinh dia chi, khong can clone mang byte
+            int bits = address.hashCode();
+            allowed = !current.blocked.v4.matches(bits) && (current.allowAll || current.allowed.v4.matches(bits));
+        } else {
+            byte[] bytes = address.getAddress();
+            allowed = !current.blocked.v6.matches(bytes) && (current.allowAll || current.allowed.v6.matches(bytes));
+        }
+        if (!allowed) {
+            rejected.increment();
+        }
+        return allowed;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return rules.toString();
+    }
+
+    /**
+     * Immutable pair of compiled lists
+     */
+    private static final class Rules {
+        final CidrSet allowed;
+        final CidrSet blocked;
+        final boolean allowAll;
+
+        Rules(String allowed, String blocked) {
+            this.allowed = CidrSet.parse(allowed);
+            this.blocked = CidrSet.parse(blocked);
+            this.allowAll = this.allowed.size == 0;
+        }
+
+        boolean isEmpty() {
+            return allowAll && blocked.size == 0;
+        }
+
+        @Override
+        public String toString() {
+            return (allowAll ? "allow all" : allowed.size + " allowed ranges") + ", " + blocked.size + " blocked ranges";
+        }
+    }
+
+    /**
+     * IPv4 and IPv6 tries built from one comma-separated list
+     */
+    private static final class CidrSet {
+        final PrefixTrie v4 = new PrefixTrie();
+        final PrefixTrie v6 = new PrefixTrie();
+        int size;
+
+        static CidrSet parse(String list) {
+            CidrSet set = new CidrSet();
+            if (list == null) {
+                return set;
+            }
+            for (String entry : list.split(",")) {
+                entry = entry.trim();
+                if (!entry.isEmpty()) {
+                    set.add(entry);
+                }
+            }
+            set.v4.compact();
+            set.v6.compact();
+            return set;
+        }
+
+        void add(String entry) {
+            int slash = entry.indexOf('/');
+            String host = slash < 0 ? entry : entry.substring(0, slash);
+            byte[] address = parseLiteral(host, entry);
+            int maxBits = address.length * 8;
+            int prefix = maxBits;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(entry.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid prefix length in " + entry);
+                }
+                if (prefix < 0 || prefix > maxBits) {
+                    throw new IllegalArgumentException("Invalid prefix length in " + entry);
+                }
+            }
+            (address.length == 4 ? v4 : v6).insert(address, prefix);
+            size++;
+        }
+
+        /**
+         * Parse an IP literal without ever falling back to a DNS lookup
+         */
+        private static byte[] parseLiteral(String host, String entry) {
+            boolean literal = host.indexOf(':') >= 0 || (!host.isEmpty() && host.chars().allMatch(
+                    c -> (c >= '0' && c <= '9') || c == '.'));
+            if (!literal) {
+                throw new IllegalArgumentException("Not an IP address or CIDR range: " + entry);
+            }
+            try {
+                return InetAddress.getByName(host).getAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Not an IP address or CIDR range: " + entry);
+            }
+        }
+    }
+
+    /**
+     * Binary trie in two child arrays; node 0 is the root, child 0 means "none"
+     */
+    private static final class PrefixTrie {
+        private int[] zero = new int[16];
+        private int[] one = new int[16];
+        private boolean[] terminal = new boolean[16];
+        private int nodes = 1;
+
+        void insert(byte[] address, int prefix) {
+            int node = 0;
+            for (int i = 0; i < prefix; i++) {
+                if (terminal[node]) {
+                    return; // da co mot dai rong hon
+                }
+                boolean isZero = bit(address, i) == 0;
+                int child = isZero ? zero[node] : one[node];
+                if (child == 0) {
+                    child = newNode(); // co the mo rong mang, gan sau khi tao
+                    (isZero ? zero : one)[node] = child;
+                }
+                node = child;
+            }
+            terminal[node] = true;
+        }
+
+        private int newNode() {
+            if (nodes == terminal.length) {
+                int capacity = nodes * 2;
+                zero = Arrays.copyOf(zero, capacity);
+                one = Arrays.copyOf(one, capacity);
+                terminal = Arrays.copyOf(terminal, capacity);
+            }
+            return nodes++;
+        }
+
+        void compact() {
+            zero = Arrays.copyOf(zero, nodes);
+            one = Arrays.copyOf(one, nodes);
+            terminal = Arrays.copyOf(terminal, nodes);
+        }
+
+        boolean matches(int address) {
+            int node = 0;
+            for (int i = 31; i >= 0; i--) {
+                if (terminal[node]) {
+                    return true;
+                }
+                node = ((address >>> i) & 1) == 0 ? zero[node] : one[node];
+                if (node == 0) {
+                    return false;
+                }
+            }
+            return terminal[node];
+        }
+
+        boolean matches(byte[] address) {
+            int node = 0;
+            int bits = address.length * 8;
+            for (int i = 0; i < bits; i++) {
+                if (terminal[node]) {
+                    return true;
+                }
+                node = bit(address, i) == 0 ? zero[node] : one[node];
+                if (node == 0) {
+                    return false;
+                }
+            }
+            return terminal[node];
+        }
+
+        private static int bit(byte[] address, int index) {
+            return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.wifiguard.server;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-category sampling for high-volume log lines on the command path.
+ * With logging.sample.&lt;category&gt;=N only one call in N is logged; 1 (the
+ * default) logs everything. Callers check {@link #sample()} before building the
+ * message so skipped lines cost one atomic increment. Warnings and errors
+ * should not be sampled.
+ */
+public final class LogSampler {
+    private static final String PROPERTY_PREFIX = "logging.sample.";
+    private static final ConcurrentHashMap<String, LogSampler> SAMPLERS = new ConcurrentHashMap<>();
+    private static volatile Properties config = new Properties();
+
+    private final String category;
+    private final AtomicLong calls = new AtomicLong(0);
+    private volatile int rate;
+
+    private LogSampler(String category) {
+        this.category = category;
+        this.rate = readRate(config, category);
+    }
+
+    /**
+     * Shared sampler for a category, e.g. "command"
+     */
+    public static LogSampler forCategory(String category) {
+        return SAMPLERS.computeIfAbsent(category, LogSampler::new);
+    }
+
+    /**
+     * Apply logging.sample.* from the server configuration to all categories
+     */
+    public static void configure(Properties properties) {
+        config = properties;
+        for (LogSampler sampler : SAMPLERS.values()) {
+            sampler.rate = readRate(properties, sampler.category);
+        }
+    }
+
+    private static int readRate(Properties properties, String category) {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty(PROPERTY_PREFIX + category, "1").trim()));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * True when this call should be logged
+     */
+    public boolean sample() {
+        int current = rate;
+        return current == 1 || calls.getAndIncrement() % current == 0;
+    }
+
+    public String getCategory() { return category; }
+    public int getRate() { return rate; }
+}
@@ -0,0 +1,363 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.wifiguard.server.protocol.BufferPool;
+import com.wifiguard.server.protocol.ResponseEncoder;
+
+/**
+ * Non-blocking connection engine based on Selector/ServerSocketChannel.
+ * One accept thread and a few I/O threads multiplex every session; the shared
+ * worker pool is only used to run commands.
+ */
+public class NioServer {
+    private static final Logger logger = Logger.getLogger(NioServer.class.getName());
+    private static final int THREAD_JOIN_TIMEOUT = 5000; // 5 seconds
+    private static final int DEFAULT_IO_THREADS = 2;
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_PACKET_SIZE = 65536;
+    private static final int DEFAULT_POOL_BUFFER_SIZE = 32768;
+    private static final int DEFAULT_POOL_MAX_IDLE = 256;
+
+    private final String host;
+    private final int port;
+    private final int backlog;
+    private final int ioThreadCount;
+    private final int bufferSize;
+    private final int maxPacketSize;
+    private final ResponseEncoder encoder;
+    private final ExecutorService workers;
+    private final AtomicInteger connectionCounter;
+    private final Allowlist allowlist;
+    private final DeviceMonitor deviceMonitor;
+    private final ServerMain serverMain;
+    private final AtomicBoolean running;
+    private final AtomicInteger nextLoop;
+
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private Thread acceptThread;
+    private IoLoop[] ioLoops;
+
+    public NioServer(Properties config, ExecutorService workers, AtomicInteger connectionCounter,
+                     Allowlist allowlist, DeviceMonitor deviceMonitor, ServerMain serverMain) {
+        this.host = config.getProperty("server.host", "0.0.0.0");
+        this.port = Integer.parseInt(config.getProperty("server.port", "9099"));
+        this.backlog = Integer.parseInt(config.getProperty("server.backlog", "50"));
+        this.ioThreadCount = Math.max(1, Integer.parseInt(
+                config.getProperty("server.io.threads", String.valueOf(DEFAULT_IO_THREADS))));
+        this.bufferSize = Integer.parseInt(config.getProperty("network.bufferSize", String.valueOf(DEFAULT_BUFFER_SIZE)));
+        this.maxPacketSize = Integer.parseInt(config.getProperty("network.maxPacketSize", String.valueOf(DEFAULT_MAX_PACKET_SIZE)));
+        this.encoder = new ResponseEncoder(new BufferPool(
+                Integer.parseInt(config.getProperty("network.bufferPool.bufferSize", String.valueOf(DEFAULT_POOL_BUFFER_SIZE))),
+                Integer.parseInt(config.getProperty("network.bufferPool.maxIdle", String.valueOf(DEFAULT_POOL_MAX_IDLE)))));
+        this.workers = workers;
+        this.connectionCounter = connectionCounter;
+        this.allowlist = allowlist;
+        this.deviceMonitor = deviceMonitor;
+        this.serverMain = serverMain;
+        this.running = new AtomicBoolean(false);
+        this.nextLoop = new AtomicInteger(0);
+    }
+
+    /**
+     * Bind the listening channel and start accept and I/O threads
+     */
+    public void start() throws IOException {
+        if (running.get()) {
+            logger.warning("NIO server is already running");
+            return;
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(host, port), backlog);
+        serverChannel.configureBlocking(false);
+
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        running.set(true);
+
+        ioLoops = new IoLoop[ioThreadCount];
+        for (int i = 0; i < ioThreadCount; i++) {
+            ioLoops[i] = new IoLoop(i + 1);
+            ioLoops[i].start();
+        }
+
+        acceptThread = new Thread(this::acceptLoop, "Nio-Accept-Thread");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        logger.info("NIO server listening on " + host + ":" + port + " with " + ioThreadCount + " I/O threads");
+    }
+
+    /**
+     * Stop accepting, close every session and stop the I/O threads
+     */
+    public void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+
+        try {
+            acceptSelector.wakeup();
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error closing NIO server channel", e);
+        }
+        join(acceptThread);
+
+        for (IoLoop loop : ioLoops) {
+            loop.shutdown();
+        }
+        for (IoLoop loop : ioLoops) {
+            join(loop.thread);
+        }
+
+        logger.info("NIO server stopped");
+    }
+
+    /**
+     * Close the listening channel only; sessions and I/O loops keep running
+     */
+    public void stopAccepting() {
+        try {
+            serverChannel.close();
+            acceptSelector.wakeup();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error closing NIO server channel", e);
+        }
+        join(acceptThread);
+    }
+
+    private void join(Thread thread) {
+        if (thread == null || !thread.isAlive()) {
+            return;
+        }
+        try {
+            thread.join(THREAD_JOIN_TIMEOUT);
+            if (thread.isAlive()) {
+                logger.warning(thread.getName() + " did not terminate gracefully");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Accept loop: hands every new channel to an I/O loop in round-robin order
+     */
+    private void acceptLoop() {
+        logger.info("NIO accept thread started");
+
+        while (running.get() && serverChannel.isOpen()) {
+            try {
+                acceptSelector.select();
+                Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        acceptPending();
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                if (running.get()) {
+                    logger.log(Level.WARNING, "Error accepting client connection", e);
+                }
+            }
+        }
+
+        try {
+            acceptSelector.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing accept selector", e);
+        }
+        logger.info("NIO accept thread finished");
+    }
+
+    private void acceptPending() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (!admit(channel)) {
+                continue;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot configure client channel", e);
+                channel.close();
+                continue;
+            }
+
+            String clientAddress = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+            int connectionId = connectionCounter.incrementAndGet();
+            logger.info("Client connected: " + clientAddress + " (ID: " + connectionId + ", NIO)");
+
+            IoLoop loop = ioLoops[Math.floorMod(nextLoop.getAndIncrement(), ioLoops.length)];
+            CommandProcessor processor = new CommandProcessor(allowlist, deviceMonitor, serverMain, clientAddress);
+            NioSession session = new NioSession(channel, loop, workers, processor, serverMain,
+                    clientAddress, bufferSize, maxPacketSize, encoder);
+            loop.execute(session::register);
+        }
+    }
+
+    /**
+     * IP filter and connection-level rate limit, checked before the channel
+     * gets a session; refused channels are closed immediately
+     */
+    private boolean admit(SocketChannel channel) {
+        if (serverMain == null) {
+            return true;
+        }
+        try {
+            InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+            if (serverMain.getIpFilter().isAllowed(remote.getAddress())
+                    && serverMain.getConnectionLimiter().tryAcquire(remote.getAddress())) {
+                return true;
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Connection refused: " + remote.getAddress().getHostAddress());
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Cannot read remote address of accepted channel", e);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing refused channel", e);
+        }
+        return false;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Selector thread owning a subset of the sessions. Interest-op changes and
+     * registrations are always executed on this thread through {@link #execute}.
+     */
+    final class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks;
+        private final Thread thread;
+        private volatile boolean active;
+
+        IoLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.tasks = new ConcurrentLinkedQueue<>();
+            this.thread = new Thread(this, "Nio-IO-" + index);
+            this.thread.setDaemon(true);
+            this.active = true;
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        Selector selector() {
+            return selector;
+        }
+
+        /**
+         * Run a task on this loop's thread
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        /**
+         * False once the loop thread has exited; tasks queued after that never run
+         */
+        boolean isAlive() {
+            return thread.isAlive();
+        }
+
+        void shutdown() {
+            active = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (active) {
+                try {
+                    selector.select();
+                    runTasks();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioSession session = (NioSession) key.attachment();
+                        if (!key.isValid()) {
+                            session.close();
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            session.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            session.onWritable();
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Error in NIO I/O loop " + thread.getName(), e);
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Unexpected error in NIO I/O loop " + thread.getName(), e);
+                }
+            }
+
+            runTasks();
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof NioSession) {
+                    ((NioSession) attachment).close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Error closing selector", e);
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Error running NIO loop task", e);
+                }
+            }
+        }
+    }
+}
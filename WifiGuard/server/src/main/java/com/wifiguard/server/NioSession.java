@@ -0,0 +1,610 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.wifiguard.server.metrics.CommandMetrics;
+import com.wifiguard.server.protocol.Command;
+import com.wifiguard.server.protocol.Frame;
+import com.wifiguard.server.protocol.FrameCompressor;
+import com.wifiguard.server.protocol.MessageDecoder;
+import com.wifiguard.server.protocol.Response;
+import com.wifiguard.server.protocol.ResponseEncoder;
+
+/**
+ * Mot phien ket noi trong che do NIO.
+ * Luong I/O chi doc/ghi byte; lenh duoc xu ly tuan tu tren worker pool
+ * bang cung CommandProcessor voi che do blocking.
+ */
+public class NioSession implements SessionOutput, IdleSessionWheel.Session, ConnectionRegistry.Connection {
+    private static final Logger logger = Logger.getLogger(NioSession.class.getName());
+    private static final String LINE_TERMINATOR = "\n";
+    private static final byte[] LINE_TERMINATOR_BYTES = LINE_TERMINATOR.getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_GATHER = 16;
+
+    private final SocketChannel channel;
+    private final NioServer.IoLoop loop;
+    private final ExecutorService workers;
+    private final ExecutorService systemLane; // null khi chay khong co ServerMain
+    private final CommandProcessor commandProcessor;
+    private final ServerMain serverMain;
+    private final String clientAddress;
+    private final ByteBuffer readBuffer;
+    private final MessageDecoder decoder;
+    private final int maxPendingInput;
+    private final ResponseEncoder encoder;
+    private final Queue<Outgoing> writeQueue;
+    private final Object enqueueLock;
+    private final AtomicInteger pendingWrites;
+    private final ByteBuffer[] gather; // chi dung tren luong I/O
+    private final AtomicBoolean processing;
+    private final AtomicBoolean flushScheduled;
+    private final AtomicBoolean closed;
+
+    private SelectionKey key;
+    private IdleSessionWheel.Handle idleHandle; // null khi chay khong co ServerMain
+    private final ConnectionRegistry registry; // null khi chay khong co ServerMain
+    private final long connectionId;
+    private volatile String handoff; // lenh nang chuyen tu system lane sang worker pool
+    private volatile boolean closeAfterFlush;
+    private volatile boolean readPaused;
+    private volatile boolean framed;
+    private volatile FrameCompressor compressor; // sau HELLO ... DEFLATE
+
+    // Cac chi so hieu suat
+    private final long connectionStartTime;
+    private final AtomicLong commandsProcessed;
+    private final AtomicLong bytesReceived;
+    private final AtomicLong bytesSent;
+
+    NioSession(SocketChannel channel, NioServer.IoLoop loop, ExecutorService workers,
+               CommandProcessor commandProcessor, ServerMain serverMain, String clientAddress,
+               int bufferSize, int maxPacketSize, ResponseEncoder encoder) {
+        this.channel = channel;
+        this.loop = loop;
+        this.workers = workers;
+        this.systemLane = serverMain != null ? serverMain.getCommandLanes().getSystemExecutor() : null;
+        this.commandProcessor = commandProcessor;
+        this.serverMain = serverMain;
+        this.clientAddress = clientAddress;
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+        this.decoder = new MessageDecoder(maxPacketSize);
+        this.maxPendingInput = maxPacketSize * 4;
+        this.encoder = encoder;
+        this.writeQueue = new ConcurrentLinkedQueue<>();
+        this.enqueueLock = new Object();
+        this.pendingWrites = new AtomicInteger(0);
+        this.gather = new ByteBuffer[MAX_GATHER];
+        this.processing = new AtomicBoolean(false);
+        this.flushScheduled = new AtomicBoolean(false);
+        this.closed = new AtomicBoolean(false);
+
+        this.connectionStartTime = System.currentTimeMillis();
+        this.commandsProcessed = new AtomicLong(0);
+        this.bytesReceived = new AtomicLong(0);
+        this.bytesSent = new AtomicLong(0);
+
+        this.registry = serverMain != null ? serverMain.getConnectionRegistry() : null;
+        this.connectionId = registry != null ? registry.nextConnectionId() : 0;
+
+        commandProcessor.attachSession(this);
+    }
+
+    /**
+     * Dang ky channel voi selector cua loop (chay tren luong I/O)
+     */
+    void register() {
+        try {
+            key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+            if (serverMain != null) {
+                serverMain.incrementActiveConnections();
+                if (serverMain.getIdleWheel() != null) {
+                    idleHandle = serverMain.getIdleWheel().register(this);
+                }
+            }
+            if (registry != null) {
+                registry.register(this);
+            }
+            logger.info("Dang xu ly client (NIO): " + clientAddress);
+            send(Response.success("Chao mung den voi WifiGuard Server"));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Khong the dang ky client: " + clientAddress, e);
+            closeChannel();
+        }
+    }
+
+    /**
+     * Doc du lieu moi tu socket va chuyen cho worker xu ly
+     */
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Loi doc tu client: " + clientAddress, e);
+            close();
+            return;
+        }
+
+        if (read < 0) {
+            logger.info("Client da ngat ket noi: " + clientAddress);
+            close();
+            return;
+        }
+        if (idleHandle != null) {
+            idleHandle.touch();
+        }
+
+        readBuffer.flip();
+        int pending;
+        synchronized (decoder) {
+            decoder.append(readBuffer);
+            pending = decoder.available();
+        }
+        readBuffer.clear();
+
+        // Tam dung doc khi client gui nhanh hon kha nang xu ly
+        if (pending > maxPendingInput && key.isValid()) {
+            readPaused = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        scheduleProcessing();
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * Moi dot lenh bat dau tren system lane; lenh nang dau tien chuyen ca phien sang worker pool
+     */
+    private void scheduleProcessing() {
+        if (closeAfterFlush || !processing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (systemLane != null) {
+                systemLane.execute(() -> processPending(true));
+            } else {
+                workers.execute(() -> processPending(false));
+            }
+        } catch (RejectedExecutionException e) {
+            processing.set(false);
+            logger.warning("Worker pool tu choi lenh, dong ket noi: " + clientAddress);
+            send(Response.error("Server dang qua tai, vui long ket noi lai sau"));
+            closeAfterFlush = true;
+            requestFlush();
+        }
+    }
+
+    /**
+     * Xu ly tuan tu cac dong lenh da nhan (chay tren system lane hoac worker)
+     *
+     * @param onSystemLane true khi dang chay tren system lane: chi xu ly lenh he thong
+     */
+    private void processPending(boolean onSystemLane) {
+        try {
+            while (!closed.get() && !closeAfterFlush) {
+                String inputLine = handoff;
+                try {
+                    if (inputLine != null) {
+                        handoff = null;
+                    } else {
+                        synchronized (decoder) {
+                            inputLine = decoder.pollMessage();
+                        }
+                    }
+                } catch (IllegalStateException e) {
+                    logger.warning("Lenh qua dai tu client: " + clientAddress + " - " + e.getMessage());
+                    send(Response.error("Lenh qua dai: " + e.getMessage()));
+                    closeAfterFlush = true;
+                    requestFlush();
+                    return;
+                }
+
+                if (inputLine == null) {
+                    if (idleHandle != null) {
+                        idleHandle.touch();
+                    }
+                    resumeReadingIfDrained();
+                    processing.set(false);
+                    synchronized (decoder) {
+                        if (!decoder.hasMessage()) {
+                            return;
+                        }
+                    }
+                    if (!processing.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                inputLine = inputLine.trim();
+                if (onSystemLane && (commandProcessor.isImporting()
+                        || CommandLanes.laneOf(inputLine) != CommandLanes.Lane.SYSTEM)) {
+                    // processing van true: thu tu lenh cua phien duoc giu nguyen
+                    handoff = inputLine;
+                    handOffToWorkers();
+                    return;
+                }
+                Response response = commandProcessor.process(inputLine);
+                if (response == null) {
+                    continue;
+                }
+
+                bytesReceived.addAndGet(inputLine.length());
+                commandsProcessed.incrementAndGet();
+                send(response, commandProcessor.getLastCommand());
+
+                // HELLO FRAMED: response tren da gui dang text, tu day dung frame
+                if (!framed && commandProcessor.isFramed()) {
+                    synchronized (decoder) {
+                        decoder.setFramed(true);
+                    }
+                    framed = true;
+                }
+                // HELLO ... DEFLATE: nen cac frame gui sau response HELLO
+                if (compressor == null && commandProcessor.getCompressor() != null) {
+                    compressor = commandProcessor.getCompressor();
+                }
+
+                if (CommandProcessor.shouldQuit(inputLine, response)) {
+                    logger.info("Client yeu cau thoat");
+                    closeAfterFlush = true;
+                    requestFlush();
+                    return;
+                }
+            }
+            // drain() trong luc dang xu ly: dong sau khi response cuoi da ghi
+            if (closeAfterFlush) {
+                requestFlush();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Loi khong mong doi tu client: " + clientAddress, e);
+            close();
+        }
+    }
+
+    private void handOffToWorkers() {
+        try {
+            workers.execute(() -> processPending(false));
+        } catch (RejectedExecutionException e) {
+            handoff = null;
+            processing.set(false);
+            logger.warning("Worker pool tu choi lenh, dong ket noi: " + clientAddress);
+            send(Response.error("Server dang qua tai, vui long ket noi lai sau"));
+            closeAfterFlush = true;
+            requestFlush();
+        }
+    }
+
+    private void resumeReadingIfDrained() {
+        if (!readPaused) {
+            return;
+        }
+        int pending;
+        synchronized (decoder) {
+            pending = decoder.available();
+        }
+        if (pending <= maxPendingInput) {
+            loop.execute(() -> {
+                if (readPaused && key.isValid()) {
+                    readPaused = false;
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                }
+            });
+        }
+    }
+
+    /**
+     * Dua response vao hang doi ghi; viec ghi that su dien ra tren luong I/O
+     */
+    @Override
+    public void send(Response response) {
+        send(response, null);
+    }
+
+    /**
+     * Gui response cua mot lenh; ghi do tre SERIALIZE va WRITE vao CommandMetrics
+     *
+     * @param command lenh da tao response, null cho loi chao va su kien
+     */
+    private void send(Response response, Command command) {
+        if (closed.get() || response.isStreamed()) {
+            return;
+        }
+        long start = System.nanoTime();
+        FrameCompressor compressor = this.compressor;
+        byte[] bytes = null;
+        List<ByteBuffer> buffers = null;
+        if (response.getEncoded() != null) {
+            // Bytes dung chung tu ResponseCache
+            bytes = response.encode(Response.ResponseFormat.BEAUTIFUL, framed, LINE_TERMINATOR);
+            bytes = compressor != null ? compressor.compress(bytes) : bytes;
+        } else {
+            // Ghi thang vao direct buffer tu pool, khong qua String
+            buffers = encoder.encode(response, framed, LINE_TERMINATOR_BYTES);
+            buffers = compressor != null ? compressor.compress(buffers, encoder.getPool()) : buffers;
+        }
+
+        Runnable onWritten = null;
+        if (command != null) {
+            CommandMetrics metrics = commandProcessor.getMetrics();
+            long enqueued = System.nanoTime();
+            metrics.record(command, CommandMetrics.Phase.SERIALIZE, enqueued - start);
+            onWritten = () -> metrics.record(command, CommandMetrics.Phase.WRITE, System.nanoTime() - enqueued);
+        }
+        if (bytes != null) {
+            enqueue(bytes, onWritten);
+        } else {
+            enqueue(buffers, onWritten);
+        }
+    }
+
+    /**
+     * Dua mot khoi cua response dang stream vao hang doi ghi
+     */
+    @Override
+    public void sendChunk(String text, boolean last) {
+        if (closed.get()) {
+            return;
+        }
+        byte[] bytes = framed
+                ? Frame.encode(last ? Frame.FLAG_NONE : Frame.FLAG_CONTINUED, text.getBytes(StandardCharsets.UTF_8))
+                : (last ? text + LINE_TERMINATOR : text).getBytes(StandardCharsets.UTF_8);
+        FrameCompressor compressor = this.compressor;
+        enqueue(compressor != null ? compressor.compress(bytes) : bytes);
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pendingWrites.get();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    private void enqueue(byte[] bytes) {
+        enqueue(bytes, null);
+    }
+
+    private void enqueue(byte[] bytes, Runnable onWritten) {
+        synchronized (enqueueLock) {
+            writeQueue.add(new Outgoing(ByteBuffer.wrap(bytes), false, true, onWritten));
+        }
+        pendingWrites.incrementAndGet();
+        requestFlush();
+    }
+
+    /**
+     * Them cac buffer cua mot response lien tiep, khong xen ke voi response khac
+     */
+    private void enqueue(List<ByteBuffer> buffers, Runnable onWritten) {
+        if (buffers.isEmpty()) {
+            return; // khong co gi de ghi, khong tinh la dang cho
+        }
+        synchronized (enqueueLock) {
+            int last = buffers.size() - 1;
+            for (int i = 0; i <= last; i++) {
+                writeQueue.add(new Outgoing(buffers.get(i), true, i == last, i == last ? onWritten : null));
+            }
+        }
+        pendingWrites.incrementAndGet();
+        requestFlush();
+    }
+
+    private void requestFlush() {
+        if (loop.inLoop()) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    /**
+     * Ghi cac buffer dang cho bang mot lenh gathering write; bat OP_WRITE neu
+     * socket day (chay tren luong I/O)
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (closed.get() || key == null || !key.isValid()) {
+            return;
+        }
+
+        try {
+            while (true) {
+                int count = 0;
+                for (Outgoing outgoing : writeQueue) {
+                    gather[count++] = outgoing.buffer;
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                }
+                if (count == 0) {
+                    break;
+                }
+
+                long written = channel.write(gather, 0, count);
+                bytesSent.addAndGet(written);
+
+                boolean blocked = false;
+                for (int i = 0; i < count; i++) {
+                    if (gather[i].hasRemaining()) {
+                        blocked = true;
+                        break;
+                    }
+                    Outgoing done = writeQueue.poll();
+                    if (done == null) {
+                        return; // phien da dong (vd. tu callback onWritten), hang doi da bi xoa
+                    }
+                    if (done.pooled) {
+                        encoder.getPool().release(done.buffer);
+                    }
+                    if (done.endOfMessage) {
+                        pendingWrites.decrementAndGet();
+                        if (done.onWritten != null) {
+                            done.onWritten.run();
+                        }
+                    }
+                }
+                Arrays.fill(gather, 0, count, null);
+
+                if (blocked) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+
+            if (closeAfterFlush) {
+                close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Loi gui response den " + clientAddress, e);
+            close();
+        }
+    }
+
+    /**
+     * Ngung doc, gui not hang doi ghi roi dong. Neu worker dang chay lenh,
+     * processPending tu yeu cau flush sau response cuoi cung.
+     */
+    @Override
+    public void drain() {
+        closeAfterFlush = true;
+        loop.execute(() -> {
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            if (!processing.get()) {
+                flush();
+            }
+        });
+    }
+
+    @Override
+    public long getConnectionId() {
+        return connectionId;
+    }
+
+    @Override
+    public String getMode() {
+        return "nio";
+    }
+
+    @Override
+    public boolean isSubscribed() {
+        return commandProcessor.isSubscribed();
+    }
+
+    @Override
+    public boolean isIdleExempt() {
+        // Dang xu ly lenh, hoac phien SUBSCRIBE duoc phep im lang
+        return processing.get() || commandProcessor.isSubscribed();
+    }
+
+    @Override
+    public void onIdlePing() {
+        logger.info("Client idle, gui PING de kiem tra ket noi (NIO): " + clientAddress);
+        send(Response.success("PING - Kiem tra ket noi"));
+    }
+
+    @Override
+    public void onIdleTimeout() {
+        logger.warning("Client idle qua lau, dong ket noi (NIO): " + clientAddress);
+        close();
+    }
+
+    /**
+     * Dong phien va giai phong tai nguyen. Goi tu luong khac (timing wheel,
+     * CONNECTIONS CLOSE, drain) thi chuyen sang luong I/O de khong xoa hang doi
+     * ghi trong luc flush dang duyet no.
+     */
+    @Override
+    public void close() {
+        if (!loop.inLoop() && loop.isAlive()) {
+            loop.execute(this::close);
+            return;
+        }
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (idleHandle != null) {
+            idleHandle.cancel();
+        }
+        if (registry != null) {
+            registry.unregister(this);
+        }
+        if (key != null) {
+            key.cancel();
+            if (serverMain != null) {
+                serverMain.decrementActiveConnections();
+            }
+        }
+        closeChannel();
+        // Dang o luong I/O nen khong con flush nao dung cac buffer nay
+        Outgoing dropped;
+        while ((dropped = writeQueue.poll()) != null) {
+            if (dropped.pooled) {
+                encoder.getPool().release(dropped.buffer);
+            }
+        }
+        pendingWrites.set(0);
+        commandProcessor.close();
+
+        logger.info("Thong ke ket noi cho " + clientAddress +
+                   " - Thoi gian: " + getConnectionDuration() + "ms" +
+                   ", Lenh: " + commandsProcessed.get() +
+                   ", Nhan: " + bytesReceived.get() + " B" +
+                   ", Gui: " + bytesSent.get() + " B");
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Loi trong qua trinh don dep cho " + clientAddress, e);
+        }
+    }
+
+    /**
+     * Mot buffer trong hang doi ghi; pooled = tra ve BufferPool sau khi ghi xong
+     */
+    private static final class Outgoing {
+        final ByteBuffer buffer;
+        final boolean pooled;
+        final boolean endOfMessage;
+        final Runnable onWritten; // chi o buffer cuoi cua response
+
+        Outgoing(ByteBuffer buffer, boolean pooled, boolean endOfMessage, Runnable onWritten) {
+            this.buffer = buffer;
+            this.pooled = pooled;
+            this.endOfMessage = endOfMessage;
+            this.onWritten = onWritten;
+        }
+    }
+
+    // Cac getter cho chi so
+    public long getConnectionDuration() { return System.currentTimeMillis() - connectionStartTime; }
+    public long getCommandsProcessed() { return commandsProcessed.get(); }
+    public long getBytesReceived() { return bytesReceived.get(); }
+    public long getBytesSent() { return bytesSent.get(); }
+    public String getClientAddress() { return clientAddress; }
+}
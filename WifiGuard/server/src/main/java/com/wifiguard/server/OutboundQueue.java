@@ -0,0 +1,219 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-connection outbound queue for the blocking I/O mode.
+ * Callers enqueue encoded responses and return immediately; a shared writer
+ * stage drains everything queued so far into a buffered stream and flushes
+ * once per batch, so back-to-back responses leave in a single syscall.
+ * Write failures are reported asynchronously through the error callback.
+ * A message may carry a callback that runs on the writer stage once the batch
+ * containing it has been flushed.
+ */
+public class OutboundQueue {
+    private static final Logger logger = Logger.getLogger(OutboundQueue.class.getName());
+
+    // Writer stage dung chung cho moi ket noi blocking
+    private static final ExecutorService WRITER_STAGE = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCounter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Response-Writer-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final OutputStream out;
+    private final Queue<Message> pending;
+    private final AtomicInteger pendingCount;
+    private final AtomicBoolean draining;
+    private final AtomicLong bytesWritten;
+    private final AtomicLong messagesWritten;
+    private final AtomicLong flushes;
+    private final Consumer<IOException> errorListener;
+    private final Object drainLock = new Object();
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * @param out           buffered socket stream; only the writer stage touches it
+     * @param bytesWritten  counter updated after every flushed batch
+     * @param errorListener invoked once, from the writer stage, on the first write failure
+     */
+    public OutboundQueue(OutputStream out, AtomicLong bytesWritten, Consumer<IOException> errorListener) {
+        this.out = out;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.pendingCount = new AtomicInteger(0);
+        this.draining = new AtomicBoolean(false);
+        this.bytesWritten = bytesWritten;
+        this.messagesWritten = new AtomicLong(0);
+        this.flushes = new AtomicLong(0);
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Queue an encoded message without blocking
+     *
+     * @return false if the connection already failed or was closed
+     */
+    public boolean enqueue(byte[] data) {
+        return enqueue(data, null);
+    }
+
+    /**
+     * Queue an encoded message without blocking
+     *
+     * @param onWritten run on the writer stage after the message is flushed, may be null
+     * @return false if the connection already failed or was closed
+     */
+    public boolean enqueue(byte[] data, Runnable onWritten) {
+        if (failure != null || closed) {
+            return false;
+        }
+        pending.add(new Message(data, onWritten));
+        pendingCount.incrementAndGet();
+        scheduleDrain();
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            WRITER_STAGE.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            fail(new IOException("Writer stage unavailable", e));
+        }
+    }
+
+    /**
+     * Write every queued message, flush once, repeat while new messages keep arriving
+     */
+    private void drain() {
+        try {
+            while (true) {
+                long batchBytes = 0;
+                int batchMessages = 0;
+                List<Runnable> callbacks = null;
+                Message message;
+                while ((message = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    out.write(message.data);
+                    batchBytes += message.data.length;
+                    batchMessages++;
+                    if (message.onWritten != null) {
+                        if (callbacks == null) {
+                            callbacks = new ArrayList<>(4);
+                        }
+                        callbacks.add(message.onWritten);
+                    }
+                }
+                if (batchMessages > 0) {
+                    out.flush();
+                    bytesWritten.addAndGet(batchBytes);
+                    messagesWritten.addAndGet(batchMessages);
+                    flushes.incrementAndGet();
+                }
+                if (callbacks != null) {
+                    callbacks.forEach(Runnable::run);
+                }
+
+                draining.set(false);
+                if (pending.isEmpty() || !draining.compareAndSet(false, true)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            draining.set(false);
+            fail(e);
+        } finally {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure != null) {
+            return;
+        }
+        failure = e;
+        pending.clear();
+        pendingCount.set(0);
+        if (!closed) {
+            try {
+                errorListener.accept(e);
+            } catch (Exception listenerError) {
+                logger.log(Level.FINE, "Error listener failed", listenerError);
+            }
+        }
+    }
+
+    /**
+     * Wait until everything queued so far has been written (or the queue failed)
+     *
+     * @return true if the queue is fully drained
+     */
+    public boolean awaitDrained(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (drainLock) {
+            while ((!pending.isEmpty() || draining.get()) && failure == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    drainLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return failure == null;
+    }
+
+    /**
+     * Stop accepting messages; pending data is dropped if not drained first
+     */
+    public void close() {
+        closed = true;
+        pending.clear();
+        pendingCount.set(0);
+    }
+
+    private static final class Message {
+        final byte[] data;
+        final Runnable onWritten;
+
+        Message(byte[] data, Runnable onWritten) {
+            this.data = data;
+            this.onWritten = onWritten;
+        }
+    }
+
+    public boolean hasFailed() { return failure != null; }
+    public int getPendingCount() { return pendingCount.get(); }
+    public long getMessagesWritten() { return messagesWritten.get(); }
+    public long getFlushCount() { return flushes.get(); }
+}
@@ -0,0 +1,121 @@
+package com.wifiguard.server;
+
+import java.net.InetAddress;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-address token bucket, kept as one packed long per stripe so a check is a
+ * hash, a read and one CAS with no allocation and no lock.
+ * <p>
+ * Each bucket holds up to {@code capacity} tokens refilled at
+ * {@code capacity / window}; it is stored in the GCRA form (theoretical arrival
+ * time) so refill needs no timer. A stripe carries a 24-bit tag of the address
+ * that owns it: a full bucket of another address is taken over, a busy one is
+ * shared, so a hash collision can only make the limit stricter.
+ */
+public final class RateLimiter {
+    private static final int DEFAULT_STRIPES = 4096;
+    private static final int TAG_BITS = 24;
+    private static final int TIME_BITS = Long.SIZE - TAG_BITS; // ms, du cho hang chuc nam
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final long intervalMillis; // thoi gian nap lai mot token
+    private final long burstMillis;    // (capacity - 1) token co the dung truoc
+    private final AtomicLongArray stripes;
+    private final int mask;
+    private final long epochNanos = System.nanoTime();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param capacity tokens per window, also the largest burst
+     * @param windowMillis time to refill an empty bucket
+     * @param stripes number of buckets, rounded up to a power of two
+     */
+    public RateLimiter(boolean enabled, int capacity, long windowMillis, int stripes) {
+        if (capacity < 1 || windowMillis < 1) {
+            throw new IllegalArgumentException("Rate limit must allow at least 1 request per window");
+        }
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.intervalMillis = Math.max(1, windowMillis / capacity);
+        this.burstMillis = (capacity - 1) * intervalMillis;
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Command limiter: security.rateLimit.maxRequests per security.rateLimit.timeWindow seconds
+     */
+    public static RateLimiter forCommands(Properties config) {
+        return fromConfig(config, "security.rateLimit.maxRequests", "100");
+    }
+
+    /**
+     * Connection limiter: security.rateLimit.maxConnections per security.rateLimit.timeWindow seconds
+     */
+    public static RateLimiter forConnections(Properties config) {
+        return fromConfig(config, "security.rateLimit.maxConnections", "30");
+    }
+
+    private static RateLimiter fromConfig(Properties config, String maxKey, String defaultMax) {
+        return new RateLimiter(
+                Boolean.parseBoolean(config.getProperty("security.rateLimit.enabled", "false").trim()),
+                Integer.parseInt(config.getProperty(maxKey, defaultMax).trim()),
+                Long.parseLong(config.getProperty("security.rateLimit.timeWindow", "60").trim()) * 1000,
+                Integer.parseInt(config.getProperty("security.rateLimit.stripes",
+                        String.valueOf(DEFAULT_STRIPES)).trim()));
+    }
+
+    public boolean tryAcquire(InetAddress address) {
+        return !enabled || tryAcquire(address.hashCode());
+    }
+
+    public boolean tryAcquire(String address) {
+        return !enabled || tryAcquire(address.hashCode());
+    }
+
+    private boolean tryAcquire(int key) {
+        long hash = mix(key);
+        int index = (int) hash & mask;
+        long tag = hash >>> TIME_BITS;
+        // +1 de slot rong (0) luon duoc coi la bucket day
+        long now = (System.nanoTime() - epochNanos) / 1_000_000 + 1;
+
+        while (true) {
+            long current = stripes.get(index);
+            long owner = current >>> TIME_BITS;
+            long arrival = current & TIME_MASK;
+            if (owner != tag && arrival <= now) {
+                owner = tag; // bucket cua dia chi khac da day lai: chiem slot
+            }
+            long start = Math.max(arrival, now);
+            if (start - now > burstMillis) {
+                rejected.increment();
+                return false;
+            }
+            long next = (owner << TIME_BITS) | ((start + intervalMillis) & TIME_MASK);
+            if (stripes.compareAndSet(index, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Spread the address hash; low bits pick the stripe, high bits form the tag
+     */
+    private static long mix(int key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public int getCapacity() { return capacity; }
+    public long getRejected() { return rejected.sum(); }
+}
@@ -0,0 +1,80 @@
+package com.wifiguard.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.wifiguard.server.protocol.Response;
+import com.wifiguard.server.protocol.Response.ResponseFormat;
+
+/**
+ * Server-wide cache of serialized LIST and ALLOWLIST replies. Each snapshot is
+ * keyed by the revision of its source store and the response format: the first
+ * request after a change formats it once, every other session gets the same
+ * pre-encoded UTF-8 bytes. Error replies are never cached.
+ */
+public class ResponseCache {
+
+    public enum Kind {
+        LIST,
+        ALLOWLIST
+    }
+
+    private static final class Snapshot {
+        final long revision;
+        final Response response;
+
+        Snapshot(long revision, Response response) {
+            this.revision = revision;
+            this.response = response;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Cached reply for the given source revision, building it with builder on a miss.
+     * Concurrent misses for the same key build only once.
+     *
+     * @param revision revision of the source read before building, so the snapshot is never older than its key
+     */
+    public Response get(Kind kind, ResponseFormat format, long revision, Supplier<Response> builder) {
+        String key = kind.name() + '/' + format.name();
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.revision >= revision) {
+            hits.incrementAndGet();
+            return snapshot.response;
+        }
+
+        Response[] uncached = new Response[1];
+        snapshot = snapshots.compute(key, (k, current) -> {
+            if (current != null && current.revision >= revision) {
+                // Another session rebuilt it while we waited
+                hits.incrementAndGet();
+                return current;
+            }
+            misses.incrementAndGet();
+            Response built = builder.get();
+            if (built.isError()) {
+                uncached[0] = built;
+                return current;
+            }
+            return new Snapshot(revision, built.withEncoded(format));
+        });
+        return uncached[0] != null ? uncached[0] : snapshot.response;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * Share of lookups served from cache, in percent
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : h * 100.0 / total;
+    }
+}
@@ -1,13 +1,26 @@
 package com.wifiguard.server;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import com.wifiguard.server.metrics.CommandMetrics;
+import com.wifiguard.server.metrics.MetricsHttpServer;
+import com.wifiguard.server.metrics.MetricsRegistry;
 
 /**
  * Main entry point for WifiGuard Server
@@ -15,6 +28,8 @@ import java.util.logging.Logger;
  */
 public class ServerMain {
     private static final Logger logger = Logger.getLogger(ServerMain.class.getName());
+    private static final String CONFIG_FILE = "server.properties";
+    private static final String CONFIG_PATH_PROPERTY = "wifiguard.config";
     
     // Server components
     private final Allowlist allowlist;
@@ -27,6 +42,21 @@ public class ServerMain {
     private final AtomicLong totalConnections;
     private final AtomicLong totalCommands;
     private final AtomicLong startTime;
+    // Compression metrics (HELLO FRAMED DEFLATE connections)
+    private final AtomicLong compressedResponses = new AtomicLong(0);
+    private final AtomicLong compressionBytesIn = new AtomicLong(0);
+    private final AtomicLong compressionBytesOut = new AtomicLong(0);
+    private final AtomicLong compressionNanos = new AtomicLong(0);
+    private final CommandMetrics commandMetrics;
+    private final RateLimiter connectionLimiter;
+    private final RateLimiter commandLimiter;
+    private final IpFilter ipFilter;
+    private final IdleSessionWheel idleWheel;
+    private final ConnectionRegistry connectionRegistry;
+    private final CommandLanes commandLanes;
+    private final SessionBufferPool sessionBufferPool;
+    private final MetricsRegistry metricsRegistry;
+    private MetricsHttpServer metricsServer;
     
     // Server state
     private final AtomicBoolean isRunning;
@@ -34,6 +64,8 @@ public class ServerMain {
     
     // Configuration
     private final Properties config;
+    private static final String DEFAULT_LOG_FORMAT = "[%1$tF %1$tT] [%4$-7s] %2$s: %5$s%6$s%n";
+    private AsyncLogHandler asyncLogHandler;
     
     public ServerMain() {
         try {
@@ -42,6 +74,17 @@ public class ServerMain {
             this.config = loadConfiguration();
             logger.info("Configuration đã được load");
             
+            this.commandMetrics = new CommandMetrics(
+                Long.parseLong(config.getProperty("performance.slowCommandThreshold", "1000").trim()));
+            this.connectionLimiter = RateLimiter.forConnections(config);
+            this.commandLimiter = RateLimiter.forCommands(config);
+            this.ipFilter = IpFilter.fromConfig(config);
+            this.idleWheel = IdleSessionWheel.fromConfig(config);
+            this.connectionRegistry = new ConnectionRegistry();
+            this.commandLanes = CommandLanes.fromConfig(config);
+            this.sessionBufferPool = SessionBufferPool.fromConfig(config);
+            logger.info("IP filter: " + ipFilter);
+            
             this.allowlist = new Allowlist();
             logger.info("Allowlist đã được khởi tạo");
             
@@ -79,6 +122,9 @@ public class ServerMain {
             this.isRunning = new AtomicBoolean(false);
             this.isShuttingDown = new AtomicBoolean(false);
             
+            this.metricsRegistry = new MetricsRegistry();
+            registerMetrics();
+            
             logger.info("ServerMain khởi tạo thành công");
             
         } catch (Exception e) {
@@ -131,14 +177,126 @@ public class ServerMain {
      * Setup logging configuration
      */
     private void setupLogging() {
-        try {
-            LogManager.getLogManager().readConfiguration();
-        } catch (IOException e) {
-            // Use default logging if config not found
-            System.setProperty("java.util.logging.SimpleFormatter.format", 
-                "[%1$tF %1$tT] [%4$-7s] %2$s: %5$s%6$s%n");
+        System.setProperty("java.util.logging.SimpleFormatter.format",
+            config.getProperty("logging.format", DEFAULT_LOG_FORMAT));
+        Level level = Level.parse(config.getProperty("logging.level", "INFO").trim().toUpperCase());
+        
+        List<Handler> targets = new ArrayList<>();
+        if (Boolean.parseBoolean(config.getProperty("logging.console.enabled", "true"))) {
+            ConsoleHandler console = new ConsoleHandler();
+            console.setLevel(level);
+            console.setFormatter(new SimpleFormatter());
+            targets.add(console);
+        }
+        if (Boolean.parseBoolean(config.getProperty("logging.file.enabled", "true"))) {
+            String pattern = config.getProperty("logging.file.pattern", "server.log");
+            long limit = parseSize(config.getProperty("logging.file.limit", "10MB"));
+            int count = Integer.parseInt(config.getProperty("logging.file.count", "5").trim());
+            try {
+                // FileHandler rolls over to pattern.1 .. pattern.(count-1) once a file reaches limit bytes
+                FileHandler file = new FileHandler(pattern, limit, count, true);
+                file.setLevel(Level.ALL);
+                file.setFormatter(new SimpleFormatter());
+                targets.add(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Khong the mo file log " + pattern + ", chi ghi ra console", e);
+            }
+        }
+        
+        Logger root = LogManager.getLogManager().getLogger("");
+        for (Handler handler : root.getHandlers()) {
+            root.removeHandler(handler);
+            handler.close();
+        }
+        if (Boolean.parseBoolean(config.getProperty("logging.async.enabled", "true"))) {
+            int capacity = Integer.parseInt(config.getProperty("logging.async.bufferSize", "8192").trim());
+            asyncLogHandler = new AsyncLogHandler(capacity, targets.toArray(new Handler[0]));
+            root.addHandler(asyncLogHandler);
+        } else {
+            targets.forEach(root::addHandler);
+        }
+        root.setLevel(level);
+        LogSampler.configure(config);
+        
+        logger.info("Logging initialized: level=" + level + ", async=" + (asyncLogHandler != null) +
+            ", file=" + config.getProperty("logging.file.pattern", "server.log") +
+            " (" + config.getProperty("logging.file.limit", "10MB") + " x " + config.getProperty("logging.file.count", "5") + ")");
+    }
+    
+    /**
+     * Parse a size such as "10MB", "512KB" or a plain byte count
+     */
+    static long parseSize(String value) {
+        String text = value.trim().toUpperCase();
+        long multiplier = 1;
+        if (text.endsWith("GB")) {
+            multiplier = 1024L * 1024 * 1024;
+        } else if (text.endsWith("MB")) {
+            multiplier = 1024L * 1024;
+        } else if (text.endsWith("KB")) {
+            multiplier = 1024L;
         }
-        logger.info("Logging initialized");
+        if (multiplier > 1) {
+            text = text.substring(0, text.length() - 2).trim();
+        } else if (text.endsWith("B")) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        return Long.parseLong(text) * multiplier;
+    }
+    
+    /**
+     * Re-read the configuration file (see {@link #getConfigurationSource()}) and
+     * swap in its security.allowedIPs and security.blockedIPs; on a read or parse
+     * error the current rules stay active
+     *
+     * @return summary of the new rules
+     * @throws IOException if the configuration file cannot be read
+     * @throws IllegalArgumentException if an entry is not an IP address or CIDR range
+     */
+    public String reloadIpFilter() throws IOException {
+        Path external = externalConfiguration();
+        Properties fresh = new Properties();
+        try (InputStream input = openConfiguration(external)) {
+            if (input == null) {
+                throw new IOException(CONFIG_FILE + " not found");
+            }
+            fresh.load(input);
+        }
+        String allowed = fresh.getProperty("security.allowedIPs", "");
+        String blocked = fresh.getProperty("security.blockedIPs", "");
+        ipFilter.reload(allowed, blocked);
+        config.setProperty("security.allowedIPs", allowed);
+        config.setProperty("security.blockedIPs", blocked);
+        return ipFilter.toString() + " from " + describeConfiguration(external);
+    }
+    
+    /**
+     * File read at startup and by RELOAD: -Dwifiguard.config, else server.properties
+     * in the working directory, else the copy on the classpath (fixed inside the jar)
+     */
+    public String getConfigurationSource() {
+        return describeConfiguration(externalConfiguration());
+    }
+    
+    /**
+     * Editable configuration file, or null to use the classpath copy
+     */
+    private static Path externalConfiguration() {
+        String path = System.getProperty(CONFIG_PATH_PROPERTY);
+        if (path != null && !path.trim().isEmpty()) {
+            return Paths.get(path.trim());
+        }
+        Path local = Paths.get(CONFIG_FILE);
+        return Files.isRegularFile(local) ? local : null;
+    }
+    
+    private InputStream openConfiguration(Path external) throws IOException {
+        return external != null ? Files.newInputStream(external)
+                : getClass().getClassLoader().getResourceAsStream(CONFIG_FILE);
+    }
+    
+    private static String describeConfiguration(Path external) {
+        return external != null ? external.toAbsolutePath().toString() : "classpath:" + CONFIG_FILE;
     }
     
     /**
@@ -147,11 +305,11 @@ public class ServerMain {
     private Properties loadConfiguration() {
         Properties config = new Properties();
         
-        try (InputStream input = getClass().getClassLoader()
-                .getResourceAsStream("server.properties")) {
+        Path external = externalConfiguration();
+        try (InputStream input = openConfiguration(external)) {
             if (input != null) {
                 config.load(input);
-                logger.info("Configuration loaded from server.properties");
+                logger.info("Configuration loaded from " + describeConfiguration(external));
             } else {
                 logger.warning("server.properties not found, using defaults");
                 loadDefaultConfig(config);
@@ -202,6 +360,10 @@ public class ServerMain {
         config.setProperty("server.threadPool.size", "20");
         config.setProperty("server.connectionTimeout", "30000");
         config.setProperty("server.readTimeout", "10000");
+        config.setProperty("server.io.mode", "blocking");
+        config.setProperty("server.io.threads", "2");
+        config.setProperty("server.threads", "platform");
+        config.setProperty("server.shutdown.drainTimeout", "10000");
         
         // TLS settings
         config.setProperty("tls.enabled", "false");
@@ -213,6 +375,34 @@ public class ServerMain {
         config.setProperty("monitor.banSeconds", "600");
         config.setProperty("monitor.networkScanRange", "1000"); // Tăng từ 254 lên 1000 để quét nhiều thiết bị hơn
         config.setProperty("monitor.pingTimeout", "500"); // Giảm timeout để quét nhanh hơn
+        config.setProperty("monitor.subscriber.maxPending", "256");
+        config.setProperty("monitor.tombstoneSeconds", "3600");
+        
+        // Performance
+        config.setProperty("performance.slowCommandThreshold", "1000");
+        config.setProperty("performance.maxConcurrentConnections", "100");
+        config.setProperty("performance.connectionQueueSize", "200");
+        config.setProperty("performance.queueWaitTarget", "50");
+        config.setProperty("performance.poolAdjustInterval", "1000");
+        config.setProperty("performance.lanes.system.threads", "2");
+        config.setProperty("performance.lanes.modify.maxConcurrent", "2");
+        
+        // Security
+        config.setProperty("security.rateLimit.enabled", "true");
+        config.setProperty("security.rateLimit.maxRequests", "100");
+        config.setProperty("security.rateLimit.maxConnections", "30");
+        config.setProperty("security.rateLimit.timeWindow", "60");
+        
+        // Metrics
+        config.setProperty("metrics.enabled", "true");
+        config.setProperty("metrics.host", "127.0.0.1");
+        config.setProperty("metrics.port", "9100");
+        config.setProperty("metrics.collectionInterval", "60");
+        
+        // Network
+        config.setProperty("network.compression.enabled", "true");
+        config.setProperty("network.compression.level", "6");
+        config.setProperty("network.compression.threshold", "1024");
         
         // Router integration
         config.setProperty("router.mode", "windowsarp");
@@ -224,6 +414,12 @@ public class ServerMain {
         config.setProperty("logging.level", "INFO");
         config.setProperty("logging.file.enabled", "true");
         config.setProperty("logging.console.enabled", "true");
+        config.setProperty("logging.file.pattern", "server.log");
+        config.setProperty("logging.file.limit", "10MB");
+        config.setProperty("logging.file.count", "5");
+        config.setProperty("logging.async.enabled", "true");
+        config.setProperty("logging.async.bufferSize", "8192");
+        config.setProperty("logging.sample.command", "1");
     }
     
     /**
@@ -236,6 +432,8 @@ public class ServerMain {
         logger.info("Server Backlog: " + getServerBacklog());
         logger.info("TLS Enabled: " + isTlsEnabled());
         logger.info("Thread Pool Size: " + getThreadPoolSize());
+        logger.info("I/O Mode: " + getIoMode());
+        logger.info("Session Threads: " + SessionExecutors.getThreadMode(config));
         logger.info("Poll Interval: " + getPollInterval() + " seconds");
         logger.info("Router Mode: " + getRouterMode());
         logger.info("=============================");
@@ -279,6 +477,8 @@ public class ServerMain {
             deviceMonitor.start();
             logger.info("Device monitor started");
             
+            idleWheel.start();
+            
             tcpServer.start();
             logger.info("TCP server started");
             
@@ -288,6 +488,8 @@ public class ServerMain {
                 tlsServer.start();
             }
             
+            startMetricsServer();
+            
             logger.info("All components started successfully");
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to start components", e);
@@ -295,6 +497,117 @@ public class ServerMain {
         }
     }
     
+    /**
+     * Register the metrics served on /metrics; every value is read from the
+     * components' own atomics or histograms
+     */
+    private void registerMetrics() {
+        MetricsRegistry r = metricsRegistry;
+        r.gauge("wifiguard_connections_active", "Open client connections", activeConnections::get);
+        r.counter("wifiguard_connections_total", "Client connections accepted", "", totalConnections::get);
+        r.counter("wifiguard_commands_total", "Commands processed", "", totalCommands::get);
+        r.rate("wifiguard_commands_per_second", "Command rate over the last metrics.collectionInterval",
+            totalCommands::get);
+        commandMetrics.registerWith(r);
+        r.counter("wifiguard_rate_limited_total", "Requests rejected by the per-address rate limiter",
+            "level=\"connection\"", connectionLimiter::getRejected);
+        r.counter("wifiguard_rate_limited_total", "Requests rejected by the per-address rate limiter",
+            "level=\"command\"", commandLimiter::getRejected);
+        r.gauge("wifiguard_idle_tracked_sessions", "Sessions tracked by the idle timing wheel",
+            idleWheel::getTrackedSessions);
+        r.counter("wifiguard_idle_pings_total", "PINGs sent to idle sessions", "", idleWheel::getPingsSent);
+        r.counter("wifiguard_idle_expired_total", "Sessions closed for inactivity", "", idleWheel::getExpiredSessions);
+        r.counter("wifiguard_ip_filter_rejected_total", "Connections refused by security.allowedIPs/blockedIPs", "",
+            ipFilter::getRejected);
+        registerWorkerPoolMetrics(r);
+        r.gauge("wifiguard_session_buffers_idle", "Session buffer sets kept for reuse",
+            sessionBufferPool::getIdleCount);
+        r.gauge("wifiguard_session_buffers_leased", "Session buffer sets held by open blocking connections",
+            sessionBufferPool::getLeasedCount);
+        r.counter("wifiguard_session_buffers_acquired_total", "Session buffer sets handed out",
+            "result=\"allocated\"", sessionBufferPool::getAllocated);
+        r.counter("wifiguard_session_buffers_acquired_total", "Session buffer sets handed out",
+            "result=\"reused\"", sessionBufferPool::getReused);
+        r.counter("wifiguard_session_buffers_discarded_total", "Session buffer sets dropped because the pool was full",
+            "", sessionBufferPool::getDiscarded);
+        for (CommandLanes.Lane lane : CommandLanes.Lane.values()) {
+            String label = "lane=\"" + lane.label + "\"";
+            r.gauge("wifiguard_lane_active", "Commands running per priority lane", label,
+                () -> commandLanes.getActive(lane));
+            r.counter("wifiguard_lane_waits_total", "Commands that waited for a lane permit", label,
+                () -> commandLanes.getWaits(lane));
+            r.counter("wifiguard_lane_rejected_total", "Commands refused because their lane stayed full", label,
+                () -> commandLanes.getRejected(lane));
+        }
+        
+        r.gauge("wifiguard_devices", "Devices currently discovered on the network", deviceMonitor::getDeviceCount);
+        r.gauge("wifiguard_allowlist_devices", "Devices in the allowlist", allowlist::getDeviceCount);
+        r.summary("wifiguard_scan_duration_seconds", "Duration of a device poll cycle", "",
+            deviceMonitor.getScanDuration());
+        r.gauge("wifiguard_scan_last_duration_seconds", "Duration of the most recent poll cycle",
+            () -> deviceMonitor.getLastScanNanos() / 1e9);
+        r.counter("wifiguard_scan_failures_total", "Poll cycles that ended with an error", "",
+            deviceMonitor::getScanFailures);
+        r.summary("wifiguard_allowlist_save_duration_seconds", "Time to write the allowlist file", "",
+            allowlist.getSaveLatency());
+        
+        ResponseCache cache = deviceMonitor.getResponseCache();
+        r.counter("wifiguard_response_cache_total", "Response cache lookups", "result=\"hit\"", cache::getHits);
+        r.counter("wifiguard_response_cache_total", "Response cache lookups", "result=\"miss\"", cache::getMisses);
+        r.counter("wifiguard_deflate_frames_total", "Frames sent compressed", "", compressedResponses::get);
+        r.counter("wifiguard_deflate_bytes_total", "Payload bytes before and after DEFLATE", "stage=\"in\"",
+            compressionBytesIn::get);
+        r.counter("wifiguard_deflate_bytes_total", "Payload bytes before and after DEFLATE", "stage=\"out\"",
+            compressionBytesOut::get);
+        r.counter("wifiguard_deflate_cpu_nanoseconds_total", "Time spent compressing frames", "",
+            compressionNanos::get);
+        r.gauge("wifiguard_uptime_seconds", "Seconds since the server was created",
+            () -> (System.currentTimeMillis() - startTime.get()) / 1000.0);
+    }
+    
+    /**
+     * Sizing decisions of the blocking worker pool; absent with virtual threads
+     */
+    private void registerWorkerPoolMetrics(MetricsRegistry r) {
+        if (!(tcpServer.getWorkerPool() instanceof AdaptiveThreadPool)) {
+            return;
+        }
+        AdaptiveThreadPool pool = (AdaptiveThreadPool) tcpServer.getWorkerPool();
+        r.gauge("wifiguard_worker_pool_threads", "Worker threads alive", pool::getPoolSize);
+        r.gauge("wifiguard_worker_pool_core_threads", "Worker threads the pool currently keeps", pool::getCorePoolSize);
+        r.gauge("wifiguard_worker_pool_active_threads", "Worker threads running a session", pool::getActiveCount);
+        r.gauge("wifiguard_worker_pool_queued", "Sessions waiting for a worker", () -> pool.getQueue().size());
+        r.counter("wifiguard_worker_pool_resizes_total", "Core size changes made by the pool controller",
+            "direction=\"grow\"", pool::getGrowCount);
+        r.counter("wifiguard_worker_pool_resizes_total", "Core size changes made by the pool controller",
+            "direction=\"shrink\"", pool::getShrinkCount);
+        r.counter("wifiguard_worker_pool_rejected_total", "Sessions refused with BUSY because the queue was full", "",
+            pool::getRejectedCount);
+        r.summary("wifiguard_worker_pool_queue_wait_seconds", "Time a session waited for a worker", "",
+            pool.getQueueWait());
+    }
+    
+    /**
+     * Start the Prometheus endpoint when metrics.enabled
+     */
+    private void startMetricsServer() {
+        if (!Boolean.parseBoolean(config.getProperty("metrics.enabled", "true"))) {
+            logger.info("Metrics endpoint disabled");
+            return;
+        }
+        String host = config.getProperty("metrics.host", "127.0.0.1");
+        int port = Integer.parseInt(config.getProperty("metrics.port", "9100").trim());
+        int interval = Integer.parseInt(config.getProperty("metrics.collectionInterval", "60").trim());
+        try {
+            metricsServer = new MetricsHttpServer(metricsRegistry, host, port, interval);
+            metricsServer.start();
+        } catch (IOException e) {
+            // Server van chay binh thuong khi khong mo duoc cong metrics
+            logger.log(Level.WARNING, "Khong the mo metrics endpoint tren " + host + ":" + port, e);
+            metricsServer = null;
+        }
+    }
+    
     /**
      * Add shutdown hook for graceful shutdown
      */
@@ -337,6 +650,16 @@ public class ServerMain {
         logger.info("Initiating graceful shutdown...");
         
         try {
+            // Ngung nhan ket noi moi, sau do drain song song cac phien dang mo
+            if (tcpServer != null) {
+                tcpServer.stopAccepting();
+            }
+            if (tlsServer != null) {
+                tlsServer.stopAccepting();
+            }
+            long drainTimeout = Long.parseLong(config.getProperty("server.shutdown.drainTimeout", "10000").trim());
+            connectionRegistry.drainAll(drainTimeout);
+            
             // Shutdown components in reverse order
             
             if (tcpServer != null) {
@@ -354,19 +677,11 @@ public class ServerMain {
                 deviceMonitor.shutdown();
             }
             
-            // Wait for active connections to close
-            int remainingConnections = activeConnections.get();
-            if (remainingConnections > 0) {
-                logger.info("Waiting for " + remainingConnections + " active connections to close...");
-                int timeout = 30; // 30 seconds timeout
-                while (activeConnections.get() > 0 && timeout > 0) {
-                    Thread.sleep(1000);
-                    timeout--;
-                }
-                if (activeConnections.get() > 0) {
-                    logger.warning("Force closing " + activeConnections.get() + " remaining connections");
-                }
+            if (metricsServer != null) {
+                metricsServer.stop();
             }
+            idleWheel.stop();
+            commandLanes.shutdown();
             
             logger.info("Server stopped successfully");
             logFinalStats();
@@ -374,6 +689,11 @@ public class ServerMain {
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error during server shutdown", e);
         }
+        
+        // Ghi not cac ban ghi con trong hang doi log
+        if (asyncLogHandler != null) {
+            asyncLogHandler.flush();
+        }
     }
     
     /**
@@ -414,6 +734,10 @@ public class ServerMain {
         return Integer.parseInt(config.getProperty("server.threadPool.size", "20"));
     }
     
+    private String getIoMode() {
+        return config.getProperty("server.io.mode", "blocking");
+    }
+    
     private int getPollInterval() {
         return Integer.parseInt(config.getProperty("monitor.pollSeconds", "5"));
     }
@@ -514,6 +838,61 @@ public class ServerMain {
         return (double) totalCommands.get() / uptimeMinutes;
     }
     
+    public void recordCompression(int originalBytes, int compressedBytes, long nanos) {
+        compressedResponses.incrementAndGet();
+        compressionBytesIn.addAndGet(originalBytes);
+        compressionBytesOut.addAndGet(compressedBytes);
+        compressionNanos.addAndGet(nanos);
+    }
+    
+    /**
+     * Compressed frame count, achieved ratio and average CPU cost per frame
+     */
+    public String getCompressionSummary() {
+        long count = compressedResponses.get();
+        if (count == 0) {
+            return "deflate: 0 frames";
+        }
+        return String.format("deflate: %d frames, ratio=%.1f%%, avg=%d us/frame", count,
+                compressionBytesOut.get() * 100.0 / compressionBytesIn.get(), compressionNanos.get() / count / 1000);
+    }
+    
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+    
+    public CommandMetrics getCommandMetrics() {
+        return commandMetrics;
+    }
+    
+    public RateLimiter getConnectionLimiter() {
+        return connectionLimiter;
+    }
+    
+    public RateLimiter getCommandLimiter() {
+        return commandLimiter;
+    }
+    
+    public IpFilter getIpFilter() {
+        return ipFilter;
+    }
+    
+    public IdleSessionWheel getIdleWheel() {
+        return idleWheel;
+    }
+    
+    public ConnectionRegistry getConnectionRegistry() {
+        return connectionRegistry;
+    }
+    
+    public CommandLanes getCommandLanes() {
+        return commandLanes;
+    }
+    
+    public SessionBufferPool getSessionBufferPool() {
+        return sessionBufferPool;
+    }
+    
     public Properties getConfig() {
         return config;
     }
@@ -0,0 +1,203 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wifiguard.server.protocol.MessageDecoder;
+
+/**
+ * Bounded pool of the per-connection buffers of the blocking I/O mode: the
+ * socket read buffer, the write buffer behind the OutboundQueue stream and the
+ * MessageDecoder. A session borrows one set when its streams are set up and
+ * returns it on cleanup, so clients that reconnect often do not allocate
+ * 64 KB and a decoder per connection. At most maxIdle sets are kept; extra
+ * returns are left to the GC.
+ */
+public final class SessionBufferPool {
+    private static final int DEFAULT_BUFFER_SIZE = 32768;
+    private static final int DEFAULT_MAX_IDLE = 256;
+    private static final int DEFAULT_MAX_PACKET_SIZE = 65536;
+
+    private final int bufferSize;
+    private final int maxPacketSize;
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<Buffers> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * Buffers of one session; only valid between acquire and release
+     */
+    public static final class Buffers {
+        final byte[] readBuffer;
+        final MessageDecoder decoder;
+        private final byte[] writeBuffer;
+        private PooledOutputStream stream;
+
+        private Buffers(int bufferSize, int maxPacketSize) {
+            this.readBuffer = new byte[bufferSize];
+            this.writeBuffer = new byte[bufferSize];
+            this.decoder = new MessageDecoder(maxPacketSize);
+        }
+
+        /**
+         * Buffered stream over out that writes through the pooled write buffer
+         */
+        OutputStream wrap(OutputStream out) {
+            stream = new PooledOutputStream(out, writeBuffer);
+            return stream;
+        }
+    }
+
+    public SessionBufferPool(int bufferSize, int maxPacketSize, int maxIdle) {
+        this.bufferSize = bufferSize;
+        this.maxPacketSize = maxPacketSize;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * network.sessionBuffers.maxIdle (256 sets); buffer size follows the 32 KB
+     * socket buffers, the decoder limit network.maxPacketSize
+     */
+    public static SessionBufferPool fromConfig(Properties config) {
+        return new SessionBufferPool(DEFAULT_BUFFER_SIZE,
+                Integer.parseInt(config.getProperty("network.maxPacketSize",
+                        String.valueOf(DEFAULT_MAX_PACKET_SIZE)).trim()),
+                Integer.parseInt(config.getProperty("network.sessionBuffers.maxIdle",
+                        String.valueOf(DEFAULT_MAX_IDLE)).trim()));
+    }
+
+    public Buffers acquire() {
+        leased.incrementAndGet();
+        Buffers buffers = idle.poll();
+        if (buffers != null) {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+            return buffers;
+        }
+        allocated.incrementAndGet();
+        return new Buffers(bufferSize, maxPacketSize);
+    }
+
+    /**
+     * Return buffers obtained from acquire. The wrapped stream is cut off
+     * first, so a writer stage still running for the old connection fails
+     * instead of writing into the next session's buffer.
+     */
+    public void release(Buffers buffers) {
+        leased.decrementAndGet();
+        if (buffers.stream != null) {
+            buffers.stream.detach();
+            buffers.stream = null;
+        }
+        buffers.decoder.reset();
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            discarded.incrementAndGet();
+            return;
+        }
+        idle.offer(buffers);
+    }
+
+    public int getBufferSize() { return bufferSize; }
+    public int getMaxIdle() { return maxIdle; }
+    public int getIdleCount() { return idleCount.get(); }
+    public int getLeasedCount() { return leased.get(); }
+    public long getAllocated() { return allocated.get(); }
+    public long getReused() { return reused.get(); }
+    public long getDiscarded() { return discarded.get(); }
+
+    /**
+     * "idle=12/256 leased=3 allocated=15 reused=480"
+     */
+    @Override
+    public String toString() {
+        return "idle=" + getIdleCount() + "/" + maxIdle + " leased=" + getLeasedCount() +
+                " allocated=" + getAllocated() + " reused=" + getReused();
+    }
+
+    /**
+     * Buffered stream over a borrowed array: writes are collected in the array
+     * and reach the socket stream on flush or when the array is full, so the
+     * OutboundQueue batch still leaves in one write. Every method holds the
+     * stream monitor, so once detach returns nothing touches the array any more.
+     */
+    static final class PooledOutputStream extends OutputStream {
+        private final OutputStream out;
+        private byte[] buffer;
+        private int count;
+
+        PooledOutputStream(OutputStream out, byte[] buffer) {
+            this.out = out;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            ensureAttached();
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            ensureAttached();
+            if (len >= buffer.length) {
+                // Lon hon ca buffer: ghi thang, khong chep hai lan
+                flushBuffer();
+                out.write(b, off, len);
+                return;
+            }
+            if (len > buffer.length - count) {
+                flushBuffer();
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            ensureAttached();
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                if (buffer != null) {
+                    flushBuffer();
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+        synchronized void detach() {
+            buffer = null;
+            count = 0;
+        }
+
+        private void flushBuffer() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        private void ensureAttached() throws IOException {
+            if (buffer == null) {
+                throw new IOException("Session buffers already returned to the pool");
+            }
+        }
+    }
+}
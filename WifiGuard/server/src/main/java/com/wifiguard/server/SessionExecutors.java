@@ -0,0 +1,136 @@
+package com.wifiguard.server;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Factory for the executors that run client sessions.
+ * server.threads=platform keeps the classic platform-thread pools, while
+ * server.threads=virtual runs each session on its own virtual thread when the
+ * JDK supports it (21+). The virtual-thread API is looked up reflectively so
+ * the server still compiles and runs on the Java 17 baseline.
+ */
+public final class SessionExecutors {
+    private static final Logger logger = Logger.getLogger(SessionExecutors.class.getName());
+    public static final String THREADS_PLATFORM = "platform";
+    public static final String THREADS_VIRTUAL = "virtual";
+
+    private SessionExecutors() {
+    }
+
+    /**
+     * Get configured thread mode (platform or virtual)
+     */
+    public static String getThreadMode(Properties config) {
+        String mode = config != null ? config.getProperty("server.threads", THREADS_PLATFORM) : THREADS_PLATFORM;
+        return mode.trim().toLowerCase();
+    }
+
+    /**
+     * Check whether virtual threads were requested and are available
+     */
+    public static boolean useVirtualThreads(Properties config) {
+        if (!THREADS_VIRTUAL.equals(getThreadMode(config))) {
+            return false;
+        }
+        if (!isVirtualThreadSupported()) {
+            logger.warning("server.threads=virtual requires Java 21+, running on " +
+                    System.getProperty("java.version") + "; falling back to platform threads");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Executor bounded by poolSize platform threads, or one virtual thread per task
+     */
+    public static ExecutorService newSessionPool(Properties config, int poolSize, String namePrefix) {
+        ExecutorService virtual = useVirtualThreads(config) ? newVirtualThreadExecutor(namePrefix) : null;
+        if (virtual != null) {
+            return virtual;
+        }
+        return Executors.newFixedThreadPool(poolSize, platformThreadFactory(namePrefix));
+    }
+
+    /**
+     * Bounded executor that grows from minThreads up to performance.maxConcurrentConnections
+     * while queued sessions wait longer than performance.queueWaitTarget, and refuses new
+     * sessions once performance.connectionQueueSize are waiting. Virtual threads need no
+     * sizing, so server.threads=virtual still gets one virtual thread per task.
+     */
+    public static ExecutorService newAdaptivePool(Properties config, int minThreads, String namePrefix) {
+        ExecutorService virtual = useVirtualThreads(config) ? newVirtualThreadExecutor(namePrefix) : null;
+        if (virtual != null) {
+            return virtual;
+        }
+        Properties settings = config != null ? config : new Properties();
+        int maxThreads = Integer.parseInt(settings.getProperty("performance.maxConcurrentConnections",
+                String.valueOf(minThreads)).trim());
+        int queueCapacity = Integer.parseInt(settings.getProperty("performance.connectionQueueSize", "200").trim());
+        long targetWait = Long.parseLong(settings.getProperty("performance.queueWaitTarget", "50").trim());
+        long interval = Long.parseLong(settings.getProperty("performance.poolAdjustInterval", "1000").trim());
+        return new AdaptiveThreadPool(minThreads, maxThreads, queueCapacity, targetWait, interval,
+                platformThreadFactory(namePrefix), namePrefix);
+    }
+
+    /**
+     * Unbounded executor: a virtual thread per task, or cached platform threads
+     */
+    public static ExecutorService newUnboundedPool(Properties config, String namePrefix) {
+        ExecutorService virtual = useVirtualThreads(config) ? newVirtualThreadExecutor(namePrefix) : null;
+        if (virtual != null) {
+            return virtual;
+        }
+        return Executors.newCachedThreadPool(platformThreadFactory(namePrefix));
+    }
+
+    /**
+     * Check if the running JDK can create virtual threads. Thread.ofVirtual()
+     * is called, not only looked up: on JDK 19/20 it exists but throws
+     * without --enable-preview.
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicInteger threadCounter = new AtomicInteger(1);
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory()),
+     * or null (with a warning) when it cannot be built; callers then use platform threads
+     */
+    private static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot create virtual thread executor for " + namePrefix +
+                    "; falling back to platform threads", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.wifiguard.server;
+
+import com.wifiguard.server.protocol.Response;
+
+/**
+ * Write side of a client session as seen by CommandProcessor and event
+ * subscriptions. Implementations only enqueue; bytes reach the socket on the
+ * session's own writer (OutboundQueue or the NIO loop).
+ */
+public interface SessionOutput {
+
+    /**
+     * Enqueue a complete response without blocking
+     */
+    void send(Response response);
+
+    /**
+     * Enqueue one part of a streamed response; the final part has last=true
+     */
+    void sendChunk(String text, boolean last);
+
+    /**
+     * Responses or chunks queued but not yet written to the socket
+     */
+    int getPendingCount();
+
+    boolean isOpen();
+
+    /**
+     * Close the session, e.g. when a streamed reply cannot be finished
+     */
+    void close();
+}
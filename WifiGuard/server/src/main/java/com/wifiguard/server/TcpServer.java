@@ -1,13 +1,11 @@
 package com.wifiguard.server;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -17,18 +15,25 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 
+import com.wifiguard.server.protocol.Response;
+
 /**
  * TCP Server for accepting client connections with optional TLS support
  */
 public class TcpServer {
     private static final Logger logger = Logger.getLogger(TcpServer.class.getName());
-    private static final int THREAD_JOIN_TIMEOUT = 5000; // 5 seconds
     private static final int DEFAULT_BACKLOG = 50;
+    private static final String IO_MODE_BLOCKING = "blocking";
+    private static final String IO_MODE_NIO = "nio";
+    private static final byte[] BUSY_REPLY = Response.error("Server dang qua tai, vui long ket noi lai sau")
+            .encode(Response.ResponseFormat.BEAUTIFUL, false, "\n");
     
     private final int port;
     private final String host;
     private final int backlog;
     private final boolean tlsEnabled;
+    private final String ioMode;
+    private final Properties config;
     private final ExecutorService clientExecutor;
     private final AtomicBoolean running;
     private final AtomicInteger connectionCounter;
@@ -36,14 +41,16 @@ public class TcpServer {
     private final DeviceMonitor deviceMonitor;
     private final ServerMain serverMain;
     
-    private ServerSocket serverSocket;
-    private Thread acceptThread;
+    private AcceptorGroup acceptors;
+    private NioServer nioServer;
     
     public TcpServer(int port, Allowlist allowlist, DeviceMonitor deviceMonitor, ServerMain serverMain) {
         this.port = port;
         this.host = "0.0.0.0"; // Default to all interfaces
         this.backlog = DEFAULT_BACKLOG;
         this.tlsEnabled = false; // Default to non-TLS
+        this.ioMode = IO_MODE_BLOCKING;
+        this.config = new Properties();
         this.allowlist = allowlist;
         this.deviceMonitor = deviceMonitor;
         this.serverMain = serverMain;
@@ -57,6 +64,8 @@ public class TcpServer {
         this.host = config.getProperty("server.host", "0.0.0.0");
         this.backlog = Integer.parseInt(config.getProperty("server.backlog", String.valueOf(DEFAULT_BACKLOG)));
         this.tlsEnabled = Boolean.parseBoolean(config.getProperty("tls.enabled", "false"));
+        this.ioMode = config.getProperty("server.io.mode", IO_MODE_BLOCKING).trim().toLowerCase();
+        this.config = config;
         this.allowlist = allowlist;
         this.deviceMonitor = deviceMonitor;
         this.serverMain = serverMain;
@@ -76,16 +85,7 @@ public class TcpServer {
         int poolSize = config != null ? 
             Integer.parseInt(config.getProperty("server.threadPool.size", "20")) : 20;
         
-        return Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
-            private final AtomicInteger threadCounter = new AtomicInteger(1);
-            
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread thread = new Thread(r, "Client-Handler-" + threadCounter.getAndIncrement());
-                thread.setDaemon(true);
-                return thread;
-            }
-        });
+        return SessionExecutors.newAdaptivePool(config, poolSize, "Client-Handler-");
     }
     
     /**
@@ -98,14 +98,22 @@ public class TcpServer {
         }
         
         try {
-            createServerSocket();
-            running.set(true);
+            if (useNio()) {
+                nioServer = new NioServer(config, clientExecutor, connectionCounter, allowlist, deviceMonitor, serverMain);
+                nioServer.start();
+                running.set(true);
+                logger.info("TCP Server started on " + host + ":" + port + " (NIO)");
+                return;
+            }
             
-            acceptThread = new Thread(this::acceptLoop, "Server-Accept-Thread");
-            acceptThread.setDaemon(true);
-            acceptThread.start();
+            acceptors = AcceptorGroup.bind("Server-Accept-Thread",
+                    tlsEnabled ? this::createTLSServerSocket : ServerSocket::new,
+                    host, port, backlog, AcceptorGroup.acceptorCount(config), AcceptorGroup.reusePortEnabled(config));
+            running.set(true);
+            acceptors.start(this::handleNewClient);
             
-            logger.info("TCP Server started on " + host + ":" + port + (tlsEnabled ? " (TLS)" : ""));
+            logger.info("TCP Server started on " + host + ":" + port + (tlsEnabled ? " (TLS)" : "") +
+                       ", " + acceptors + ", threads: " + (SessionExecutors.useVirtualThreads(config) ? SessionExecutors.THREADS_VIRTUAL : SessionExecutors.THREADS_PLATFORM));
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to start server on " + host + ":" + port, e);
             throw new RuntimeException("Failed to start server", e);
@@ -113,33 +121,31 @@ public class TcpServer {
     }
     
     /**
-     * Create server socket (TLS or regular)
+     * Check whether the selector-based engine should be used
      */
-    private void createServerSocket() throws IOException {
+    private boolean useNio() {
+        if (!IO_MODE_NIO.equals(ioMode)) {
+            return false;
+        }
         if (tlsEnabled) {
-            createTLSServerSocket();
-        } else {
-            createRegularServerSocket();
+            logger.warning("server.io.mode=nio does not support TLS, falling back to blocking mode");
+            return false;
         }
+        return true;
     }
     
     /**
-     * Create TLS server socket
+     * Create an unbound TLS server socket; AcceptorGroup binds it
      */
-    private void createTLSServerSocket() throws IOException {
+    private ServerSocket createTLSServerSocket() throws IOException {
         try {
             SSLContext sslContext = SSLContext.getDefault();
             SSLServerSocketFactory factory = sslContext.getServerSocketFactory();
             SSLServerSocket sslSocket = (SSLServerSocket) factory.createServerSocket();
             
-            sslSocket.setReuseAddress(true);
-            sslSocket.bind(new InetSocketAddress(host, port), backlog);
-            
             // Configure TLS protocols and cipher suites
             sslSocket.setEnabledProtocols(new String[]{"TLSv1.2", "TLSv1.3"});
-            
-            this.serverSocket = sslSocket;
-            logger.info("TLS Server socket created successfully");
+            return sslSocket;
             
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to create TLS server socket", e);
@@ -147,16 +153,6 @@ public class TcpServer {
         }
     }
     
-    /**
-     * Create regular server socket
-     */
-    private void createRegularServerSocket() throws IOException {
-        serverSocket = new ServerSocket();
-        serverSocket.setReuseAddress(true);
-        serverSocket.bind(new InetSocketAddress(host, port), backlog);
-        logger.info("Regular Server socket created successfully");
-    }
-    
     /**
      * Stop the server
      */
@@ -167,41 +163,33 @@ public class TcpServer {
         }
         
         running.set(false);
-        closeServerSocket();
-        waitForAcceptThread();
+        if (nioServer != null) {
+            nioServer.stop();
+        }
+        closeAcceptors();
         shutdownClientExecutor();
         
         logger.info("TCP Server stopped");
     }
     
     /**
-     * Close server socket
+     * Stop accepting new connections; open sessions keep running until drained
      */
-    private void closeServerSocket() {
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            try {
-                serverSocket.close();
-                logger.info("Server socket closed");
-            } catch (IOException e) {
-                logger.log(Level.WARNING, "Error closing server socket", e);
-            }
+    public void stopAccepting() {
+        if (nioServer != null) {
+            nioServer.stopAccepting();
+            return;
         }
+        closeAcceptors();
     }
     
     /**
-     * Wait for accept thread to finish
+     * Close the listening sockets and wait for the accept threads to finish
      */
-    private void waitForAcceptThread() {
-        if (acceptThread != null && acceptThread.isAlive()) {
-            try {
-                acceptThread.join(THREAD_JOIN_TIMEOUT);
-                if (acceptThread.isAlive()) {
-                    logger.warning("Accept thread did not terminate gracefully");
-                }
-            } catch (InterruptedException e) {
-                logger.log(Level.WARNING, "Interrupted while waiting for accept thread", e);
-                Thread.currentThread().interrupt();
-            }
+    private void closeAcceptors() {
+        if (acceptors != null) {
+            acceptors.close();
+            logger.info("Server socket closed");
         }
     }
     
@@ -215,36 +203,58 @@ public class TcpServer {
     }
     
     /**
-     * Main accept loop
+     * Handle new client connection
      */
-    private void acceptLoop() {
-        logger.info("Accept thread started");
+    private void handleNewClient(Socket clientSocket) {
+        // Kiem tra truoc khi tao ClientHandler va chiem worker
+        if (serverMain != null && (!serverMain.getIpFilter().isAllowed(clientSocket.getInetAddress())
+                || !serverMain.getConnectionLimiter().tryAcquire(clientSocket.getInetAddress()))) {
+            rejectClient(clientSocket);
+            return;
+        }
         
-        while (running.get() && !serverSocket.isClosed()) {
+        String clientAddress = clientSocket.getInetAddress().getHostAddress();
+        int connectionId = connectionCounter.incrementAndGet();
+        
+        logger.info("Client connected: " + clientAddress + " (ID: " + connectionId + ")");
+        
+        ClientHandler clientHandler = new ClientHandler(clientSocket, allowlist, deviceMonitor, serverMain);
+        try {
+            clientExecutor.execute(clientHandler);
+        } catch (RejectedExecutionException e) {
+            // Hang doi day: tra loi BUSY ngay thay vi de client cho
+            logger.warning("Worker pool full, refusing client: " + clientAddress);
+            rejectBusy(clientSocket);
+        }
+    }
+    
+    /**
+     * Send a short BUSY error and close; TLS sockets are closed without a reply
+     * so the accept thread never waits on a handshake
+     */
+    private void rejectBusy(Socket clientSocket) {
+        if (!tlsEnabled) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                handleNewClient(clientSocket);
+                clientSocket.getOutputStream().write(BUSY_REPLY);
             } catch (IOException e) {
-                if (running.get()) {
-                    logger.log(Level.WARNING, "Error accepting client connection", e);
-                }
+                logger.log(Level.FINE, "Error sending busy reply", e);
             }
         }
-        
-        logger.info("Accept thread finished");
+        rejectClient(clientSocket);
     }
     
     /**
-     * Handle new client connection
+     * Close a connection refused by the IP filter or rate limiter without reading from it
      */
-    private void handleNewClient(Socket clientSocket) {
-        String clientAddress = clientSocket.getInetAddress().getHostAddress();
-        int connectionId = connectionCounter.incrementAndGet();
-        
-        logger.info("Client connected: " + clientAddress + " (ID: " + connectionId + ")");
-        
-        ClientHandler clientHandler = new ClientHandler(clientSocket, allowlist, deviceMonitor, serverMain);
-        clientExecutor.submit(clientHandler);
+    private void rejectClient(Socket clientSocket) {
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing refused connection", e);
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Connection refused: " + clientSocket.getInetAddress().getHostAddress());
+        }
     }
     
     /**
@@ -268,6 +278,27 @@ public class TcpServer {
         return host;
     }
     
+    /**
+     * Get configured I/O mode (blocking or nio)
+     */
+    public String getIoMode() {
+        return nioServer != null ? IO_MODE_NIO : IO_MODE_BLOCKING;
+    }
+    
+    /**
+     * Get the listening sockets and accept threads; null in NIO mode or before start
+     */
+    public AcceptorGroup getAcceptors() {
+        return acceptors;
+    }
+    
+    /**
+     * Get the worker pool, an AdaptiveThreadPool unless server.threads=virtual
+     */
+    public ExecutorService getWorkerPool() {
+        return clientExecutor;
+    }
+    
     /**
      * Check if TLS is enabled
      */
@@ -1,6 +1,9 @@
 package com.wifiguard.server;
 
 import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -11,30 +14,39 @@ public class TlsServer {
     private static final Logger logger = Logger.getLogger(TlsServer.class.getName());
     
     private final int port;
-    private final SSLServerSocket ss;
+    private final AcceptorGroup acceptors;
     private final DeviceMonitor monitor;
     private final Allowlist allow;
+    private final ServerMain serverMain;
+    private final ExecutorService sessionExecutor;
     private final AtomicBoolean running;
-    private Thread acceptThread;
     
     public TlsServer(int port, SecurityConfig sec, DeviceMonitor monitor, Allowlist allow) throws Exception {
+        this(port, sec, monitor, allow, null);
+    }
+    
+    public TlsServer(int port, SecurityConfig sec, DeviceMonitor monitor, Allowlist allow, ServerMain serverMain) throws Exception {
         this.port = port;
         this.monitor = monitor;
         this.allow = allow;
+        this.serverMain = serverMain;
         this.running = new AtomicBoolean(false);
         
-        SSLServerSocketFactory fac = sec.buildSSLContext().getServerSocketFactory();
-        this.ss = (SSLServerSocket) fac.createServerSocket(port);
+        // Mỗi phiên TLS chạy trên một thread riêng (virtual thread nếu server.threads=virtual)
+        this.sessionExecutor = SessionExecutors.newUnboundedPool(
+                serverMain != null ? serverMain.getConfig() : null, "TLS-Client-Handler-");
         
-        // Configure TLS protocols
-        ss.setEnabledProtocols(new String[]{"TLSv1.2", "TLSv1.3"});
+        SSLServerSocketFactory fac = sec.buildSSLContext().getServerSocketFactory();
+        Properties config = serverMain != null ? serverMain.getConfig() : null;
+        int backlog = config != null ? Integer.parseInt(config.getProperty("server.backlog", "50").trim()) : 50;
+        this.acceptors = AcceptorGroup.bind("TLS-Accept-Thread", () -> {
+            SSLServerSocket ss = (SSLServerSocket) fac.createServerSocket();
+            // Configure TLS protocols
+            ss.setEnabledProtocols(new String[]{"TLSv1.2", "TLSv1.3"});
+            return ss;
+        }, "0.0.0.0", port, backlog, AcceptorGroup.acceptorCount(config), AcceptorGroup.reusePortEnabled(config));
         
-        logger.info("TLS Server initialized on port " + port);
-    }
-    
-    // Thêm constructor mới để khớp với cách gọi từ ServerMain
-    public TlsServer(int port, SecurityConfig sec, DeviceMonitor monitor, Allowlist allow, ServerMain serverMain) throws Exception {
-        this(port, sec, monitor, allow); // Gọi constructor chính
+        logger.info("TLS Server initialized on port " + port + ", " + acceptors);
     }
     
     public void start() throws Exception {
@@ -45,9 +57,7 @@ public class TlsServer {
         
         try {
             running.set(true);
-            acceptThread = new Thread(this::acceptLoop, "TLS-Accept-Thread");
-            acceptThread.setDaemon(true);
-            acceptThread.start();
+            acceptors.start(this::handleClient);
             
             logger.info("[TLS] WiFiGuard server listening on port " + port);
         } catch (Exception e) {
@@ -57,21 +67,32 @@ public class TlsServer {
         }
     }
     
-    private void acceptLoop() {
-        logger.info("TLS Accept thread started");
-        
-        while (running.get() && !ss.isClosed()) {
-            try {
-                Socket s = ss.accept();
-                new Thread(new ClientHandler(s, allow, monitor, null)).start();
-            } catch (Exception e) {
-                if (running.get()) {
-                    logger.log(java.util.logging.Level.WARNING, "Error accepting TLS client connection", e);
-                }
+    /**
+     * Runs on an acceptor thread for every accepted TLS socket
+     */
+    private void handleClient(Socket s) throws java.io.IOException {
+        // Chua bat tay TLS: tu choi o day khong ton CPU cho handshake
+        if (serverMain != null && (!serverMain.getIpFilter().isAllowed(s.getInetAddress())
+                || !serverMain.getConnectionLimiter().tryAcquire(s.getInetAddress()))) {
+            s.close();
+            if (logger.isLoggable(java.util.logging.Level.FINE)) {
+                logger.fine("TLS connection refused: " + s.getInetAddress().getHostAddress());
             }
+            return;
+        }
+        try {
+            sessionExecutor.execute(new ClientHandler(s, allow, monitor, serverMain));
+        } catch (RejectedExecutionException e) {
+            logger.warning("TLS session rejected, closing connection");
+            s.close();
         }
-        
-        logger.info("TLS Accept thread finished");
+    }
+    
+    /**
+     * Close the listening socket only; TLS sessions keep running until drained
+     */
+    public void stopAccepting() {
+        acceptors.close();
     }
     
     public void shutdown() {
@@ -83,17 +104,10 @@ public class TlsServer {
         running.set(false);
         
         try {
-            if (ss != null && !ss.isClosed()) {
-                ss.close();
-                logger.info("TLS Server socket closed");
-            }
+            acceptors.close();
+            logger.info("TLS Server socket closed");
             
-            if (acceptThread != null && acceptThread.isAlive()) {
-                acceptThread.join(5000); // Wait up to 5 seconds
-                if (acceptThread.isAlive()) {
-                    logger.warning("TLS Accept thread did not terminate gracefully");
-                }
-            }
+            sessionExecutor.shutdown();
             
             logger.info("TLS Server shutdown completed");
         } catch (Exception e) {
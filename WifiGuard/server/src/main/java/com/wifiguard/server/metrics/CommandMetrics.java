@@ -0,0 +1,124 @@
+package com.wifiguard.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wifiguard.server.protocol.Command;
+
+/**
+ * Server-wide latency histograms, one per command and phase.
+ * PARSE and EXECUTE are recorded by the command processor, SERIALIZE when a
+ * session encodes the reply and WRITE from enqueue until the reply has been
+ * written to the socket. Commands slower than performance.slowCommandThreshold
+ * (PARSE + EXECUTE) are counted.
+ */
+public final class CommandMetrics {
+
+    public enum Phase {
+        PARSE,
+        EXECUTE,
+        SERIALIZE,
+        WRITE
+    }
+
+    private static final Command[] COMMANDS = Command.values();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LatencyHistogram[][] histograms;
+    private final long slowThresholdNanos;
+    private final AtomicLong slowCommands = new AtomicLong(0);
+
+    /**
+     * @param slowThresholdMs performance.slowCommandThreshold
+     */
+    public CommandMetrics(long slowThresholdMs) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        this.histograms = new LatencyHistogram[COMMANDS.length][PHASES.length];
+        for (LatencyHistogram[] phases : histograms) {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * Record one phase of a command; ignored when the command could not be parsed
+     */
+    public void record(Command command, Phase phase, long nanos) {
+        if (command != null) {
+            histograms[command.ordinal()][phase.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * True (and counted) when parse + execute took longer than the slow threshold
+     */
+    public boolean checkSlow(long nanos) {
+        if (nanos <= slowThresholdNanos) {
+            return false;
+        }
+        slowCommands.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Export the histograms as wifiguard_command_duration_seconds{command,phase}
+     */
+    public void registerWith(MetricsRegistry registry) {
+        for (Command command : COMMANDS) {
+            for (Phase phase : PHASES) {
+                registry.summary("wifiguard_command_duration_seconds", "Command latency by phase",
+                        "command=\"" + command.name() + "\",phase=\"" + phase.name().toLowerCase() + "\"",
+                        getHistogram(command, phase));
+            }
+        }
+        registry.counter("wifiguard_slow_commands_total", "Commands slower than performance.slowCommandThreshold",
+                "", slowCommands::get);
+    }
+
+    public LatencyHistogram getHistogram(Command command, Phase phase) {
+        return histograms[command.ordinal()][phase.ordinal()];
+    }
+
+    public long getSlowThresholdMs() { return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos); }
+    public long getSlowCommands() { return slowCommands.get(); }
+
+    /**
+     * One line per command and phase that has samples, e.g.
+     * "LIST EXECUTE n=120 p50=14us p99=310us p999=1.2ms max=1.9ms"
+     *
+     * @param only restrict to one command, or null for all
+     */
+    public List<String> describe(Command only) {
+        List<String> lines = new ArrayList<>();
+        for (Command command : COMMANDS) {
+            if (only != null && command != only) {
+                continue;
+            }
+            for (Phase phase : PHASES) {
+                LatencyHistogram.Snapshot snapshot = getHistogram(command, phase).snapshot();
+                if (snapshot.getCount() == 0) {
+                    continue;
+                }
+                lines.add(command.name() + " " + phase.name() + " n=" + snapshot.getCount() +
+                        " p50=" + formatNanos(snapshot.percentile(0.50)) +
+                        " p99=" + formatNanos(snapshot.percentile(0.99)) +
+                        " p999=" + formatNanos(snapshot.percentile(0.999)) +
+                        " max=" + formatNanos(snapshot.getMax()));
+            }
+        }
+        return lines;
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000_000L) {
+            return (nanos / 1000) + "us";
+        }
+        if (nanos < 1_000_000_000L) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,97 @@
+package com.wifiguard.server.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP listener serving GET /metrics from a {@link MetricsRegistry}
+ * in the Prometheus text format. Runs on its own single thread, so a slow
+ * scraper never takes a session or worker thread; the same thread recomputes
+ * the rate gauges every collection interval.
+ */
+public final class MetricsHttpServer {
+    private static final Logger logger = Logger.getLogger(MetricsHttpServer.class.getName());
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final String host;
+    private final int port;
+    private final int collectionIntervalSeconds;
+    private HttpServer server;
+    private ScheduledExecutorService executor;
+
+    public MetricsHttpServer(MetricsRegistry registry, String host, int port, int collectionIntervalSeconds) {
+        this.registry = registry;
+        this.host = host;
+        this.port = port;
+        this.collectionIntervalSeconds = Math.max(1, collectionIntervalSeconds);
+    }
+
+    public void start() throws IOException {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "WifiGuard-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        executor.scheduleAtFixedRate(registry::sampleRates, collectionIntervalSeconds, collectionIntervalSeconds,
+                TimeUnit.SECONDS);
+        logger.info("Metrics endpoint: http://" + host + ":" + getPort() + "/metrics (rates every " +
+                collectionIntervalSeconds + "s)");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error rendering metrics", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Actual listening port (useful when configured with 0)
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
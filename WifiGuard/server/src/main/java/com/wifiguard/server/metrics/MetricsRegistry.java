@@ -0,0 +1,171 @@
+package com.wifiguard.server.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of server metrics rendered in the Prometheus text format (0.0.4).
+ * Registration happens at startup; afterwards a scrape only reads the
+ * components' own atomics, LongAdders and histogram buckets, so it never
+ * takes a lock that the command path also takes. A family may hold several
+ * series that differ by labels, e.g. one summary per command and phase.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Writes the sample lines of one series
+     */
+    private interface Series {
+        void write(StringBuilder out, String name);
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final CopyOnWriteArrayList<Series> series = new CopyOnWriteArrayList<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Per-second rate of a monotonic counter, updated by {@link #sampleRates()}
+     */
+    private static final class Rate {
+        final LongSupplier total;
+        long lastTotal;
+        long lastNanos;
+        volatile double perSecond;
+
+        Rate(LongSupplier total) {
+            this.total = total;
+            this.lastTotal = total.getAsLong();
+            this.lastNanos = System.nanoTime();
+        }
+
+        synchronized void sample() {
+            long now = System.nanoTime();
+            long current = total.getAsLong();
+            if (now > lastNanos) {
+                perSecond = (current - lastTotal) * 1e9 / (now - lastNanos);
+            }
+            lastTotal = current;
+            lastNanos = now;
+        }
+    }
+
+    private final CopyOnWriteArrayList<Family> families = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Family> byName = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Rate> rates = new CopyOnWriteArrayList<>();
+
+    private Family family(String name, String help, String type) {
+        Family family = byName.computeIfAbsent(name, n -> {
+            Family created = new Family(n, help, type);
+            families.add(created);
+            return created;
+        });
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * New counter owned by the registry
+     */
+    public LongAdder counter(String name, String help) {
+        LongAdder adder = new LongAdder();
+        counter(name, help, "", adder::sum);
+        return adder;
+    }
+
+    /**
+     * Counter backed by an existing monotonic value
+     *
+     * @param labels Prometheus label set without braces, e.g. {@code result="ok"}, or ""
+     */
+    public void counter(String name, String help, String labels, LongSupplier value) {
+        family(name, help, "counter").series.add((out, n) -> sample(out, n, labels, value.getAsLong()));
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value) {
+        gauge(name, help, "", value);
+    }
+
+    public void gauge(String name, String help, String labels, DoubleSupplier value) {
+        family(name, help, "gauge").series.add((out, n) -> sample(out, n, labels, value.getAsDouble()));
+    }
+
+    /**
+     * Gauge with the per-second rate of a counter over the last collection interval
+     */
+    public void rate(String name, String help, LongSupplier total) {
+        Rate rate = new Rate(total);
+        rates.add(rate);
+        gauge(name, help, () -> rate.perSecond);
+    }
+
+    /**
+     * Summary of a latency histogram, exported in seconds with p50/p99/p999;
+     * series without samples are left out
+     */
+    public void summary(String name, String help, String labels, LatencyHistogram histogram) {
+        family(name, help, "summary").series.add((out, n) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            if (snapshot.getCount() == 0) {
+                return;
+            }
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            sample(out, n, prefix + "quantile=\"0.5\"", snapshot.percentile(0.50) / 1e9);
+            sample(out, n, prefix + "quantile=\"0.99\"", snapshot.percentile(0.99) / 1e9);
+            sample(out, n, prefix + "quantile=\"0.999\"", snapshot.percentile(0.999) / 1e9);
+            sample(out, n + "_sum", labels, snapshot.getSum() / 1e9);
+            sample(out, n + "_count", labels, snapshot.getCount());
+        });
+    }
+
+    /**
+     * Recompute every rate gauge; called once per metrics.collectionInterval
+     */
+    public void sampleRates() {
+        for (Rate rate : rates) {
+            rate.sample();
+        }
+    }
+
+    /**
+     * Render all families in the Prometheus text exposition format
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Series series : family.series) {
+                series.write(out, family.name);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
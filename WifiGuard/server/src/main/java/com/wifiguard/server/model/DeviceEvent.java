@@ -0,0 +1,54 @@
+package com.wifiguard.server.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện thay đổi thiết bị do DeviceMonitor phát ra cho các client SUBSCRIBE
+ */
+public final class DeviceEvent {
+    /**
+     * Loại thay đổi
+     */
+    public enum Type {
+        JOINED,
+        LEFT,
+        IP_CHANGED,
+        KNOWN_CHANGED
+    }
+
+    private final Type type;
+    private final DeviceInfo device;
+    private final DeviceInfo previous;
+    private final LocalDateTime timestamp;
+
+    public DeviceEvent(Type type, DeviceInfo device, DeviceInfo previous) {
+        this.type = type;
+        this.device = device;
+        this.previous = previous;
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public Type getType() { return type; }
+    public DeviceInfo getDevice() { return device; }
+    public DeviceInfo getPrevious() { return previous; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+
+    /**
+     * Mô tả ngắn gọn cho một dòng thông báo
+     */
+    public String describe() {
+        switch (type) {
+            case IP_CHANGED:
+                return type + " " + device.getMac() + " " + previous.getIp() + " -> " + device.getIp();
+            case KNOWN_CHANGED:
+                return type + " " + device.getMac() + " " + (device.isKnown() ? "known" : "unknown");
+            default:
+                return type + " " + device.getMac() + " " + device.getIp();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceEvent{" + describe() + ", timestamp=" + timestamp + "}";
+    }
+}
@@ -0,0 +1,147 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import com.wifiguard.server.model.DeviceInfo;
+
+/**
+ * Record formats of IMPORT and EXPORT.
+ *
+ * CSV: one {@code mac,hostname,ip} line per device; hostname and ip may be
+ * empty or missing.
+ *
+ * BINARY: each line is URL-safe Base64 (no padding) of a run of records, each
+ * record 6 MAC bytes, 4 IPv4 bytes (0.0.0.0 = no address), 1 hostname length
+ * byte and up to 255 UTF-8 hostname bytes. The URL-safe alphabet keeps data
+ * lines from starting with the '+' or '|' of the response box.
+ */
+public final class AllowlistCodec {
+    public static final int MAX_HOSTNAME_BYTES = 255;
+    public static final int MIN_RECORD_BYTES = 11;
+    private static final String DEFAULT_HOSTNAME = "Unknown";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
+    public enum Format {
+        CSV, BINARY;
+
+        /**
+         * CSV when no format is given; null for an unknown name
+         */
+        public static Format parse(String name) {
+            if (name == null) {
+                return CSV;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private AllowlistCodec() {
+    }
+
+    /**
+     * Parse one CSV record; the device may still fail {@link DeviceInfo#isValid()}
+     *
+     * @return null if the line does not have 1 to 3 fields
+     */
+    public static DeviceInfo parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length > 3 || fields[0].trim().isEmpty()) {
+            return null;
+        }
+        String hostname = fields.length > 1 ? fields[1].trim() : "";
+        return DeviceInfo.builder()
+                .mac(fields[0].trim())
+                .hostname(hostname.isEmpty() ? DEFAULT_HOSTNAME : hostname)
+                .ip(fields.length > 2 ? fields[2].trim() : "")
+                .buildOrNull();
+    }
+
+    public static void appendCsv(StringBuilder sb, DeviceInfo device) {
+        sb.append(device.getMac()).append(',').append(device.getHostname()).append(',')
+                .append(device.getIp()).append('\n');
+    }
+
+    /**
+     * Append one binary record; false if the buffer has no room for it
+     */
+    public static boolean writeBinary(ByteBuffer buffer, DeviceInfo device) {
+        byte[] hostname = device.getHostname().getBytes(StandardCharsets.UTF_8);
+        int hostnameLength = Math.min(hostname.length, MAX_HOSTNAME_BYTES);
+        if (buffer.remaining() < MIN_RECORD_BYTES + hostnameLength) {
+            return false;
+        }
+        String mac = device.getMac();
+        for (int i = 0; i < 6; i++) {
+            buffer.put((byte) Integer.parseInt(mac.substring(i * 3, i * 3 + 2), 16));
+        }
+        String ip = device.getIp();
+        if (ip.isEmpty()) {
+            buffer.putInt(0);
+        } else {
+            for (String octet : ip.split("\\.")) {
+                buffer.put((byte) Integer.parseInt(octet));
+            }
+        }
+        buffer.put((byte) hostnameLength);
+        buffer.put(hostname, 0, hostnameLength);
+        return true;
+    }
+
+    /**
+     * Base64 line of the bytes written to the buffer so far
+     */
+    public static String toBase64Line(ByteBuffer buffer) {
+        return BASE64_ENCODER.encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    /**
+     * Decode one BINARY line and hand every record to the sink
+     *
+     * @return number of records decoded
+     * @throws IllegalArgumentException if the line is not Base64 or ends inside a record
+     */
+    public static int decodeBinaryLine(String line, Consumer<DeviceInfo> sink) {
+        ByteBuffer records = ByteBuffer.wrap(BASE64_DECODER.decode(line));
+        int count = 0;
+        char[] mac = new char[17];
+        while (records.hasRemaining()) {
+            if (records.remaining() < MIN_RECORD_BYTES) {
+                throw new IllegalArgumentException("Ban ghi nhi phan bi cat o byte " + records.position());
+            }
+            for (int i = 0; i < 6; i++) {
+                int b = records.get() & 0xFF;
+                mac[i * 3] = HEX[b >>> 4];
+                mac[i * 3 + 1] = HEX[b & 0x0F];
+                if (i < 5) {
+                    mac[i * 3 + 2] = ':';
+                }
+            }
+            int address = records.getInt();
+            int hostnameLength = records.get() & 0xFF;
+            if (records.remaining() < hostnameLength) {
+                throw new IllegalArgumentException("Ban ghi nhi phan bi cat o byte " + records.position());
+            }
+            String hostname = new String(records.array(), records.position(), hostnameLength, StandardCharsets.UTF_8);
+            records.position(records.position() + hostnameLength);
+            sink.accept(DeviceInfo.builder()
+                    .mac(new String(mac))
+                    .hostname(hostname.isEmpty() ? DEFAULT_HOSTNAME : hostname)
+                    .ip(address == 0 ? "" : (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." +
+                            ((address >>> 8) & 0xFF) + "." + (address & 0xFF))
+                    .buildOrNull());
+            count++;
+        }
+        return count;
+    }
+}
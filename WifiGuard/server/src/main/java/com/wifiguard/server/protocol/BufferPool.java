@@ -0,0 +1,67 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed-size direct buffers used to encode outgoing responses.
+ * Direct buffers are written to the socket without the JDK's temporary copy,
+ * but are expensive to allocate, so released buffers are kept for reuse up to
+ * maxIdle. Buffers that are never released are simply reclaimed by the GC.
+ */
+public final class BufferPool {
+    private final int bufferSize;
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<ByteBuffer> idle;
+    private final AtomicInteger idleCount;
+    private final AtomicLong allocated;
+    private final AtomicLong reused;
+
+    public BufferPool(int bufferSize, int maxIdle) {
+        if (bufferSize < Frame.HEADER_SIZE) {
+            throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.idleCount = new AtomicInteger(0);
+        this.allocated = new AtomicLong(0);
+        this.reused = new AtomicLong(0);
+    }
+
+    /**
+     * Cleared buffer ready for writing
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer != null) {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Return a buffer obtained from acquire; it must not be used afterwards
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || !buffer.isDirect()) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(buffer);
+    }
+
+    public int getBufferSize() { return bufferSize; }
+    public int getIdleCount() { return idleCount.get(); }
+    public long getAllocated() { return allocated.get(); }
+    public long getReused() { return reused.get(); }
+}
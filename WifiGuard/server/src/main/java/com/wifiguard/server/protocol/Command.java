@@ -12,7 +12,8 @@ public enum Command {
     /**
      * Liệt kê tất cả thiết bị đã phát hiện
      */
-    LIST("Liệt kê tất cả thiết bị", "LIST", false, 0, 0),
+    LIST("Liệt kê thiết bị: toàn bộ, thay đổi sau một phiên bản, theo trang hoặc dạng stream",
+         "LIST [SINCE <token> | LIMIT <n> [CURSOR <c>] | STREAM]", false, 0, 4),
     
     /**
      * Liệt kê tất cả thiết bị trong allowlist
@@ -29,16 +30,80 @@ public enum Command {
      */
     DEL("Xóa thiết bị khỏi danh sách cho phép", "DEL <MAC>", true, 1, 1),
     
+    /**
+     * Bắt đầu lô thao tác ADD/DEL
+     */
+    MULTI("Bắt đầu lô thao tác: các lệnh ADD/DEL sau đó được xếp hàng đến khi EXEC", "MULTI", false, 0, 0),
+    
+    /**
+     * Áp dụng lô thao tác trong một lần lưu allowlist
+     */
+    EXEC("Áp dụng toàn bộ lô ADD/DEL trong một lần lưu, trả về kết quả từng thao tác", "EXEC", false, 0, 0),
+    
+    /**
+     * Hủy lô thao tác đang xếp hàng
+     */
+    DISCARD("Hủy lô thao tác đang xếp hàng", "DISCARD", false, 0, 0),
+    
+    /**
+     * Nhập allowlist hàng loạt từ luồng bản ghi
+     */
+    IMPORT("Nhập allowlist hàng loạt: gửi bản ghi CSV hoặc nhị phân, mỗi dòng một khối, kết thúc bằng END",
+           "IMPORT [CSV | BINARY]", false, 0, 1),
+    
+    /**
+     * Xuất allowlist dạng luồng
+     */
+    EXPORT("Xuất toàn bộ allowlist dạng CSV hoặc nhị phân theo từng khối", "EXPORT [CSV | BINARY]", false, 0, 1),
+    
     /**
      * Lấy trạng thái server
      */
     STATUS("Lấy trạng thái server", "STATUS", false, 0, 0),
     
+    /**
+     * Xem độ trễ theo lệnh và giai đoạn xử lý
+     */
+    METRICS("Xem độ trễ p50/p99/p999/max theo lệnh và giai đoạn (parse, execute, serialize, write)",
+            "METRICS [<lệnh>]", false, 0, 1),
+    
+    /**
+     * Xem, drain hoặc đóng các kết nối đang mở
+     */
+    CONNECTIONS("Liệt kê kết nối đang mở, drain hoặc đóng một kết nối theo id",
+                "CONNECTIONS [DRAIN <id> | CLOSE <id>]", false, 0, 2),
+    
+    /**
+     * Nạp lại danh sách IP cho phép/chặn từ file cấu hình
+     */
+    RELOAD("Nạp lại security.allowedIPs và security.blockedIPs từ file cấu hình (-Dwifiguard.config, ./server.properties hoặc classpath)",
+           "RELOAD", false, 0, 0),
+    
+    /**
+     * Đăng ký nhận sự kiện thiết bị (vào/ra/đổi IP/đổi trạng thái)
+     */
+    SUBSCRIBE("Đăng ký nhận sự kiện thay đổi thiết bị", "SUBSCRIBE", false, 0, 0),
+    
+    /**
+     * Hủy đăng ký nhận sự kiện thiết bị
+     */
+    UNSUBSCRIBE("Hủy đăng ký nhận sự kiện thiết bị", "UNSUBSCRIBE", false, 0, 0),
+    
+    /**
+     * Thương lượng giao thức (text hoặc framed)
+     */
+    HELLO("Thương lượng giao thức và khả năng của kết nối", "HELLO [FRAMED] [DEFLATE]", false, 0, 3),
+    
     /**
      * Thoát kết nối
      */
     QUIT("Thoát kết nối", "QUIT", false, 0, 0);
     
+    // Tính một lần, dùng cho thông báo lệnh không xác định
+    private static final String ALL_COMMAND_NAMES = Arrays.stream(values())
+            .map(Command::name)
+            .collect(Collectors.joining(", "));
+    
     // Metadata của lệnh
     private final String description;
     private final String usage;
@@ -95,21 +160,22 @@ public enum Command {
      * Kiểm tra xem lệnh có phải là lệnh hệ thống không (không phải hành động người dùng)
      */
     public boolean isSystemCommand() {
-        return this == STATUS || this == QUIT;
+        return this == STATUS || this == METRICS || this == CONNECTIONS || this == RELOAD || this == QUIT
+                || this == HELLO;
     }
     
     /**
      * Kiểm tra xem lệnh có sửa đổi dữ liệu không
      */
     public boolean isModifyingCommand() {
-        return this == ADD || this == DEL;
+        return this == ADD || this == DEL || this == EXEC || this == IMPORT;
     }
     
     /**
      * Kiểm tra xem lệnh có chỉ đọc không
      */
     public boolean isReadOnly() {
-        return this == LIST || this == STATUS;
+        return this == LIST || this == STATUS || this == SUBSCRIBE || this == UNSUBSCRIBE || this == EXPORT;
     }
     
     /**
@@ -142,9 +208,7 @@ public enum Command {
      * Lấy tất cả tên lệnh dưới dạng chuỗi phân cách bằng dấu phẩy
      */
     public static String getAllCommandNames() {
-        return Arrays.stream(values())
-                .map(Command::name)
-                .collect(Collectors.joining(", "));
+        return ALL_COMMAND_NAMES;
     }
     
     /**
@@ -189,28 +253,40 @@ public enum Command {
             throw new IllegalArgumentException("Chuỗi lệnh không thể null hoặc rỗng");
         }
         
-        try {
-            return valueOf(commandStr.trim().toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Lệnh không xác định: " + commandStr + 
-                                           ". Các lệnh có sẵn: " + getAllCommandNames());
+        Command command = lookup(commandStr);
+        if (command == null) {
+            throw new IllegalArgumentException(unknownCommandMessage(commandStr));
         }
+        return command;
     }
     
     /**
-     * Kiểm tra xem chuỗi có phải là lệnh hợp lệ không
+     * Tra lệnh theo tên (không phân biệt hoa thường), trả về null nếu không có; không ném ngoại lệ
      */
-    public static boolean isValidCommand(String commandStr) {
-        if (commandStr == null || commandStr.trim().isEmpty()) {
-            return false;
+    public static Command lookup(String commandStr) {
+        if (commandStr == null) {
+            return null;
         }
-        
-        try {
-            valueOf(commandStr.trim().toUpperCase());
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
+        int end = commandStr.length();
+        int start = CommandLexer.skipWhitespace(commandStr, 0, end);
+        while (end > start && CommandLexer.isWhitespace(commandStr.charAt(end - 1))) {
+            end--;
         }
+        return CommandLexer.lookup(commandStr, start, end);
+    }
+    
+    /**
+     * Thông báo lỗi cho lệnh không xác định
+     */
+    public static String unknownCommandMessage(String commandStr) {
+        return "Lệnh không xác định: " + commandStr + ". Các lệnh có sẵn: " + ALL_COMMAND_NAMES;
+    }
+    
+    /**
+     * Kiểm tra xem chuỗi có phải là lệnh hợp lệ không
+     */
+    public static boolean isValidCommand(String commandStr) {
+        return lookup(commandStr) != null;
     }
     
     @Override
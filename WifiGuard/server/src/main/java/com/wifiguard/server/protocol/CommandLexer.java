@@ -0,0 +1,193 @@
+package com.wifiguard.server.protocol;
+
+/**
+ * Allocation-free command recognition.
+ *
+ * Command names are hashed with ASCII case folding into a small open-addressing
+ * table built once from {@link Command#values()}, so a lookup reads the word in
+ * place (from a String or straight from socket bytes), never creates an
+ * upper-cased copy and returns null instead of throwing on an unknown word.
+ * {@link #split} then cuts the argument tokens with the same whitespace rules
+ * as {@code split("\\s+", limit)}; commands without arguments reuse one shared
+ * parts array.
+ */
+public final class CommandLexer {
+    private static final Command[] COMMANDS = Command.values();
+    private static final int TABLE_SIZE = 64; // luy thua cua 2, > 2 x so lenh
+    private static final Command[] TABLE = new Command[TABLE_SIZE];
+    private static final String[][] NO_ARGS = new String[COMMANDS.length][];
+    private static final int MAX_NAME_LENGTH;
+
+    static {
+        int maxLength = 0;
+        for (Command command : COMMANDS) {
+            String name = command.name();
+            maxLength = Math.max(maxLength, name.length());
+            int slot = hash(name, 0, name.length()) & (TABLE_SIZE - 1);
+            while (TABLE[slot] != null) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            TABLE[slot] = command;
+            NO_ARGS[command.ordinal()] = new String[] {name};
+        }
+        MAX_NAME_LENGTH = maxLength;
+    }
+
+    private CommandLexer() {
+    }
+
+    /**
+     * Same characters as the regex class \s
+     */
+    public static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Index of the first non-whitespace character at or after from
+     */
+    public static int skipWhitespace(CharSequence text, int from, int end) {
+        while (from < end && isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Index just past the token starting at from
+     */
+    public static int tokenEnd(CharSequence text, int from, int end) {
+        while (from < end && !isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Command spelled by text[start, end) in any letter case, or null
+     */
+    public static Command lookup(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length <= 0 || length > MAX_NAME_LENGTH) {
+            return null;
+        }
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            int c = fold(text.charAt(i));
+            if (c < 0) {
+                return null; // ten lenh chi gom chu cai
+            }
+            h = 31 * h + c;
+        }
+        for (int slot = h & (TABLE_SIZE - 1); TABLE[slot] != null; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            String name = TABLE[slot].name();
+            if (name.length() == length && matches(name, text, start)) {
+                return TABLE[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Command spelled by the ASCII bytes bytes[offset, offset + length), or null
+     */
+    public static Command lookup(byte[] bytes, int offset, int length) {
+        if (length <= 0 || length > MAX_NAME_LENGTH) {
+            return null;
+        }
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int c = fold(bytes[i]);
+            if (c < 0) {
+                return null;
+            }
+            h = 31 * h + c;
+        }
+        for (int slot = h & (TABLE_SIZE - 1); TABLE[slot] != null; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            String name = TABLE[slot].name();
+            if (name.length() == length && matches(name, bytes, offset)) {
+                return TABLE[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Command named by the first token of the line, or null
+     */
+    public static Command lookupFirst(CharSequence line) {
+        int end = line.length();
+        int start = skipWhitespace(line, 0, end);
+        return lookup(line, start, tokenEnd(line, start, end));
+    }
+
+    /**
+     * Tokens of a line whose first token is command, like line.split("\\s+", limit)
+     * without a leading empty token or trailing whitespace. parts[0] is the
+     * canonical command name; the last part keeps the rest of the line as is.
+     */
+    public static String[] split(String line, Command command, int limit) {
+        int end = line.length();
+        int from = tokenEnd(line, skipWhitespace(line, 0, end), end);
+        from = skipWhitespace(line, from, end);
+        if (from == end) {
+            return NO_ARGS[command.ordinal()];
+        }
+
+        int count = 1;
+        for (int i = from; i < end && count < limit; count++) {
+            i = skipWhitespace(line, tokenEnd(line, i, end), end);
+        }
+        String[] parts = new String[count];
+        parts[0] = command.name();
+        for (int index = 1; index < count; index++) {
+            int tokenEnd = index == count - 1 ? trimEnd(line, from, end) : tokenEnd(line, from, end);
+            parts[index] = line.substring(from, tokenEnd);
+            from = skipWhitespace(line, tokenEnd, end);
+        }
+        return parts;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(text.charAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * Upper-case ASCII letter, or -1 for anything that cannot be in a command name
+     */
+    private static int fold(int c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - ('a' - 'A');
+        }
+        return c >= 'A' && c <= 'Z' ? c : -1;
+    }
+
+    private static boolean matches(String name, CharSequence text, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (fold(text.charAt(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String name, byte[] bytes, int offset) {
+        for (int i = 0; i < name.length(); i++) {
+            if (fold(bytes[offset + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
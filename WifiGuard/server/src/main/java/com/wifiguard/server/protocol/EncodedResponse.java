@@ -0,0 +1,72 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response already serialized to UTF-8 in one format, shared read-only by
+ * every session that sends it. The wire variants (text line, frame) are built
+ * once on first use; only replies tagged with a request id need a fresh copy.
+ */
+public final class EncodedResponse {
+
+    private static final class Line {
+        final String separator;
+        final byte[] bytes;
+
+        Line(String separator, byte[] bytes) {
+            this.separator = separator;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Response.ResponseFormat format;
+    private final byte[] body;
+    private volatile byte[] framed;
+    private volatile Line line;
+
+    EncodedResponse(Response.ResponseFormat format, String text) {
+        this.format = format;
+        this.body = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Response.ResponseFormat getFormat() { return format; }
+
+    /** Size of the serialized body in bytes */
+    public int size() { return body.length; }
+
+    /**
+     * Bytes ready for the socket; arrays returned for untagged replies are shared and must not be modified
+     */
+    public byte[] toWire(String requestId, boolean asFrame, String lineSeparator) {
+        if (requestId != null) {
+            byte[] prefix = (Response.REQUEST_ID_PREFIX + requestId + "\n").getBytes(StandardCharsets.UTF_8);
+            byte[] tagged = concat(prefix, body, new byte[0]);
+            return asFrame ? Frame.encode(Frame.FLAG_NONE, tagged)
+                    : concat(tagged, new byte[0], lineSeparator.getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (asFrame) {
+            byte[] result = framed;
+            if (result == null) {
+                result = Frame.encode(Frame.FLAG_NONE, body);
+                framed = result;
+            }
+            return result;
+        }
+
+        Line cached = line;
+        if (cached == null || !cached.separator.equals(lineSeparator)) {
+            cached = new Line(lineSeparator, concat(new byte[0], body, lineSeparator.getBytes(StandardCharsets.UTF_8)));
+            line = cached;
+        }
+        return cached.bytes;
+    }
+
+    private static byte[] concat(byte[] head, byte[] middle, byte[] tail) {
+        byte[] result = new byte[head.length + middle.length + tail.length];
+        System.arraycopy(head, 0, result, 0, head.length);
+        System.arraycopy(middle, 0, result, head.length, middle.length);
+        System.arraycopy(tail, 0, result, head.length + middle.length, tail.length);
+        return result;
+    }
+}
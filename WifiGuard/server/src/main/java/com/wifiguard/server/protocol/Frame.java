@@ -0,0 +1,55 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length-prefixed frame used once a connection negotiated the framed protocol
+ * with {@code HELLO FRAMED}.
+ *
+ * Wire layout: 4-byte big-endian payload length, 1 flag byte, then the payload.
+ * Requests carry one command line (UTF-8, no terminator); responses carry the
+ * same text the legacy protocol prints, without the trailing line separator.
+ * A streamed response is split over several frames; all but the last carry
+ * {@link #FLAG_CONTINUED} and the reader concatenates the payloads.
+ * With {@code HELLO FRAMED DEFLATE}, large payloads are zlib-compressed and
+ * carry {@link #FLAG_COMPRESSED}; readers inflate each such frame on its own.
+ */
+public final class Frame {
+    public static final int HEADER_SIZE = 5;
+    public static final byte FLAG_NONE = 0;
+    /** Payload is a zlib (DEFLATE) stream of the original payload */
+    public static final byte FLAG_COMPRESSED = 0x01;
+    /** More frames of the same message follow (streamed responses) */
+    public static final byte FLAG_CONTINUED = 0x02;
+
+    private final byte flags;
+    private final byte[] payload;
+
+    public Frame(byte flags, byte[] payload) {
+        this.flags = flags;
+        this.payload = payload;
+    }
+
+    public byte getFlags() { return flags; }
+    public byte[] getPayload() { return payload; }
+
+    public String getText() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode header and payload into one array ready for the socket
+     */
+    public static byte[] encode(byte flags, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.put(flags);
+        frame.put(payload);
+        return frame.array();
+    }
+
+    public static byte[] encode(String text) {
+        return encode(FLAG_NONE, text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,172 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Per-connection DEFLATE for outgoing frames, enabled with {@code HELLO FRAMED DEFLATE}.
+ * Frames whose payload reaches the threshold are compressed independently
+ * (zlib stream, Deflater reset between frames) and marked with
+ * {@link Frame#FLAG_COMPRESSED}; other flags are kept, so chunks of a streamed
+ * reply are compressed one by one. A frame that would not shrink is sent as is.
+ * One Deflater is reused for the life of the connection; calls are serialized
+ * because events and command replies may be sent from different threads.
+ */
+public final class FrameCompressor {
+
+    /**
+     * Receives the cost of every compressed frame, for server-wide metrics
+     */
+    public interface Listener {
+        void onCompressed(int originalBytes, int compressedBytes, long nanos);
+    }
+
+    private final Deflater deflater;
+    private final int threshold;
+    private final Listener listener;
+    private long framesCompressed;
+    private long bytesIn;
+    private long bytesOut;
+    private long nanos;
+    private boolean ended;
+
+    /**
+     * @param level     Deflater level (0-9, -1 for default)
+     * @param threshold minimum payload size in bytes worth compressing
+     * @param listener  notified after each compressed frame, may be null
+     */
+    public FrameCompressor(int level, int threshold, Listener listener) {
+        this.deflater = new Deflater(level);
+        this.threshold = threshold;
+        this.listener = listener;
+    }
+
+    /**
+     * Compress an encoded frame (header + payload) if worthwhile
+     *
+     * @return the compressed frame, or the same array
+     */
+    public synchronized byte[] compress(byte[] frame) {
+        int payloadLength = frame.length - Frame.HEADER_SIZE;
+        if (ended || payloadLength < threshold) {
+            return frame;
+        }
+
+        long start = System.nanoTime();
+        deflater.reset();
+        deflater.setInput(frame, Frame.HEADER_SIZE, payloadLength);
+        deflater.finish();
+        byte[] out = new byte[frame.length];
+        int length = Frame.HEADER_SIZE;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        if (!deflater.finished()) {
+            return frame;
+        }
+
+        ByteBuffer.wrap(out).putInt(length - Frame.HEADER_SIZE).put((byte) (frame[4] | Frame.FLAG_COMPRESSED));
+        record(payloadLength, length - Frame.HEADER_SIZE, System.nanoTime() - start);
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Compress a frame held in flipped pooled buffers if worthwhile. When
+     * compressed, the input buffers are released and new pooled buffers returned.
+     */
+    public synchronized List<ByteBuffer> compress(List<ByteBuffer> frame, BufferPool pool) {
+        int total = 0;
+        for (ByteBuffer buffer : frame) {
+            total += buffer.remaining();
+        }
+        int payloadLength = total - Frame.HEADER_SIZE;
+        if (ended || payloadLength < threshold) {
+            return frame;
+        }
+
+        long start = System.nanoTime();
+        ByteBuffer first = frame.get(0);
+        byte flags = first.get(first.position() + 4);
+        deflater.reset();
+
+        List<ByteBuffer> out = new ArrayList<>();
+        ByteBuffer current = pool.acquire();
+        current.position(Frame.HEADER_SIZE);
+        int written = 0;
+        for (int i = 0; i < frame.size(); i++) {
+            ByteBuffer input = frame.get(i).duplicate();
+            if (i == 0) {
+                input.position(input.position() + Frame.HEADER_SIZE);
+            }
+            deflater.setInput(input);
+            while (!deflater.needsInput()) {
+                if (!current.hasRemaining()) {
+                    written += current.position();
+                    out.add(current);
+                    current = pool.acquire();
+                }
+                deflater.deflate(current);
+            }
+            if (written + current.position() - Frame.HEADER_SIZE >= payloadLength) {
+                break;
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished() && written + current.position() - Frame.HEADER_SIZE < payloadLength) {
+            if (!current.hasRemaining()) {
+                written += current.position();
+                out.add(current);
+                current = pool.acquire();
+            }
+            deflater.deflate(current);
+        }
+        written += current.position();
+        out.add(current);
+
+        int compressedLength = written - Frame.HEADER_SIZE;
+        if (!deflater.finished() || compressedLength >= payloadLength) {
+            out.forEach(pool::release);
+            return frame;
+        }
+
+        out.get(0).putInt(0, compressedLength).put(4, (byte) (flags | Frame.FLAG_COMPRESSED));
+        for (ByteBuffer buffer : out) {
+            buffer.flip();
+        }
+        frame.forEach(pool::release);
+        record(payloadLength, compressedLength, System.nanoTime() - start);
+        return out;
+    }
+
+    private void record(int original, int compressed, long elapsed) {
+        framesCompressed++;
+        bytesIn += original;
+        bytesOut += compressed;
+        nanos += elapsed;
+        if (listener != null) {
+            listener.onCompressed(original, compressed, elapsed);
+        }
+    }
+
+    /**
+     * Summary for connection statistics, e.g. "12 frame, 1474560 B -> 98304 B (6.7%), 310 us/frame"
+     */
+    public synchronized String getSummary() {
+        if (framesCompressed == 0) {
+            return "0 frame";
+        }
+        return String.format("%d frame, %d B -> %d B (%.1f%%), %d us/frame", framesCompressed, bytesIn, bytesOut,
+                bytesOut * 100.0 / bytesIn, nanos / framesCompressed / 1000);
+    }
+
+    /**
+     * Free the native Deflater; call when the connection closes
+     */
+    public synchronized void end() {
+        ended = true;
+        deflater.end();
+    }
+}
@@ -0,0 +1,195 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental decoder that splits raw socket bytes into protocol messages.
+ * Bytes are appended as they arrive and complete messages are polled one at a time,
+ * so the caller decides when the next message is decoded. A connection starts in
+ * line mode and may switch to length-prefixed {@link Frame}s after the HELLO handshake.
+ */
+public class MessageDecoder {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxMessageSize;
+    private byte[] buffer;
+    private int readIndex;
+    private int writeIndex;
+    private int scanIndex;
+    private boolean framed;
+
+    public MessageDecoder(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        this.buffer = new byte[Math.min(INITIAL_CAPACITY, maxMessageSize)];
+    }
+
+    /**
+     * Append all remaining bytes of the source buffer
+     */
+    public void append(ByteBuffer src) {
+        int length = src.remaining();
+        ensureWritable(length);
+        src.get(buffer, writeIndex, length);
+        writeIndex += length;
+    }
+
+    /**
+     * Append a slice of a byte array
+     */
+    public void append(byte[] src, int offset, int length) {
+        ensureWritable(length);
+        System.arraycopy(src, offset, buffer, writeIndex, length);
+        writeIndex += length;
+    }
+
+    /**
+     * Switch between line mode and frame mode; bytes already buffered after the
+     * switching message are decoded in the new mode
+     */
+    public void setFramed(boolean framed) {
+        this.framed = framed;
+        this.scanIndex = readIndex;
+    }
+
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * Drop buffered bytes and go back to line mode so the decoder can serve a
+     * new connection; a buffer grown for a large message is shrunk back
+     */
+    public void reset() {
+        readIndex = 0;
+        writeIndex = 0;
+        scanIndex = 0;
+        framed = false;
+        if (buffer.length > INITIAL_CAPACITY) {
+            buffer = new byte[Math.min(INITIAL_CAPACITY, maxMessageSize)];
+        }
+    }
+
+    /**
+     * Poll the next message in the current mode as text, or null if incomplete
+     *
+     * @throws IllegalStateException if a message exceeds the configured maximum size
+     */
+    public String pollMessage() {
+        if (!framed) {
+            return pollLine();
+        }
+        Frame frame = pollFrame();
+        return frame != null ? frame.getText() : null;
+    }
+
+    /**
+     * Check whether a complete message is buffered in the current mode
+     */
+    public boolean hasMessage() {
+        return framed ? hasFrame() : hasLine();
+    }
+
+    /**
+     * Poll the next complete frame, or null if header or payload is still incomplete
+     *
+     * @throws IllegalStateException if the announced length is invalid or too large
+     */
+    public Frame pollFrame() {
+        if (!hasFrame()) {
+            return null;
+        }
+        int length = frameLength();
+        byte flags = buffer[readIndex + 4];
+        int start = readIndex + Frame.HEADER_SIZE;
+        byte[] payload = new byte[length];
+        System.arraycopy(buffer, start, payload, 0, length);
+        readIndex = start + length;
+        scanIndex = readIndex;
+        return new Frame(flags, payload);
+    }
+
+    private boolean hasFrame() {
+        if (writeIndex - readIndex < Frame.HEADER_SIZE) {
+            return false;
+        }
+        int length = frameLength();
+        if (length < 0 || length > maxMessageSize) {
+            throw new IllegalStateException("Frame length " + length + " exceeds " + maxMessageSize + " bytes");
+        }
+        return writeIndex - readIndex >= Frame.HEADER_SIZE + length;
+    }
+
+    private int frameLength() {
+        return ((buffer[readIndex] & 0xFF) << 24)
+                | ((buffer[readIndex + 1] & 0xFF) << 16)
+                | ((buffer[readIndex + 2] & 0xFF) << 8)
+                | (buffer[readIndex + 3] & 0xFF);
+    }
+
+    /**
+     * Poll the next complete line (without the terminator), or null if none is buffered yet
+     *
+     * @throws IllegalStateException if a line exceeds the configured maximum size
+     */
+    public String pollLine() {
+        for (int i = scanIndex; i < writeIndex; i++) {
+            if (buffer[i] == '\n') {
+                int end = i;
+                if (end > readIndex && buffer[end - 1] == '\r') {
+                    end--;
+                }
+                String line = new String(buffer, readIndex, end - readIndex, StandardCharsets.UTF_8);
+                readIndex = i + 1;
+                scanIndex = readIndex;
+                return line;
+            }
+        }
+        scanIndex = writeIndex;
+        if (writeIndex - readIndex > maxMessageSize) {
+            throw new IllegalStateException("Message exceeds " + maxMessageSize + " bytes");
+        }
+        return null;
+    }
+
+    /**
+     * Check whether a complete line is buffered without consuming it
+     */
+    public boolean hasLine() {
+        for (int i = scanIndex; i < writeIndex; i++) {
+            if (buffer[i] == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of buffered bytes not yet consumed
+     */
+    public int available() {
+        return writeIndex - readIndex;
+    }
+
+    private void ensureWritable(int length) {
+        if (writeIndex + length <= buffer.length) {
+            return;
+        }
+
+        // Reclaim consumed space first
+        int unread = writeIndex - readIndex;
+        if (readIndex > 0) {
+            System.arraycopy(buffer, readIndex, buffer, 0, unread);
+            scanIndex -= readIndex;
+            writeIndex = unread;
+            readIndex = 0;
+        }
+
+        if (writeIndex + length > buffer.length) {
+            int newCapacity = Math.max(buffer.length * 2, writeIndex + length);
+            byte[] grown = new byte[newCapacity];
+            System.arraycopy(buffer, 0, grown, 0, writeIndex);
+            buffer = grown;
+        }
+    }
+}
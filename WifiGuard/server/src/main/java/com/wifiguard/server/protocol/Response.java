@@ -1,9 +1,11 @@
 package com.wifiguard.server.protocol;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.wifiguard.server.model.DeviceEvent;
 import com.wifiguard.server.model.DeviceInfo;
 
 /**
@@ -15,7 +17,8 @@ public class Response {
         ERROR,
         INVALID_COMMAND,
         DEVICE_NOT_FOUND,
-        DEVICE_ALREADY_EXISTS
+        DEVICE_ALREADY_EXISTS,
+        EVENT
     }
     
     // Constants
@@ -25,18 +28,28 @@ public class Response {
     private static final String KEY_VALUE_SEPARATOR = ": ";
     private static final String DEVICE_SEPARATOR = "\n  ";
     private static final String DEVICE_FIELD_SEPARATOR = " | ";
+    public static final String REQUEST_ID_PREFIX = "#";
     
     private final Status status;
     private final String message;
     private final List<DeviceInfo> devices;
     private final String data;
+    private final String requestId;
+    private final EncodedResponse encoded;
     
     // Private constructor to enforce factory method usage
     private Response(Status status, String message, List<DeviceInfo> devices, String data) {
+        this(status, message, devices != null ? Collections.unmodifiableList(devices) : null, data, null, null);
+    }
+    
+    private Response(Status status, String message, List<DeviceInfo> devices, String data, String requestId,
+                     EncodedResponse encoded) {
         this.status = status;
         this.message = message != null ? message : EMPTY_MESSAGE;
-        this.devices = devices != null ? Collections.unmodifiableList(devices) : Collections.emptyList();
+        this.devices = devices != null ? devices : Collections.emptyList();
         this.data = data != null ? data : DEFAULT_DATA;
+        this.requestId = requestId;
+        this.encoded = encoded;
     }
     
     // Getters
@@ -56,6 +69,51 @@ public class Response {
         return data; 
     }
     
+    public String getRequestId() {
+        return requestId;
+    }
+    
+    /**
+     * Copy of this response tagged with the client's pipelining request id
+     */
+    public Response withRequestId(String requestId) {
+        return new Response(status, message, devices, data, requestId, encoded);
+    }
+    
+    /**
+     * Copy of this (untagged) response carrying its serialized form, so it can
+     * be cached and sent by many sessions without formatting it again
+     */
+    public Response withEncoded(ResponseFormat format) {
+        Response untagged = requestId == null ? this : withRequestId(null);
+        return new Response(status, message, devices, data, null,
+                new EncodedResponse(format, untagged.getResponse(format)));
+    }
+    
+    /**
+     * Serialized form attached by withEncoded, or null
+     */
+    public EncodedResponse getEncoded() {
+        return encoded;
+    }
+    
+    /**
+     * Bytes to write to the socket: a frame, or the text followed by the line separator.
+     * Uses the pre-encoded body when one exists for this format.
+     */
+    public byte[] encode(ResponseFormat format, boolean asFrame, String lineSeparator) {
+        // The request id is a prefix line only in the beautiful format; JSON embeds it
+        if (encoded != null && encoded.getFormat() == format
+                && (requestId == null || format == ResponseFormat.BEAUTIFUL)) {
+            return encoded.toWire(requestId, asFrame, lineSeparator);
+        }
+        String text = getResponse(format);
+        return asFrame ? Frame.encode(text) : (text + lineSeparator).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    // Marker returned when the reply was already streamed to the session
+    private static final Response STREAMED = new Response(Status.SUCCESS, "(streamed)", null, null);
+    
     // Factory methods for common responses
     public static Response success(String message) {
         return new Response(Status.SUCCESS, message, null, null);
@@ -69,6 +127,21 @@ public class Response {
         return new Response(Status.SUCCESS, message, null, data);
     }
     
+    public static Response success(String message, List<DeviceInfo> devices, String data) {
+        return new Response(Status.SUCCESS, message, devices, data);
+    }
+    
+    /**
+     * Marker for a reply that was written directly as chunks; sessions must not send it
+     */
+    public static Response streamed() {
+        return STREAMED;
+    }
+    
+    public boolean isStreamed() {
+        return this == STREAMED;
+    }
+    
     public static Response error(String message) {
         return new Response(Status.ERROR, message, null, null);
     }
@@ -85,6 +158,18 @@ public class Response {
         return new Response(Status.DEVICE_ALREADY_EXISTS, message, null, null);
     }
     
+    /**
+     * Unsolicited device event pushed to SUBSCRIBE sessions
+     */
+    public static Response event(DeviceEvent event) {
+        return new Response(Status.EVENT, event.describe(), Collections.singletonList(event.getDevice()),
+                event.getType().name());
+    }
+    
+    public static Response event(String message, String data) {
+        return new Response(Status.EVENT, message, null, data);
+    }
+    
     /**
      * Check if response is successful
      */
@@ -169,6 +254,9 @@ public class Response {
             case DEVICE_ALREADY_EXISTS:
                 sb.append("⚠️ ");
                 break;
+            case EVENT:
+                sb.append("🔔 ");
+                break;
             default:
                 sb.append("ℹ️ ");
         }
@@ -257,8 +345,11 @@ public class Response {
     public String toBeautifulString() {
         StringBuilder sb = new StringBuilder();
         
+        // Request id line for pipelined commands ("#<id>")
+        appendRequestId(sb, requestId);
+        
         // Header with status
-        sb.append("+-- ").append(status.name()).append(" ").append(repeat("-", 50)).append("\n");
+        appendBeautifulHeader(sb, status);
         
         // Message
         if (!message.isEmpty()) {
@@ -273,24 +364,46 @@ public class Response {
         // Devices section
         if (!devices.isEmpty()) {
             sb.append("| Devices: ").append(devices.size()).append(" found\n");
-            sb.append("+-- Device List ").append(repeat("-", 40)).append("\n");
+            appendBeautifulDeviceListHeader(sb);
             
             for (int i = 0; i < devices.size(); i++) {
-                DeviceInfo device = devices.get(i);
-                sb.append("| ").append(i + 1).append(". ").append(formatDeviceBeautiful(device)).append("\n");
+                appendBeautifulDevice(sb, i + 1, devices.get(i));
             }
         }
         
         // Footer
-        sb.append("+").append(repeat("-", 60));
+        sb.append(BEAUTIFUL_FOOTER);
         
         return sb.toString();
     }
     
+    // Building blocks of the beautiful format, shared with streamed responses
+    // so a streamed LIST is byte-for-byte the same layout
+    
+    public static final String BEAUTIFUL_FOOTER = "+" + repeat("-", 60);
+    
+    public static void appendRequestId(StringBuilder sb, String requestId) {
+        if (requestId != null) {
+            sb.append(REQUEST_ID_PREFIX).append(requestId).append("\n");
+        }
+    }
+    
+    public static void appendBeautifulHeader(StringBuilder sb, Status status) {
+        sb.append("+-- ").append(status.name()).append(" ").append(repeat("-", 50)).append("\n");
+    }
+    
+    public static void appendBeautifulDeviceListHeader(StringBuilder sb) {
+        sb.append("+-- Device List ").append(repeat("-", 40)).append("\n");
+    }
+    
+    public static void appendBeautifulDevice(StringBuilder sb, int number, DeviceInfo device) {
+        sb.append("| ").append(number).append(". ").append(formatDeviceBeautiful(device)).append("\n");
+    }
+    
     /**
      * Format individual device with beautiful layout
      */
-    private String formatDeviceBeautiful(DeviceInfo device) {
+    private static String formatDeviceBeautiful(DeviceInfo device) {
         StringBuilder sb = new StringBuilder();
         
         // MAC address (highlighted)
@@ -321,7 +434,7 @@ public class Response {
     /**
      * Helper method to repeat a string
      */
-    private String repeat(String str, int count) {
+    private static String repeat(String str, int count) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < count; i++) {
             sb.append(str);
@@ -383,6 +496,11 @@ public class Response {
         // Status
         sb.append("\"status\":\"").append(status.name()).append("\"");
         
+        // Request id
+        if (requestId != null) {
+            sb.append(",\"id\":\"").append(escapeJsonString(requestId)).append("\"");
+        }
+        
         // Message
         if (!message.isEmpty()) {
             sb.append(",\"message\":\"").append(escapeJsonString(message)).append("\"");
@@ -461,7 +579,7 @@ public class Response {
      * Check if response contains error
      */
     public boolean isError() {
-        return status != Status.SUCCESS;
+        return status != Status.SUCCESS && status != Status.EVENT;
     }
     
     /**
@@ -0,0 +1,265 @@
+package com.wifiguard.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.wifiguard.server.model.DeviceInfo;
+
+/**
+ * Writes a response in the beautiful format straight into pooled direct
+ * buffers as UTF-8, producing the same bytes as toBeautifulString() followed
+ * by the line terminator or wrapped in a frame, without building the String.
+ * Fixed labels are pre-encoded; numbers and timestamps are written digit by
+ * digit. Stateless apart from the pool, so one instance serves all sessions.
+ */
+public final class ResponseEncoder {
+    private static final byte[] HEADER_PREFIX = utf8("+-- ");
+    private static final byte[] HEADER_SUFFIX = utf8(" " + "-".repeat(50) + "\n");
+    private static final byte[] MESSAGE = utf8("| Message: ");
+    private static final byte[] DATA = utf8("| Data: ");
+    private static final byte[] DEVICES = utf8("| Devices: ");
+    private static final byte[] DEVICES_FOUND = utf8(" found\n");
+    private static final byte[] DEVICE_LIST = utf8("+-- Device List " + "-".repeat(40) + "\n");
+    private static final byte[] ROW_PREFIX = utf8("| ");
+    private static final byte[] ROW_MAC = utf8(". MAC: 🔗 ");
+    private static final byte[] ROW_IP = utf8(" | IP: 🌐 ");
+    private static final byte[] ROW_HOSTNAME = utf8(" | Hostname: 💻 ");
+    private static final byte[] ROW_KNOWN = utf8(" | Status: ✅");
+    private static final byte[] ROW_UNKNOWN = utf8(" | Status: ❌");
+    private static final byte[] ROW_LAST_SEEN = utf8(" | Last Seen: 🕒 ");
+    private static final byte[] FOOTER = utf8(Response.BEAUTIFUL_FOOTER);
+    private static final byte NEWLINE = '\n';
+
+    private final BufferPool pool;
+
+    public ResponseEncoder(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Encode a response for the wire
+     *
+     * @param asFrame        prefix a frame header instead of appending the terminator
+     * @param lineTerminator appended in text mode
+     * @return flipped buffers in write order; give each back with {@link BufferPool#release} once written
+     */
+    public List<ByteBuffer> encode(Response response, boolean asFrame, byte[] lineTerminator) {
+        Output out = new Output(pool);
+        if (asFrame) {
+            out.current.position(Frame.HEADER_SIZE);
+        }
+
+        if (response.getRequestId() != null) {
+            out.put(Response.REQUEST_ID_PREFIX);
+            out.put(response.getRequestId());
+            out.put(NEWLINE);
+        }
+        out.put(HEADER_PREFIX);
+        out.put(response.getStatus().name());
+        out.put(HEADER_SUFFIX);
+
+        if (!response.getMessage().isEmpty()) {
+            out.put(MESSAGE);
+            out.put(response.getMessage());
+            out.put(NEWLINE);
+        }
+        if (!response.getData().isEmpty()) {
+            out.put(DATA);
+            out.put(response.getData());
+            out.put(NEWLINE);
+        }
+
+        List<DeviceInfo> devices = response.getDevices();
+        if (!devices.isEmpty()) {
+            out.put(DEVICES);
+            out.putInt(devices.size());
+            out.put(DEVICES_FOUND);
+            out.put(DEVICE_LIST);
+            for (int i = 0; i < devices.size(); i++) {
+                putDevice(out, i + 1, devices.get(i));
+            }
+        }
+        out.put(FOOTER);
+
+        if (asFrame) {
+            ByteBuffer first = out.buffers.isEmpty() ? out.current : out.buffers.get(0);
+            first.putInt(0, out.written + out.current.position() - Frame.HEADER_SIZE);
+            first.put(4, Frame.FLAG_NONE);
+        } else {
+            out.put(lineTerminator);
+        }
+        return out.finish();
+    }
+
+    private static void putDevice(Output out, int number, DeviceInfo device) {
+        out.put(ROW_PREFIX);
+        out.putInt(number);
+        out.put(ROW_MAC);
+        out.put(device.getMac());
+        if (device.getIp() != null && !device.getIp().isEmpty()) {
+            out.put(ROW_IP);
+            out.put(device.getIp());
+        }
+        if (device.getHostname() != null && !device.getHostname().isEmpty()) {
+            out.put(ROW_HOSTNAME);
+            out.put(device.getHostname());
+        }
+        out.put(device.isKnown() ? ROW_KNOWN : ROW_UNKNOWN);
+        if (device.getLastSeen() != null) {
+            out.put(ROW_LAST_SEEN);
+            putDateTime(out, device.getLastSeen());
+        }
+        out.put(NEWLINE);
+    }
+
+    /**
+     * Same text as LocalDateTime.toString() (ISO-8601, seconds and fraction only when non-zero)
+     */
+    private static void putDateTime(Output out, LocalDateTime time) {
+        int year = time.getYear();
+        if (year < 1000 || year > 9999) {
+            out.put(time.toString());
+            return;
+        }
+        out.putPadded(year, 4);
+        out.put((byte) '-');
+        out.putPadded(time.getMonthValue(), 2);
+        out.put((byte) '-');
+        out.putPadded(time.getDayOfMonth(), 2);
+        out.put((byte) 'T');
+        out.putPadded(time.getHour(), 2);
+        out.put((byte) ':');
+        out.putPadded(time.getMinute(), 2);
+
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second > 0 || nano > 0) {
+            out.put((byte) ':');
+            out.putPadded(second, 2);
+            if (nano > 0) {
+                out.put((byte) '.');
+                if (nano % 1_000_000 == 0) {
+                    out.putPadded(nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    out.putPadded(nano / 1000, 6);
+                } else {
+                    out.putPadded(nano, 9);
+                }
+            }
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Growing chain of pooled buffers for one response
+     */
+    private static final class Output {
+        private final BufferPool pool;
+        private final List<ByteBuffer> buffers = new ArrayList<>(4);
+        private final byte[] digits = new byte[10];
+        private ByteBuffer current;
+        private int written;
+
+        Output(BufferPool pool) {
+            this.pool = pool;
+            this.current = pool.acquire();
+        }
+
+        private void ensure(int bytes) {
+            if (current.remaining() < bytes) {
+                written += current.position();
+                current.flip();
+                buffers.add(current);
+                current = pool.acquire();
+            }
+        }
+
+        void put(byte b) {
+            ensure(1);
+            current.put(b);
+        }
+
+        void put(byte[] bytes) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(current.remaining(), bytes.length - offset);
+                current.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * UTF-8 encode without an intermediate array; unpaired surrogates become '?' like String.getBytes
+         */
+        void put(String text) {
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                ensure(4);
+                if (c < 0x80) {
+                    current.put((byte) c);
+                } else if (c < 0x800) {
+                    current.put((byte) (0xC0 | (c >> 6)));
+                    current.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, text.charAt(++i));
+                    current.put((byte) (0xF0 | (cp >> 18)));
+                    current.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    current.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    current.put((byte) (0x80 | (cp & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    current.put((byte) '?');
+                } else {
+                    current.put((byte) (0xE0 | (c >> 12)));
+                    current.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    current.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        void putInt(int value) {
+            if (value < 0) {
+                put(Integer.toString(value));
+                return;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            ensure(count);
+            while (count > 0) {
+                current.put(digits[--count]);
+            }
+        }
+
+        void putPadded(int value, int width) {
+            ensure(width);
+            for (int i = width - 1; i >= 0; i--) {
+                digits[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            current.put(digits, 0, width);
+        }
+
+        List<ByteBuffer> finish() {
+            written += current.position();
+            current.flip();
+            buffers.add(current);
+            current = null;
+            return buffers;
+        }
+    }
+}
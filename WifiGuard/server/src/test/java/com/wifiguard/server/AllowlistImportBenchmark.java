@@ -0,0 +1,180 @@
+package com.wifiguard.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import com.wifiguard.server.model.DeviceInfo;
+import com.wifiguard.server.protocol.AllowlistCodec;
+
+/**
+ * Benchmark nap allowlist lon: ADD tung lenh (ngoai suy tu mau nho) so voi
+ * IMPORT CSV / IMPORT BINARY, va toc do EXPORT cua ca hai dinh dang.
+ *
+ * Client ghi lien tuc ca luong ban ghi roi END, sau do doc response tong ket.
+ * Chay trong thu muc tam vi Allowlist xoa va ghi allowlist.txt o thu muc hien tai:
+ *
+ *   java -Xmx512m -cp target/classes:target/test-classes com.wifiguard.server.AllowlistImportBenchmark 100000 blocking
+ *
+ * Tham so: so ban ghi, che do I/O (blocking|nio), so lenh ADD de lay mau (mac dinh 1000).
+ */
+public class AllowlistImportBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final String FOOTER = "+------------------------------------------------------------";
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        String ioMode = args.length > 1 ? args[1] : "blocking";
+        int addSample = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        java.util.logging.LogManager.getLogManager().reset();
+
+        Properties config = new Properties();
+        config.setProperty("server.io.mode", ioMode);
+        config.setProperty("monitor.pollSeconds", "3600");
+        int serverPort = freePort();
+        config.setProperty("server.port", String.valueOf(serverPort));
+
+        Allowlist allowlist = new Allowlist();
+        DeviceMonitor monitor = new DeviceMonitor(allowlist, config);
+        TcpServer server = new TcpServer(config, allowlist, monitor, null);
+        server.start();
+
+        System.out.println("io=" + ioMode + " entries=" + entries);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(HOST, serverPort), 5000);
+            socket.setSoTimeout(600000);
+            InputStream in = socket.getInputStream();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 65536);
+            readResponse(in); // loi chao
+
+            // ADD tung lenh, cho tung response: moi lenh ghi lai ca file
+            long start = System.nanoTime();
+            for (int i = 0; i < addSample; i++) {
+                DeviceInfo device = device(entries + i);
+                send(out, "ADD " + device.getMac() + " " + device.getHostname() + " " + device.getIp());
+                readResponse(in);
+            }
+            long addNanos = System.nanoTime() - start;
+            double perAdd = addNanos / 1e6 / addSample;
+            System.out.printf("ADD x%-7d %8d ms  %6.2f ms/lenh  -> %d ban ghi ~ %,.0f s%n",
+                    addSample, addNanos / 1_000_000, perAdd, entries, perAdd * entries / 1000);
+            allowlist.clear();
+
+            for (AllowlistCodec.Format format : AllowlistCodec.Format.values()) {
+                importRun(format, entries, in, out);
+                exportRun(format, entries, in, out);
+                allowlist.clear();
+            }
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void importRun(AllowlistCodec.Format format, int entries, InputStream in, OutputStream out)
+            throws IOException {
+        long start = System.nanoTime();
+        send(out, "IMPORT " + format);
+        readResponse(in);
+        long wireBytes = 0;
+        if (format == AllowlistCodec.Format.CSV) {
+            StringBuilder line = new StringBuilder(64);
+            for (int i = 0; i < entries; i++) {
+                line.setLength(0);
+                AllowlistCodec.appendCsv(line, device(i));
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                wireBytes += bytes.length;
+            }
+        } else {
+            ByteBuffer records = ByteBuffer.allocate(3072);
+            for (int i = 0; i < entries; i++) {
+                DeviceInfo device = device(i);
+                if (!AllowlistCodec.writeBinary(records, device)) {
+                    wireBytes += writeLine(out, AllowlistCodec.toBase64Line(records));
+                    records.clear();
+                    AllowlistCodec.writeBinary(records, device);
+                }
+            }
+            wireBytes += writeLine(out, AllowlistCodec.toBase64Line(records));
+        }
+        send(out, "END");
+        String summary = readResponse(in);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("IMPORT %-6s %8d ms  %,9.0f ban ghi/s  %,6.1f MB  | %s%n", format, nanos / 1_000_000,
+                entries / (nanos / 1e9), wireBytes / 1e6, messageLine(summary));
+    }
+
+    private static void exportRun(AllowlistCodec.Format format, int entries, InputStream in, OutputStream out)
+            throws IOException {
+        long start = System.nanoTime();
+        send(out, "EXPORT " + format);
+        long[] bytes = new long[1];
+        String tail = readResponse(in, bytes);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("EXPORT %-6s %8d ms  %,9.0f ban ghi/s  %,6.1f MB  | %s%n", format, nanos / 1_000_000,
+                entries / (nanos / 1e9), bytes[0] / 1e6, tail.substring(tail.indexOf("| Data:")).split("\n")[0]);
+    }
+
+    private static DeviceInfo device(int i) {
+        String mac = String.format("AA:BB:%02X:%02X:%02X:%02X", (i >> 24) & 0xFF, (i >> 16) & 0xFF,
+                (i >> 8) & 0xFF, i & 0xFF);
+        return DeviceInfo.builder().mac(mac).hostname("host" + i)
+                .ip("10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF)).build();
+    }
+
+    private static void send(OutputStream out, String line) throws IOException {
+        writeLine(out, line);
+        out.flush();
+    }
+
+    private static int writeLine(OutputStream out, String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private static String messageLine(String response) {
+        int index = response.indexOf("| Message: ");
+        return index < 0 ? response.trim() : response.substring(index + 11).split("\n")[0];
+    }
+
+    private static String readResponse(InputStream in) throws IOException {
+        return readResponse(in, new long[1]);
+    }
+
+    /**
+     * Doc den dong footer; tra ve toi da 64 KB cuoi cua response, bytes[0] = tong so byte
+     */
+    private static String readResponse(InputStream in, long[] bytes) throws IOException {
+        byte[] buffer = new byte[16384];
+        StringBuilder tail = new StringBuilder();
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes[0] += read;
+            tail.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            if (tail.length() > 65536) {
+                tail.delete(0, tail.length() - 65536);
+            }
+            String end = tail.toString().trim();
+            if (end.endsWith(FOOTER)) {
+                return end;
+            }
+        }
+        throw new IOException("Connection closed");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+}
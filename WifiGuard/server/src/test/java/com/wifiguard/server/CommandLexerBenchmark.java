@@ -0,0 +1,152 @@
+package com.wifiguard.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.wifiguard.server.protocol.Command;
+import com.wifiguard.server.protocol.CommandLexer;
+
+/**
+ * Benchmark so sanh cach nhan dien lenh cu (split("\\s+") + toUpperCase +
+ * Command.parse, nem ngoai le khi sai) voi CommandLexer tra bang bam tai cho.
+ *
+ * Truoc khi do, kiem tra CommandLexer nhan dung moi lenh o moi kieu chu va
+ * tach tham so giong split("\\s+", limit). Do thoi gian trung binh va so byte
+ * cap phat tren heap moi dong lenh (ThreadMXBean), rieng cho lenh dung va lenh sai:
+ *
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.CommandLexerBenchmark 2000000
+ *
+ * Tham so: so lan lap moi phep do.
+ */
+public class CommandLexerBenchmark {
+    private static final String[] HITS = {
+        "STATUS", "list", "Add AA:BB:CC:DD:EE:FF printer 10.0.0.5", "del aa:bb:cc:dd:ee:ff",
+        "LIST LIMIT 100 CURSOR AA:BB:CC:00:00:01", "metrics", "Hello framed", "quit",
+    };
+    private static final String[] MISSES = {
+        "STATS", "lst", "ADDD AA:BB:CC:DD:EE:FF", "GET /metrics HTTP/1.1", "12345", "hello-world",
+    };
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        verify();
+
+        byte[][] hitBytes = Arrays.stream(HITS).map(s -> s.getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+        byte[][] missBytes = Arrays.stream(MISSES).map(s -> s.getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+
+        // Khoi dong JIT cho moi cach
+        for (int round = 0; round < 2; round++) {
+            run(Math.max(1000, iterations / 10), false, hitBytes, missBytes);
+        }
+        run(iterations, true, hitBytes, missBytes);
+    }
+
+    private static void run(int iterations, boolean print, byte[][] hitBytes, byte[][] missBytes) {
+        report(print, "hit   split+parse", measure(iterations, i -> legacy(HITS[i % HITS.length])));
+        report(print, "hit   lexer lookup", measure(iterations, i -> CommandLexer.lookupFirst(HITS[i % HITS.length])));
+        report(print, "hit   lexer bytes", measure(iterations, i -> lookupBytes(hitBytes[i % hitBytes.length])));
+        report(print, "hit   lexer split", measure(iterations, i -> lexerSplit(HITS[i % HITS.length])));
+        report(print, "miss  split+parse", measure(iterations, i -> legacy(MISSES[i % MISSES.length])));
+        report(print, "miss  lexer lookup", measure(iterations, i -> CommandLexer.lookupFirst(MISSES[i % MISSES.length])));
+        report(print, "miss  lexer bytes", measure(iterations, i -> lookupBytes(missBytes[i % missBytes.length])));
+    }
+
+    private static void report(boolean print, String name, long[] result) {
+        if (print) {
+            System.out.printf("%-20s %,8d ns/op %,8d B/op%n", name, result[0], result[1]);
+        }
+    }
+
+    /**
+     * Cach cu trong CommandProcessor.executeCommand
+     */
+    private static Object legacy(String line) {
+        String[] parts = line.split("\\s+", 3);
+        try {
+            Command command = Command.parse(parts[0].toUpperCase());
+            if (command.getMaxArgs() + 1 > 3) {
+                parts = line.split("\\s+", command.getMaxArgs() + 1);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static Object lexerSplit(String line) {
+        Command command = CommandLexer.lookupFirst(line);
+        return CommandLexer.split(line, command, Math.max(3, command.getMaxArgs() + 1));
+    }
+
+    private static Command lookupBytes(byte[] line) {
+        int end = 0;
+        while (end < line.length && !CommandLexer.isWhitespace(line[end])) {
+            end++;
+        }
+        return CommandLexer.lookup(line, 0, end);
+    }
+
+    private interface Op {
+        Object run(int i);
+    }
+
+    /**
+     * @return {ns/op, heap bytes allocated/op}
+     */
+    private static long[] measure(int iterations, Op op) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = op.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return new long[] {elapsed / iterations, allocated / iterations};
+    }
+
+    private static void verify() {
+        for (Command command : Command.values()) {
+            for (String name : new String[] {command.name(), command.name().toLowerCase(), capitalize(command.name())}) {
+                check(CommandLexer.lookupFirst("  " + name + " x") == command, "lookup " + name);
+                byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+                check(CommandLexer.lookup(bytes, 0, bytes.length) == command, "lookup bytes " + name);
+            }
+        }
+        for (String miss : MISSES) {
+            check(CommandLexer.lookupFirst(miss) == null, "miss " + miss);
+        }
+        String[] lines = {
+            "ADD AA:BB:CC:DD:EE:FF printer 10.0.0.5", "add\tAA:BB:CC:DD:EE:FF   printer  ", "STATUS", "list   ",
+            "LIST LIMIT 100 CURSOR AA:BB:CC:00:00:01", "LIST LIMIT 100 CURSOR AA:BB:CC:00:00:01 extra words",
+            "METRICS list", "SUBSCRIBE",
+        };
+        for (String line : lines) {
+            Command command = CommandLexer.lookupFirst(line);
+            int limit = Math.max(3, command.getMaxArgs() + 1);
+            String[] expected = line.trim().split("\\s+", limit);
+            expected[0] = command.name();
+            expected[expected.length - 1] = expected[expected.length - 1].trim();
+            String[] actual = CommandLexer.split(line, command, limit);
+            check(Arrays.equals(actual, expected), "split '" + line + "': " + Arrays.toString(actual) +
+                    " != " + Arrays.toString(expected));
+        }
+        System.out.println("lexer matches Command.parse and split for " + Command.values().length +
+                " commands, " + MISSES.length + " misses, " + lines.length + " lines");
+    }
+
+    private static String capitalize(String name) {
+        return name.charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException("Lexer mismatch: " + what);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Load test mo nhieu ket noi idle de so sanh pool co dinh va virtual thread.
+ *
+ * Chay server va client o hai JVM rieng (moi ben can ~N file descriptor),
+ * trong mot thu muc tam vi Allowlist xoa allowlist.txt o thu muc hien tai:
+ *
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.IdleConnectionLoadTest server platform 19099
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.IdleConnectionLoadTest client 1000 19099
+ *
+ * Client do thoi gian nhan loi chao cho tung ket noi va sau do gui STATUS
+ * tren ket noi cuoi cung de kiem tra server con phuc vu nguoi dung moi khong.
+ */
+public class IdleConnectionLoadTest {
+    private static final String HOST = "127.0.0.1";
+    private static final String FOOTER = "+------------------------------------------------------------";
+    private static final int WELCOME_DEADLINE_MS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: server <platform|virtual> <port> | client <connections> <port>");
+            return;
+        }
+        if ("server".equals(args[0])) {
+            runServer(args[1], Integer.parseInt(args[2]));
+        } else {
+            runClient(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        }
+    }
+
+    private static void runServer(String threads, int port) throws Exception {
+        java.util.logging.LogManager.getLogManager().reset();
+
+        Properties config = new Properties();
+        config.setProperty("server.port", String.valueOf(port));
+        config.setProperty("server.backlog", "1024");
+        config.setProperty("server.threadPool.size", "20");
+        config.setProperty("server.readTimeout", "600000");
+        config.setProperty("server.threads", threads);
+        config.setProperty("monitor.pollSeconds", "3600");
+
+        Allowlist allowlist = new Allowlist();
+        DeviceMonitor monitor = new DeviceMonitor(allowlist, config);
+        TcpServer server = new TcpServer(config, allowlist, monitor, null);
+        server.start();
+        System.out.println("SERVER READY threads=" + threads + " java=" + System.getProperty("java.version"));
+
+        while (true) {
+            Thread.sleep(2000);
+            System.gc();
+            long heapMb = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+            System.out.println("accepted=" + server.getActiveConnectionCount() +
+                    " platformThreads=" + ManagementFactory.getThreadMXBean().getThreadCount() +
+                    " heapUsedMB=" + heapMb + " rss=" + readRss());
+        }
+    }
+
+    private static void runClient(int connections, int port) throws Exception {
+        List<Socket> sockets = new ArrayList<>(connections);
+        long[] welcomeMs = new long[connections];
+        int welcomed = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(HOST, port), 5000);
+            sockets.add(socket);
+        }
+        long connectMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Doi loi chao tren tung ket noi (song song ve phia server, tuan tu phia client)
+        long deadline = System.currentTimeMillis() + WELCOME_DEADLINE_MS;
+        for (int i = 0; i < connections; i++) {
+            Socket socket = sockets.get(i);
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                welcomeMs[i] = -1;
+                continue;
+            }
+            socket.setSoTimeout((int) remaining);
+            try {
+                readUntilFooter(socket.getInputStream());
+                welcomeMs[i] = (System.nanoTime() - start) / 1_000_000;
+                welcomed++;
+            } catch (IOException e) {
+                welcomeMs[i] = -1;
+            }
+        }
+
+        // Lenh STATUS tren ket noi moi nhat
+        String statusResult;
+        Socket last = sockets.get(connections - 1);
+        try {
+            last.setSoTimeout(5000);
+            long t0 = System.nanoTime();
+            last.getOutputStream().write("STATUS\n".getBytes(StandardCharsets.UTF_8));
+            readUntilFooter(last.getInputStream());
+            statusResult = ((System.nanoTime() - t0) / 1_000_000) + "ms";
+        } catch (IOException e) {
+            statusResult = "no reply (" + e.getMessage() + ")";
+        }
+
+        long[] served = Arrays.stream(welcomeMs).filter(v -> v >= 0).sorted().toArray();
+        System.out.println("connections=" + connections + " connectMs=" + connectMs +
+                " welcomed=" + welcomed +
+                " welcomeP50ms=" + percentile(served, 0.50) +
+                " welcomeP99ms=" + percentile(served, 0.99) +
+                " lastSessionStatus=" + statusResult);
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private static void readUntilFooter(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                if (line.toString().startsWith(FOOTER)) {
+                    return;
+                }
+                line.setLength(0);
+            } else {
+                line.append((char) b);
+            }
+        }
+        throw new IOException("Connection closed");
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)];
+    }
+
+    private static String readRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return line.substring(6).trim();
+                }
+            }
+        } catch (IOException e) {
+            // Khong phai Linux
+        }
+        return "n/a";
+    }
+}
@@ -0,0 +1,156 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wifiguard.server.model.DeviceInfo;
+
+/**
+ * Benchmark so sanh LIST (dung ca response trong bo nho) va LIST STREAM
+ * (ghi tung khoi 16 KB) voi kho thiet bi lon.
+ *
+ * Do thoi gian den byte dau tien, tong thoi gian va muc heap cao nhat (lay mau
+ * moi 1 ms, sau System.gc()) trong luc client doc response. Young gen nho
+ * (-Xmn16m) de rac duoc don som va muc heap phan anh bo nho con song.
+ * Chay trong thu muc tam vi Allowlist xoa allowlist.txt o thu muc hien tai:
+ *
+ *   java -Xmx1g -Xmn16m -XX:+UseSerialGC -cp target/classes:target/test-classes com.wifiguard.server.ListStreamBenchmark 100000 blocking
+ *
+ * Tham so: so thiet bi, che do I/O (blocking|nio).
+ */
+public class ListStreamBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final String FOOTER = "+------------------------------------------------------------";
+
+    public static void main(String[] args) throws Exception {
+        int deviceCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        String ioMode = args.length > 1 ? args[1] : "blocking";
+
+        java.util.logging.LogManager.getLogManager().reset();
+
+        Properties config = new Properties();
+        config.setProperty("server.io.mode", ioMode);
+        config.setProperty("monitor.pollSeconds", "3600");
+
+        Allowlist allowlist = new Allowlist();
+        DeviceMonitor monitor = new DeviceMonitor(allowlist, config);
+        populate(monitor, deviceCount);
+
+        int serverPort = freePort();
+        config.setProperty("server.port", String.valueOf(serverPort));
+        TcpServer server = new TcpServer(config, allowlist, monitor, null);
+        server.start();
+
+        System.out.println("io=" + ioMode + " devices=" + deviceCount);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(HOST, serverPort), 5000);
+            socket.setSoTimeout(60000);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            drainResponse(in, new long[1]); // loi chao
+
+            // Vong dau de JIT khoi dong, vong sau de do
+            for (int round = 0; round < 2; round++) {
+                run("LIST", in, out, round == 1);
+                run("LIST STREAM", in, out, round == 1);
+            }
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void run(String command, InputStream in, OutputStream out, boolean print) throws IOException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (sampling.get()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "Heap-Sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        long[] firstByte = new long[1];
+        long bytes = drainResponse(in, firstByte);
+        long total = System.nanoTime() - start;
+        sampling.set(false);
+
+        if (print) {
+            System.out.printf("%-12s bytes=%,d ttfb=%dms total=%dms peak heap above baseline=%,d KB%n",
+                    command, bytes, (firstByte[0] - start) / 1_000_000, total / 1_000_000,
+                    (peak.get() - baseline) / 1024);
+        }
+    }
+
+    /**
+     * Doc den dong footer, tra ve so byte; firstByte[0] = thoi diem nhan byte dau tien
+     */
+    private static long drainResponse(InputStream in, long[] firstByte) throws IOException {
+        byte[] buffer = new byte[16384];
+        byte[] tail = new byte[FOOTER.length() + 2];
+        int tailLength = 0;
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (total == 0) {
+                firstByte[0] = System.nanoTime();
+            }
+            total += read;
+            // Giu cac byte cuoi de nhan ra footer ket thuc response
+            for (int i = 0; i < read; i++) {
+                if (tailLength == tail.length) {
+                    System.arraycopy(tail, 1, tail, 0, tail.length - 1);
+                    tailLength--;
+                }
+                tail[tailLength++] = buffer[i];
+            }
+            String end = new String(tail, 0, tailLength, StandardCharsets.UTF_8).trim();
+            if (end.endsWith(FOOTER)) {
+                return total;
+            }
+        }
+        throw new IOException("Connection closed");
+    }
+
+    private static void populate(DeviceMonitor monitor, int count) throws Exception {
+        Method put = DeviceMonitor.class.getDeclaredMethod("putDevice", String.class, DeviceInfo.class);
+        put.setAccessible(true);
+        for (int i = 0; i < count; i++) {
+            String mac = String.format("AA:BB:%02X:%02X:%02X:%02X", (i >> 24) & 0xFF, (i >> 16) & 0xFF,
+                    (i >> 8) & 0xFF, i & 0xFF);
+            put.invoke(monitor, mac.toLowerCase(), DeviceInfo.builder()
+                    .mac(mac).ip("10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF))
+                    .hostname("host" + i).build());
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark so sanh gui lenh tuan tu va pipelining (#<id> LENH) qua mot
+ * duong truyen co do tre cao.
+ *
+ * Server chay trong cung JVM; mot proxy nho chen them do tre mot chieu cho
+ * moi goi tin de mo phong mang WAN. Chay trong thu muc tam vi Allowlist
+ * xoa allowlist.txt o thu muc hien tai:
+ *
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.PipeliningBenchmark 50 20 blocking
+ *
+ * Tham so: do tre mot chieu (ms), so vong lap, che do I/O (blocking|nio).
+ */
+public class PipeliningBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final String FOOTER = "+------------------------------------------------------------";
+    private static final String[] DASHBOARD_COMMANDS = {"LIST", "ALLOWLIST", "STATUS"};
+
+    public static void main(String[] args) throws Exception {
+        int oneWayDelayMs = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String ioMode = args.length > 2 ? args[2] : "blocking";
+
+        java.util.logging.LogManager.getLogManager().reset();
+
+        Properties config = new Properties();
+        config.setProperty("server.threadPool.size", "4");
+        config.setProperty("server.io.mode", ioMode);
+        config.setProperty("monitor.pollSeconds", "3600");
+
+        Allowlist allowlist = new Allowlist();
+        allowlist.addDevice(com.wifiguard.server.model.DeviceInfo.builder()
+                .mac("AA:BB:CC:DD:EE:01").hostname("bench").ip("10.0.0.1").build());
+        DeviceMonitor monitor = new DeviceMonitor(allowlist, config);
+
+        int serverPort = freePort();
+        config.setProperty("server.port", String.valueOf(serverPort));
+        TcpServer server = new TcpServer(config, allowlist, monitor, null);
+        server.start();
+
+        LatencyProxy proxy = new LatencyProxy(serverPort, oneWayDelayMs);
+        proxy.start();
+
+        System.out.println("io=" + ioMode + " one-way delay=" + oneWayDelayMs + "ms, commands per refresh=" +
+                DASHBOARD_COMMANDS.length + ", iterations=" + iterations);
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(HOST, proxy.getPort()), 5000);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(10000);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            readResponse(in); // loi chao
+
+            long[] sequential = new long[iterations];
+            long[] pipelined = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long t0 = System.nanoTime();
+                for (String command : DASHBOARD_COMMANDS) {
+                    out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    readResponse(in);
+                }
+                sequential[i] = (System.nanoTime() - t0) / 1_000_000;
+
+                t0 = System.nanoTime();
+                StringBuilder batch = new StringBuilder();
+                for (int k = 0; k < DASHBOARD_COMMANDS.length; k++) {
+                    batch.append('#').append(k + 1).append(' ').append(DASHBOARD_COMMANDS[k]).append('\n');
+                }
+                out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                for (int k = 0; k < DASHBOARD_COMMANDS.length; k++) {
+                    String response = readResponse(in);
+                    if (!response.startsWith("#" + (k + 1) + "\n")) {
+                        throw new IllegalStateException("Response sai thu tu: " + response);
+                    }
+                }
+                pipelined[i] = (System.nanoTime() - t0) / 1_000_000;
+            }
+
+            Arrays.sort(sequential);
+            Arrays.sort(pipelined);
+            System.out.println("sequential: round trips=" + DASHBOARD_COMMANDS.length +
+                    " p50=" + sequential[iterations / 2] + "ms max=" + sequential[iterations - 1] + "ms");
+            System.out.println("pipelined : round trips=1" +
+                    " p50=" + pipelined[iterations / 2] + "ms max=" + pipelined[iterations - 1] + "ms");
+        } finally {
+            proxy.stop();
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static String readResponse(InputStream in) throws IOException {
+        StringBuilder response = new StringBuilder();
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r') {
+                continue;
+            }
+            if (b == '\n') {
+                response.append(line).append('\n');
+                if (line.toString().startsWith(FOOTER)) {
+                    return response.toString();
+                }
+                line.setLength(0);
+            } else {
+                line.append((char) b);
+            }
+        }
+        throw new IOException("Connection closed");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    /**
+     * Proxy TCP mot ket noi, tre moi khoi du lieu mot khoang co dinh theo tung chieu
+     */
+    private static final class LatencyProxy {
+        private final int targetPort;
+        private final int delayMs;
+        private final ServerSocket listener;
+        private final ScheduledExecutorService upstreamDelay = Executors.newSingleThreadScheduledExecutor();
+        private final ScheduledExecutorService downstreamDelay = Executors.newSingleThreadScheduledExecutor();
+
+        LatencyProxy(int targetPort, int delayMs) throws IOException {
+            this.targetPort = targetPort;
+            this.delayMs = delayMs;
+            this.listener = new ServerSocket(0);
+        }
+
+        int getPort() {
+            return listener.getLocalPort();
+        }
+
+        void start() {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    Socket client = listener.accept();
+                    Socket upstream = new Socket(HOST, targetPort);
+                    client.setTcpNoDelay(true);
+                    upstream.setTcpNoDelay(true);
+                    pump(client, upstream, upstreamDelay, "Proxy-Up");
+                    pump(upstream, client, downstreamDelay, "Proxy-Down");
+                } catch (IOException e) {
+                    // Proxy da dong
+                }
+            }, "Proxy-Accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void pump(Socket from, Socket to, ScheduledExecutorService scheduler, String name) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[16384];
+                try {
+                    InputStream in = from.getInputStream();
+                    OutputStream out = to.getOutputStream();
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        byte[] chunk = Arrays.copyOf(buffer, read);
+                        // Scheduler don luong, cung do tre nen giu dung thu tu byte
+                        scheduler.schedule(() -> {
+                            try {
+                                out.write(chunk);
+                                out.flush();
+                            } catch (IOException e) {
+                                // Dau kia da dong
+                            }
+                        }, delayMs, TimeUnit.MILLISECONDS);
+                    }
+                } catch (IOException e) {
+                    // Ket noi da dong
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws IOException {
+            upstreamDelay.shutdownNow();
+            downstreamDelay.shutdownNow();
+            listener.close();
+        }
+    }
+}
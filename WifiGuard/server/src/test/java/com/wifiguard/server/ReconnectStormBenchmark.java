@@ -0,0 +1,166 @@
+package com.wifiguard.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark reconnect storm: N client cung ket noi lai mot luc (nhu sau khi
+ * mang chap chon), moi client doc loi chao, gui QUIT roi dong. So sanh mot
+ * accept thread voi nhieu acceptor (SO_REUSEPORT tren Linux) cung server.backlog.
+ *
+ * Do thoi gian tu luc phat lenh den khi nhan loi chao (p50/p99/max), so ket
+ * noi that bai va so ket noi moi acceptor nhan:
+ *
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.ReconnectStormBenchmark 1000 1,4 50
+ *
+ * Tham so: so client, cac so acceptor can so sanh, server.backlog, so vong moi cau hinh (mac dinh 3).
+ */
+public class ReconnectStormBenchmark {
+    private static final String HOST = "127.0.0.1";
+    private static final String FOOTER = "+------------------------------------------------------------";
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int[] acceptorCounts = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[] {1, 4};
+        int backlog = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        java.util.logging.LogManager.getLogManager().reset();
+        Allowlist allowlist = new Allowlist();
+
+        for (int acceptors : acceptorCounts) {
+            Properties config = new Properties();
+            config.setProperty("server.host", HOST);
+            config.setProperty("server.port", "0");
+            config.setProperty("server.backlog", String.valueOf(backlog));
+            config.setProperty("server.acceptors", String.valueOf(acceptors));
+            config.setProperty("monitor.pollSeconds", "3600");
+            // Du worker cho ca con bao, chi do phan accept
+            config.setProperty("server.threadPool.size", String.valueOf(clients));
+            config.setProperty("performance.maxConcurrentConnections", String.valueOf(clients * 2));
+            config.setProperty("performance.connectionQueueSize", String.valueOf(clients * 2));
+
+            DeviceMonitor monitor = new DeviceMonitor(allowlist, config);
+            TcpServer server = new TcpServer(config, allowlist, monitor, null);
+            server.start();
+            AcceptorGroup group = server.getAcceptors();
+            int port = group.getLocalPort();
+            try {
+                storm(Math.min(clients, 50), port); // khoi dong JIT va worker
+                for (int round = 1; round <= rounds; round++) {
+                    long[] before = acceptedCounts(group);
+                    Result result = storm(clients, port);
+                    long[] after = acceptedCounts(group);
+                    long[] spread = new long[after.length];
+                    for (int i = 0; i < spread.length; i++) {
+                        spread[i] = after[i] - before[i];
+                    }
+                    System.out.printf("%-28s round %d: %s | per acceptor %s%n", group, round, result,
+                            Arrays.toString(spread));
+                }
+            } finally {
+                server.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static long[] acceptedCounts(AcceptorGroup group) {
+        long[] counts = new long[group.getAcceptorCount()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = group.getAccepted(i);
+        }
+        return counts;
+    }
+
+    private static Result storm(int clients, int port) throws InterruptedException {
+        long[] latencies = new long[clients];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(clients);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    long start = System.nanoTime();
+                    try (Socket socket = new Socket()) {
+                        socket.connect(new InetSocketAddress(HOST, port), 10000);
+                        socket.setSoTimeout(10000);
+                        readResponse(socket.getInputStream());
+                        latencies[index] = System.nanoTime() - start;
+                        OutputStream out = socket.getOutputStream();
+                        out.write("QUIT\n".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    latencies[index] = Long.MAX_VALUE;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "Storm-Client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        long wall = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(clients, failures.get(), latencies, wall);
+    }
+
+    private static void readResponse(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        StringBuilder text = new StringBuilder();
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            text.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            if (text.toString().trim().endsWith(FOOTER)) {
+                return;
+            }
+        }
+        throw new IOException("Connection closed before greeting");
+    }
+
+    private static final class Result {
+        final int clients;
+        final int failures;
+        final long[] sorted;
+        final long wallNanos;
+
+        Result(int clients, int failures, long[] sorted, long wallNanos) {
+            this.clients = clients;
+            this.failures = failures;
+            this.sorted = sorted;
+            this.wallNanos = wallNanos;
+        }
+
+        private String percentile(double p) {
+            long value = sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+            return value == Long.MAX_VALUE ? "fail" : (value / 1_000_000) + "ms";
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d clients in %4d ms, p50=%s p99=%s max=%s failed=%d", clients,
+                    wallNanos / 1_000_000, percentile(0.50), percentile(0.99), percentile(1.0), failures);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.wifiguard.server;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.wifiguard.server.model.DeviceInfo;
+import com.wifiguard.server.protocol.BufferPool;
+import com.wifiguard.server.protocol.Frame;
+import com.wifiguard.server.protocol.Response;
+import com.wifiguard.server.protocol.ResponseEncoder;
+
+/**
+ * Benchmark so sanh cach ma hoa response hien tai (toBeautifulString roi
+ * getBytes UTF-8) voi ResponseEncoder ghi thang vao direct buffer tu pool.
+ *
+ * Truoc khi do, kiem tra hai cach cho ra cung bytes (text, framed, co #id,
+ * hostname Unicode). Do thoi gian trung binh va so byte cap phat tren heap
+ * moi lan ma hoa (ThreadMXBean):
+ *
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.ResponseEncoderBenchmark 10 1000 100000
+ *
+ * Tham so: cac kich thuoc danh sach thiet bi.
+ */
+public class ResponseEncoderBenchmark {
+    private static final byte[] LINE_TERMINATOR = "\n".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {10, 1000, 100000};
+
+        BufferPool pool = new BufferPool(32768, 1024);
+        ResponseEncoder encoder = new ResponseEncoder(pool);
+        verify(encoder);
+
+        for (int size : sizes) {
+            Response response = Response.success("Tim thay " + size + " thiet bi tren mang", devices(size));
+            int iterations = Math.max(5, 2_000_000 / Math.max(size, 1));
+
+            // Khoi dong JIT cho ca hai cach
+            for (int i = 0; i < iterations; i++) {
+                stringPath(response);
+                encoderPath(encoder, response);
+            }
+
+            long[] string = measure(iterations, () -> stringPath(response));
+            long[] direct = measure(iterations, () -> encoderPath(encoder, response));
+            System.out.printf("devices=%-7d bytes=%,-11d String+getBytes: %,12d ns/op %,12d B/op | encoder: %,12d ns/op %,10d B/op%n",
+                    size, stringPath(response), string[0], string[1], direct[0], direct[1]);
+        }
+        System.out.println("pool: allocated=" + pool.getAllocated() + " reused=" + pool.getReused() +
+                " idle=" + pool.getIdleCount());
+    }
+
+    private static long stringPath(Response response) {
+        return (response.toBeautifulString() + "\n").getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static long encoderPath(ResponseEncoder encoder, Response response) {
+        long total = 0;
+        for (ByteBuffer buffer : encoder.encode(response, false, LINE_TERMINATOR)) {
+            total += buffer.remaining();
+            encoder.getPool().release(buffer);
+        }
+        return total;
+    }
+
+    /**
+     * @return {ns/op, heap bytes allocated/op}
+     */
+    private static long[] measure(int iterations, Runnable task) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return new long[] {elapsed / iterations, allocated / iterations};
+    }
+
+    private static void verify(ResponseEncoder encoder) {
+        List<DeviceInfo> devices = devices(200);
+        devices.add(DeviceInfo.builder().mac("AA:BB:CC:DD:EE:FF").ip("10.1.1.1").hostname("máy-in-tầng-2 🖨").build());
+        devices.add(DeviceInfo.builder().mac("AA:BB:CC:DD:EE:FE").ip("10.1.1.2").hostname("whole-minute")
+                .lastSeen(LocalDateTime.of(2024, 1, 2, 3, 4)).known(true).build());
+        devices.add(DeviceInfo.builder().mac("AA:BB:CC:DD:EE:FD").ip("10.1.1.3").hostname("millis")
+                .lastSeen(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 120_000_000)).build());
+        Response[] samples = {
+            Response.success("Tim thay " + devices.size() + " thiet bi", devices).withRequestId("r-1"),
+            Response.error("Lệnh không xác định"),
+            Response.success("Server OK", "cache: hits=1"),
+        };
+        for (Response response : samples) {
+            String text = response.toBeautifulString();
+            check(join(encoder.encode(response, false, LINE_TERMINATOR)),
+                    (text + "\n").getBytes(StandardCharsets.UTF_8));
+            check(join(encoder.encode(response, true, LINE_TERMINATOR)), Frame.encode(text));
+        }
+        System.out.println("encoder output matches toBeautifulString for " + samples.length + " responses");
+    }
+
+    private static void check(byte[] actual, byte[] expected) {
+        if (!Arrays.equals(actual, expected)) {
+            throw new IllegalStateException("Encoder output differs:\n" +
+                    new String(actual, StandardCharsets.UTF_8) + "\n--- expected ---\n" +
+                    new String(expected, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] join(List<ByteBuffer> buffers) {
+        int length = buffers.stream().mapToInt(ByteBuffer::remaining).sum();
+        ByteBuffer joined = ByteBuffer.allocate(length);
+        buffers.forEach(joined::put);
+        return joined.array();
+    }
+
+    private static List<DeviceInfo> devices(int count) {
+        List<DeviceInfo> devices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String mac = String.format("AA:BB:%02X:%02X:%02X:%02X", (i >> 24) & 0xFF, (i >> 16) & 0xFF,
+                    (i >> 8) & 0xFF, i & 0xFF);
+            devices.add(DeviceInfo.builder().mac(mac)
+                    .ip("10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF))
+                    .hostname("host" + i).known(i % 3 == 0).build());
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,122 @@
+package com.wifiguard.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Kiem tra SessionBufferPool: nhieu lan ghi nho qua stream cua pool phai den
+ * socket stream thanh mot lan write khi flush (giong mot batch cua
+ * OutboundQueue), ghi lon hon buffer di thang, va stream da tra ve pool thi
+ * khong ghi duoc nua:
+ *
+ *   java -cp target/classes:target/test-classes com.wifiguard.server.SessionBufferPoolTest
+ */
+public class SessionBufferPoolTest {
+
+    public static void main(String[] args) throws IOException {
+        testSmallWritesCoalesce();
+        testLargeWriteBypassesBuffer();
+        testReleasedStreamRejectsWrites();
+        testBuffersAreReused();
+        System.out.println("SessionBufferPoolTest: OK");
+    }
+
+    private static void testSmallWritesCoalesce() throws IOException {
+        SessionBufferPool pool = new SessionBufferPool(1024, 65536, 4);
+        SessionBufferPool.Buffers buffers = pool.acquire();
+        CountingStream socket = new CountingStream();
+        OutputStream out = buffers.wrap(socket);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            byte[] message = ("response " + i + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(message);
+            expected.write(message);
+        }
+        check(socket.writes == 0, "small writes must stay in the buffer until flush, got " + socket.writes);
+        out.flush();
+        check(socket.writes == 1, "10 small writes must reach the socket as 1 write, got " + socket.writes);
+        check(socket.flushes == 1, "expected 1 flush, got " + socket.flushes);
+        check(Arrays.equals(socket.bytes.toByteArray(), expected.toByteArray()), "bytes differ after flush");
+        pool.release(buffers);
+    }
+
+    private static void testLargeWriteBypassesBuffer() throws IOException {
+        SessionBufferPool pool = new SessionBufferPool(1024, 65536, 4);
+        SessionBufferPool.Buffers buffers = pool.acquire();
+        CountingStream socket = new CountingStream();
+        OutputStream out = buffers.wrap(socket);
+
+        out.write("head\n".getBytes(StandardCharsets.UTF_8));
+        byte[] large = new byte[4096];
+        Arrays.fill(large, (byte) 'x');
+        out.write(large);
+        out.flush();
+        check(socket.writes == 2, "buffered head + direct large write expected, got " + socket.writes);
+        check(socket.bytes.size() == 5 + large.length, "wrong byte count " + socket.bytes.size());
+        pool.release(buffers);
+    }
+
+    private static void testReleasedStreamRejectsWrites() throws IOException {
+        SessionBufferPool pool = new SessionBufferPool(1024, 65536, 4);
+        SessionBufferPool.Buffers buffers = pool.acquire();
+        CountingStream socket = new CountingStream();
+        OutputStream out = buffers.wrap(socket);
+        pool.release(buffers);
+        try {
+            out.write(1);
+            throw new IllegalStateException("write after release must fail");
+        } catch (IOException expected) {
+            // stream da bi cat khoi buffer cua pool
+        }
+        check(socket.writes == 0, "nothing may reach the socket after release");
+    }
+
+    private static void testBuffersAreReused() {
+        SessionBufferPool pool = new SessionBufferPool(1024, 65536, 1);
+        SessionBufferPool.Buffers first = pool.acquire();
+        pool.release(first);
+        SessionBufferPool.Buffers second = pool.acquire();
+        check(first == second, "released buffers must be handed out again");
+        SessionBufferPool.Buffers third = pool.acquire();
+        pool.release(second);
+        pool.release(third);
+        check(pool.getAllocated() == 2 && pool.getReused() == 1, "counters: " + pool);
+        check(pool.getIdleCount() == 1 && pool.getDiscarded() == 1, "maxIdle not applied: " + pool);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * Socket stream gia: dem so lan write/flush
+     */
+    private static final class CountingStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int writes;
+        int flushes;
+
+        @Override
+        public void write(int b) {
+            writes++;
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}